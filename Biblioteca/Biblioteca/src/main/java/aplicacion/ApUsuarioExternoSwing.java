@@ -1,8 +1,8 @@
 package aplicacion;
 
-import modelo.Libro;
 import repositorio.BibliotecaRepositorio;
-import repositorio.IRepositorio;
+import repositorio.PrestamoRepositorio;
+import repositorio.UsuarioRepositorio;
 import vista.VistaUsuarioExternoSwing;
 import controlador.ControladorUsuarioExternoSwing;
 import util.DatosEjemplo;
@@ -36,18 +36,22 @@ public class ApUsuarioExternoSwing {
     private static void iniciarCatalogoPublico() {
         System.out.println("Iniciando Catálogo Público de la Biblioteca...");
         
-        // Crear repositorio (solo lectura)
-        IRepositorio<Libro> repositorioLibros = new BibliotecaRepositorio();
+        // Crear repositorios (solo lectura); usuarios y préstamos alimentan las estadísticas
+        BibliotecaRepositorio repositorioLibros = new BibliotecaRepositorio();
+        UsuarioRepositorio repositorioUsuarios = new UsuarioRepositorio();
+        PrestamoRepositorio repositorioPrestamos = new PrestamoRepositorio();
+        repositorioPrestamos.setUsuarioRepositorio(repositorioUsuarios);
+        repositorioPrestamos.setBibliotecaRepositorio(repositorioLibros);
         
         // Crear vista específica para usuarios externos
         VistaUsuarioExternoSwing vista = new VistaUsuarioExternoSwing();
         
         // Crear controlador específico
         ControladorUsuarioExternoSwing controlador = new ControladorUsuarioExternoSwing(
-                repositorioLibros, vista);
+                repositorioLibros, repositorioUsuarios, repositorioPrestamos, vista);
         
         // Cargar datos de ejemplo solo si no existen archivos CSV
-        DatosEjemplo.cargarSiNoExisten(repositorioLibros, null, null);
+        DatosEjemplo.cargarSiNoExisten(repositorioLibros, repositorioUsuarios, repositorioPrestamos);
         
         // Ejecutar aplicación pública
         controlador.ejecutar();
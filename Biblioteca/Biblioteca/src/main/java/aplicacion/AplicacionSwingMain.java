@@ -9,6 +9,7 @@ import repositorio.BibliotecaRepositorio;
 import repositorio.UsuarioRepositorio;
 import repositorio.PrestamoRepositorio;
 import repositorio.IRepositorio;
+import repositorio.ProgramadorVencimientos;
 import vista.BibliotecaSwingVista;
 import controlador.BibliotecaSwingControlador;
 import util.DatosEjemplo;
@@ -62,6 +63,9 @@ public class AplicacionSwingMain {
         // Cargar datos de ejemplo solo si no existen archivos CSV
         DatosEjemplo.cargarSiNoExisten(repositorioLibros, repositorioUsuarios, repositorioPrestamos);
         
+        // Pasar a VENCIDO los préstamos vencidos ahora y cada medianoche, en el hilo de eventos
+        ProgramadorVencimientos.iniciar(repositorioPrestamos, SwingUtilities::invokeLater);
+        
         // Ejecutar aplicación
         controlador.ejecutar();
         
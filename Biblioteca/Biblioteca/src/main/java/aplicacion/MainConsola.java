@@ -40,6 +40,8 @@ public class MainConsola {
         
         // Cargar datos de ejemplo solo si no existen archivos CSV
         DatosEjemplo.cargarSiNoExisten(repositorioLibros, repositorioUsuarios, repositorioPrestamos);
+        // La consola no queda abierta de un día para otro: basta una pasada al iniciar
+        repositorioPrestamos.marcarVencidos();
 
         controlador.ejecutar();
     }
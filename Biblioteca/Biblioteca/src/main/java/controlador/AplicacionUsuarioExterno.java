@@ -2,6 +2,8 @@ package controlador;
 
 import repositorio.BibliotecaRepositorio;
 import repositorio.IRepositorio;
+import repositorio.PrestamoRepositorio;
+import repositorio.UsuarioRepositorio;
 import modelo.Libro;
 import vista.VistaUsuarioExterno;
 
@@ -21,18 +23,22 @@ public class AplicacionUsuarioExterno {
 
     /**
      * Método que inicializa los componentes necesarios para el catálogo público,
-     * incluyendo el repositorio, la vista y el controlador.
+     * incluyendo los repositorios, la vista y el controlador.
      */
     private static void iniciarCatalogoPublico() {
-        // Crear repositorio (solo lectura)
-        IRepositorio<Libro> repositorioLibros = new BibliotecaRepositorio();
+        // Crear repositorios (solo lectura); usuarios y préstamos alimentan las estadísticas
+        BibliotecaRepositorio repositorioLibros = new BibliotecaRepositorio();
+        UsuarioRepositorio repositorioUsuarios = new UsuarioRepositorio();
+        PrestamoRepositorio repositorioPrestamos = new PrestamoRepositorio();
+        repositorioPrestamos.setUsuarioRepositorio(repositorioUsuarios);
+        repositorioPrestamos.setBibliotecaRepositorio(repositorioLibros);
 
         // Crear vista específica para usuarios externos
         VistaUsuarioExterno vista = new VistaUsuarioExterno();
 
         // Crear controlador específico
         ControladorUsuarioExterno controlador = new ControladorUsuarioExterno(
-                repositorioLibros, vista);
+                repositorioLibros, repositorioUsuarios, repositorioPrestamos, vista);
 
         // Cargar datos de ejemplo
         cargarDatosEjemplo(repositorioLibros);
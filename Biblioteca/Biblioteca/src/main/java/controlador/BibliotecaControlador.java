@@ -4,7 +4,6 @@ import modelo.*;
 import repositorio.*;
 import vista.*;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Clase que implementa la lógica de negocio de la biblioteca.
@@ -181,10 +180,7 @@ public class BibliotecaControlador implements IControlador {
 
         // Verificar si tiene préstamos activos
         PrestamoRepositorio prestamosRepo = (PrestamoRepositorio) repositorioPrestamos;
-        List<Prestamo> prestamosActivos = prestamosRepo.obtenerPorLibro(libro)
-                .stream()
-                .filter(p -> p.getEstado() == EstadoPrestamo.ACTIVO)
-                .collect(Collectors.toList());
+        List<Prestamo> prestamosActivos = prestamosRepo.obtenerActivosPorLibro(libro);
 
         if (!prestamosActivos.isEmpty()) {
             vista.mostrarError("No se puede eliminar el libro. Tiene " +
@@ -396,10 +392,14 @@ public class BibliotecaControlador implements IControlador {
         String confirmacion = vista.leerTexto(" ¿Confirmar préstamo? (s/N): ");
 
         if (confirmacion.toLowerCase().equals("s")) {
-            if (libro.prestar() && repositorioPrestamos.crear(prestamo) &&
-                repositorioLibros.actualizar(libro)) {
-                usuario.agregarPrestamo(prestamo);
-                repositorioUsuarios.actualizar(usuario);
+            // El ejemplar se descuenta en el repositorio, sobre lo guardado y bajo su cerrojo
+            BibliotecaRepositorio libros = (BibliotecaRepositorio) repositorioLibros;
+            boolean prestado = libros.prestar(libro.getId());
+            if (prestado && !repositorioPrestamos.crear(prestamo)) {
+                libros.devolver(libro.getId());
+                prestado = false;
+            }
+            if (prestado) {
                 vista.mostrarExito("Préstamo realizado exitosamente. ID: " + prestamo.getId());
             } else {
                 vista.mostrarError("Error al realizar el préstamo.");
@@ -422,7 +422,7 @@ public class BibliotecaControlador implements IControlador {
             return;
         }
 
-        if (prestamo.getEstado() != EstadoPrestamo.ACTIVO) {
+        if (!prestamo.getEstado().sinDevolver()) {
             vista.mostrarError("El préstamo ya fue devuelto.");
             return;
         }
@@ -441,10 +441,10 @@ public class BibliotecaControlador implements IControlador {
 
         if (confirmacion.toLowerCase().equals("s")) {
             prestamo.devolver();
-            prestamo.getLibro().devolver();
 
+            BibliotecaRepositorio libros = (BibliotecaRepositorio) repositorioLibros;
             if (repositorioPrestamos.actualizar(prestamo) &&
-                repositorioLibros.actualizar(prestamo.getLibro())) {
+                libros.devolver(prestamo.getLibro().getId())) {
                 vista.mostrarExito("Libro devuelto exitosamente.");
                 if (prestamo.getDiasRetraso() > 0) {
                     vista.mostrarMensaje("📝 Nota: El libro fue devuelto con " +
@@ -490,21 +490,14 @@ public class BibliotecaControlador implements IControlador {
      */
     @Override
     public void mostrarEstadisticas() {
-        // Obtener datos
-        List<Libro> todosLosLibros = repositorioLibros.obtenerTodos();
-        List<Usuario> todosLosUsuarios = repositorioUsuarios.obtenerTodos();
-        PrestamoRepositorio prestamoRepo = (PrestamoRepositorio) repositorioPrestamos;
-
-        int totalLibros = todosLosLibros.size();
-        int librosDisponibles = (int) todosLosLibros.stream()
-                                      .filter(Libro::estaDisponible)
-                                      .count();
-        int totalUsuarios = todosLosUsuarios.size();
-        int prestamosActivos = prestamoRepo.obtenerPrestamosActivos().size();
-        int prestamosVencidos = prestamoRepo.obtenerPrestamosVencidos().size();
+        // Los contadores de los repositorios: no se recorre ningún listado
+        EstadisticasBiblioteca estadisticas = EstadisticasBiblioteca.calcular(
+                (BibliotecaRepositorio) repositorioLibros, (UsuarioRepositorio) repositorioUsuarios,
+                (PrestamoRepositorio) repositorioPrestamos);
 
         BibliotecaVista bibliotecaVista = (BibliotecaVista) vista;
-        bibliotecaVista.mostrarEstadisticas(totalLibros, librosDisponibles,
-                                          totalUsuarios, prestamosActivos, prestamosVencidos);
+        bibliotecaVista.mostrarEstadisticas(estadisticas.getTotalLibros(), estadisticas.getLibrosDisponibles(),
+                                          estadisticas.getTotalUsuarios(), estadisticas.getPrestamosActivos(),
+                                          estadisticas.getPrestamosVencidos());
     }
 }
\ No newline at end of file
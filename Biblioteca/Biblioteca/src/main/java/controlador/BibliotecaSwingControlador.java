@@ -3,17 +3,30 @@ package controlador;
 import modelo.*;
 import repositorio.*;
 import vista.BibliotecaSwingVista;
+import util.NormalizadorTexto;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 public class BibliotecaSwingControlador implements IControlador, ActionListener {
+    private static final int MAX_SUGERENCIAS = 8;
+    // Filas que se traen por vez a las tablas de listado
+    private static final int TAM_PAGINA = 500;
+    
     private final IRepositorio<Libro> repositorioLibros;
     private final IRepositorio<Usuario> repositorioUsuarios;
     private final IRepositorio<Prestamo> repositorioPrestamos;
     private final BibliotecaSwingVista vista;
     
+    // Último ID listado y filas mostradas de cada listado, para pedir la página siguiente
+    private int ultimoLibroListado, librosMostrados;
+    private int ultimoUsuarioListado, usuariosMostrados;
+    private int ultimoPrestamoListado, prestamosMostrados;
+    
     public BibliotecaSwingControlador(IRepositorio<Libro> repositorioLibros,
                                      IRepositorio<Usuario> repositorioUsuarios,
                                      IRepositorio<Prestamo> repositorioPrestamos,
@@ -25,6 +38,34 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
         
         // Conectar la vista con este controlador
         vista.setControladorListener(this);
+        vista.setProveedorSugerenciasLibros(this::sugerirLibros);
+        vista.setProveedorSugerenciasUsuarios(this::sugerirUsuarios);
+    }
+    
+    // Autocompletado del campo de búsqueda de libros según el tipo de búsqueda elegido
+    private List<String> sugerirLibros(String texto) {
+        BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
+        switch (vista.getTipoBusquedaLibro()) {
+            case "Por Título":
+                return repo.sugerirTitulos(texto, MAX_SUGERENCIAS);
+            case "Por Autor":
+                return repo.sugerirAutores(texto, MAX_SUGERENCIAS);
+            case "Por ID":
+                return List.of();
+            default:
+                // Búsquedas sobre título y autor: se ofrecen ambos
+                Set<String> sugerencias = new LinkedHashSet<>(
+                        repo.sugerirTitulos(texto, MAX_SUGERENCIAS / 2));
+                sugerencias.addAll(repo.sugerirAutores(texto, MAX_SUGERENCIAS - sugerencias.size()));
+                return new ArrayList<>(sugerencias);
+        }
+    }
+    
+    private List<String> sugerirUsuarios(String texto) {
+        if (!"Por Nombre".equals(vista.getTipoBusquedaUsuario())) {
+            return List.of();
+        }
+        return ((UsuarioRepositorio) repositorioUsuarios).sugerirNombres(texto, MAX_SUGERENCIAS);
     }
     
     @Override
@@ -89,6 +130,15 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
                 case "LIMPIAR_CAMPOS":
                     limpiarTodosLosCampos();
                     break;
+                case "MAS_LIBROS":
+                    cargarMasLibros();
+                    break;
+                case "MAS_USUARIOS":
+                    cargarMasUsuarios();
+                    break;
+                case "MAS_PRESTAMOS":
+                    cargarMasPrestamos();
+                    break;
                 default:
                     vista.mostrarMensaje("Comando no reconocido: " + comando);
             }
@@ -128,10 +178,7 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
         
         // Verificar si tiene préstamos activos
         PrestamoRepositorio prestamosRepo = (PrestamoRepositorio) repositorioPrestamos;
-        List<Prestamo> prestamosActivos = prestamosRepo.obtenerPorLibro(libro)
-                .stream()
-                .filter(p -> p.getEstado() == EstadoPrestamo.ACTIVO)
-                .collect(Collectors.toList());
+        List<Prestamo> prestamosActivos = prestamosRepo.obtenerActivosPorLibro(libro);
         
         if (!prestamosActivos.isEmpty()) {
             vista.mostrarError("No se puede eliminar el libro. Tiene " +
@@ -159,8 +206,27 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
     
     @Override
     public void listarLibros() {
-        List<Libro> libros = repositorioLibros.obtenerTodos();
+        List<Libro> libros = repositorioLibros.obtenerSiguientes(0, TAM_PAGINA);
         vista.mostrarLibros(libros);
+        librosMostrados = 0;
+        ultimoLibroListado = 0;
+        registrarPaginaLibros(libros);
+    }
+    
+    private void cargarMasLibros() {
+        List<Libro> libros = repositorioLibros.obtenerSiguientes(ultimoLibroListado, TAM_PAGINA);
+        vista.agregarLibros(libros);
+        registrarPaginaLibros(libros);
+    }
+    
+    private void registrarPaginaLibros(List<Libro> libros) {
+        if (!libros.isEmpty()) {
+            ultimoLibroListado = libros.get(libros.size() - 1).getId();
+        }
+        librosMostrados += libros.size();
+        // Si la página vino incompleta no queda nada más, aunque el total haya cambiado
+        int total = libros.size() < TAM_PAGINA ? librosMostrados : repositorioLibros.contar();
+        vista.setPaginacionLibros(librosMostrados, Math.max(total, librosMostrados));
     }
     
     @Override
@@ -173,24 +239,32 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
             return;
         }
         
-        List<Libro> todosLosLibros = repositorioLibros.obtenerTodos();
+        BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
         List<Libro> resultados = new java.util.ArrayList<>();
         
         switch (tipoBusqueda) {
             case "Por Título":
-                for (Libro libro : todosLosLibros) {
-                    if (libro.getTitulo().toLowerCase().contains(textoBusqueda.toLowerCase())) {
-                        resultados.add(libro);
-                    }
-                }
+                resultados = repo.buscarPorTitulo(textoBusqueda);
                 break;
                 
             case "Por Autor":
-                for (Libro libro : todosLosLibros) {
-                    if (libro.getAutor().toLowerCase().contains(textoBusqueda.toLowerCase())) {
-                        resultados.add(libro);
-                    }
-                }
+                resultados = repo.buscarPorAutor(textoBusqueda);
+                break;
+                
+            case "Todas las Palabras":
+                resultados = repo.buscarPorPalabras(textoBusqueda, true);
+                break;
+                
+            case "Alguna Palabra":
+                resultados = repo.buscarPorPalabras(textoBusqueda, false);
+                break;
+                
+            case "Título Aproximado":
+                resultados = repo.buscarPorTituloAproximado(textoBusqueda);
+                break;
+                
+            case "Autor Aproximado":
+                resultados = repo.buscarPorAutorAproximado(textoBusqueda);
                 break;
                 
             case "Por ID":
@@ -207,16 +281,12 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
                 break;
                 
             case "Solo Disponibles":
-                for (Libro libro : todosLosLibros) {
-                    if (libro.estaDisponible()) {
-                        // Si hay texto de búsqueda, filtrar también por título o autor
-                        if (textoBusqueda.isEmpty() || 
-                            libro.getTitulo().toLowerCase().contains(textoBusqueda.toLowerCase()) ||
-                            libro.getAutor().toLowerCase().contains(textoBusqueda.toLowerCase())) {
-                            resultados.add(libro);
-                        }
-                    }
+                Consulta.Libros consulta = Consulta.libros().disponibles();
+                if (!textoBusqueda.isEmpty()) {
+                    // Si hay texto de búsqueda, filtrar también por título o autor
+                    consulta.tituloOAutorContiene(textoBusqueda);
                 }
+                resultados = repo.ejecutar(consulta);
                 break;
                 
             default:
@@ -288,8 +358,26 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
     
     @Override
     public void listarUsuarios() {
-        List<Usuario> usuarios = repositorioUsuarios.obtenerTodos();
+        List<Usuario> usuarios = repositorioUsuarios.obtenerSiguientes(0, TAM_PAGINA);
         vista.mostrarUsuarios(usuarios);
+        usuariosMostrados = 0;
+        ultimoUsuarioListado = 0;
+        registrarPaginaUsuarios(usuarios);
+    }
+    
+    private void cargarMasUsuarios() {
+        List<Usuario> usuarios = repositorioUsuarios.obtenerSiguientes(ultimoUsuarioListado, TAM_PAGINA);
+        vista.agregarUsuarios(usuarios);
+        registrarPaginaUsuarios(usuarios);
+    }
+    
+    private void registrarPaginaUsuarios(List<Usuario> usuarios) {
+        if (!usuarios.isEmpty()) {
+            ultimoUsuarioListado = usuarios.get(usuarios.size() - 1).getId();
+        }
+        usuariosMostrados += usuarios.size();
+        int total = usuarios.size() < TAM_PAGINA ? usuariosMostrados : repositorioUsuarios.contar();
+        vista.setPaginacionUsuarios(usuariosMostrados, Math.max(total, usuariosMostrados));
     }
     
     @Override
@@ -302,24 +390,18 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
             return;
         }
         
-        List<Usuario> todosLosUsuarios = repositorioUsuarios.obtenerTodos();
+        UsuarioRepositorio repo = (UsuarioRepositorio) repositorioUsuarios;
         List<Usuario> resultados = new java.util.ArrayList<>();
+        // Se compara contra las claves normalizadas de cada usuario: sin mayúsculas ni tildes
+        String busqueda = NormalizadorTexto.normalizar(textoBusqueda);
         
         switch (tipoBusqueda) {
             case "Por Nombre":
-                for (Usuario usuario : todosLosUsuarios) {
-                    if (usuario.getNombre().toLowerCase().contains(textoBusqueda.toLowerCase())) {
-                        resultados.add(usuario);
-                    }
-                }
+                resultados = repo.buscarPorNombreParcial(textoBusqueda);
                 break;
                 
             case "Por Email":
-                for (Usuario usuario : todosLosUsuarios) {
-                    if (usuario.getEmail().toLowerCase().contains(textoBusqueda.toLowerCase())) {
-                        resultados.add(usuario);
-                    }
-                }
+                resultados = repo.ejecutar(Consulta.usuarios().emailContiene(textoBusqueda));
                 break;
                 
             case "Por ID":
@@ -336,11 +418,13 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
                 break;
                 
             case "Por Tipo":
-                for (Usuario usuario : todosLosUsuarios) {
-                    if (usuario.getTipoUsuario().toString().toLowerCase().contains(textoBusqueda.toLowerCase())) {
-                        resultados.add(usuario);
+                Set<TipoUsuario> tipos = EnumSet.noneOf(TipoUsuario.class);
+                for (TipoUsuario tipo : TipoUsuario.values()) {
+                    if (NormalizadorTexto.normalizar(tipo.toString()).contains(busqueda)) {
+                        tipos.add(tipo);
                     }
                 }
+                resultados = repo.ejecutar(Consulta.usuarios().tipos(tipos));
                 break;
                 
             default:
@@ -405,10 +489,14 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
                         "Fecha límite: " + prestamo.getFechaDevolucionEsperada();
         
         if (vista.confirmarAccion(mensaje)) {
-            if (libro.prestar() && repositorioPrestamos.crear(prestamo) &&
-                repositorioLibros.actualizar(libro)) {
-                usuario.agregarPrestamo(prestamo);
-                repositorioUsuarios.actualizar(usuario);
+            // El ejemplar se descuenta en el repositorio, sobre lo guardado y bajo su cerrojo
+            BibliotecaRepositorio libros = (BibliotecaRepositorio) repositorioLibros;
+            boolean prestado = libros.prestar(libro.getId());
+            if (prestado && !repositorioPrestamos.crear(prestamo)) {
+                libros.devolver(libro.getId());
+                prestado = false;
+            }
+            if (prestado) {
                 vista.mostrarExito("Préstamo realizado exitosamente. ID: " + prestamo.getId());
                 vista.limpiarCamposPrestamo();
                 listarLibros();
@@ -438,7 +526,7 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
             return;
         }
         
-        if (prestamo.getEstado() != EstadoPrestamo.ACTIVO) {
+        if (!prestamo.getEstado().sinDevolver()) {
             vista.mostrarError("El préstamo ya fue devuelto.");
             return;
         }
@@ -455,10 +543,10 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
         
         if (vista.confirmarAccion(mensaje)) {
             prestamo.devolver();
-            prestamo.getLibro().devolver();
             
+            BibliotecaRepositorio libros = (BibliotecaRepositorio) repositorioLibros;
             if (repositorioPrestamos.actualizar(prestamo) &&
-                repositorioLibros.actualizar(prestamo.getLibro())) {
+                libros.devolver(prestamo.getLibro().getId())) {
                 vista.mostrarExito("Libro devuelto exitosamente.");
                 if (prestamo.getDiasRetraso() > 0) {
                     vista.mostrarMensaje("Nota: El libro fue devuelto con " +
@@ -479,8 +567,28 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
     @Override
     public void listarPrestamosActivos() {
         PrestamoRepositorio repo = (PrestamoRepositorio) repositorioPrestamos;
-        List<Prestamo> prestamosActivos = repo.obtenerPrestamosActivos();
+        List<Prestamo> prestamosActivos = repo.obtenerPrestamosActivos(0, TAM_PAGINA);
         vista.mostrarPrestamos(prestamosActivos);
+        prestamosMostrados = 0;
+        ultimoPrestamoListado = 0;
+        registrarPaginaPrestamos(prestamosActivos);
+    }
+    
+    private void cargarMasPrestamos() {
+        PrestamoRepositorio repo = (PrestamoRepositorio) repositorioPrestamos;
+        List<Prestamo> prestamos = repo.obtenerPrestamosActivos(ultimoPrestamoListado, TAM_PAGINA);
+        vista.agregarPrestamos(prestamos);
+        registrarPaginaPrestamos(prestamos);
+    }
+    
+    private void registrarPaginaPrestamos(List<Prestamo> prestamos) {
+        if (!prestamos.isEmpty()) {
+            ultimoPrestamoListado = prestamos.get(prestamos.size() - 1).getId();
+        }
+        prestamosMostrados += prestamos.size();
+        int total = prestamos.size() < TAM_PAGINA ? prestamosMostrados
+                  : ((PrestamoRepositorio) repositorioPrestamos).contarActivos();
+        vista.setPaginacionPrestamos(prestamosMostrados, Math.max(total, prestamosMostrados));
     }
     
     @Override
@@ -499,21 +607,14 @@ public class BibliotecaSwingControlador implements IControlador, ActionListener
     
     @Override
     public void mostrarEstadisticas() {
-        // Obtener datos
-        List<Libro> todosLosLibros = repositorioLibros.obtenerTodos();
-        List<Usuario> todosLosUsuarios = repositorioUsuarios.obtenerTodos();
-        PrestamoRepositorio prestamoRepo = (PrestamoRepositorio) repositorioPrestamos;
-        
-        int totalLibros = todosLosLibros.size();
-        int librosDisponibles = (int) todosLosLibros.stream()
-                                      .filter(Libro::estaDisponible)
-                                      .count();
-        int totalUsuarios = todosLosUsuarios.size();
-        int prestamosActivos = prestamoRepo.obtenerPrestamosActivos().size();
-        int prestamosVencidos = prestamoRepo.obtenerPrestamosVencidos().size();
-        
-        vista.mostrarEstadisticas(totalLibros, librosDisponibles,
-                                totalUsuarios, prestamosActivos, prestamosVencidos);
+        // Los contadores de los repositorios: no se recorre ningún listado
+        EstadisticasBiblioteca estadisticas = EstadisticasBiblioteca.calcular(
+                (BibliotecaRepositorio) repositorioLibros, (UsuarioRepositorio) repositorioUsuarios,
+                (PrestamoRepositorio) repositorioPrestamos);
+        
+        vista.mostrarEstadisticas(estadisticas.getTotalLibros(), estadisticas.getLibrosDisponibles(),
+                                estadisticas.getTotalUsuarios(), estadisticas.getPrestamosActivos(),
+                                estadisticas.getPrestamosVencidos());
     }
     
     private void limpiarTodosLosCampos() {
@@ -1,27 +1,47 @@
 package controlador;
 
 import modelo.Libro;
+import modelo.Prestamo;
+import modelo.Usuario;
 import repositorio.BibliotecaRepositorio;
+import repositorio.EstadisticasBiblioteca;
+import repositorio.LibroPopular;
+import repositorio.PrestamoRepositorio;
+import repositorio.UsuarioRepositorio;
+import repositorio.VentanaPopularidad;
 import repositorio.IRepositorio;
 import vista.VistaUsuarioExterno;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Clase que implementa la lógica de negocio para usuarios externos.
  * Permite a los usuarios externos consultar el catálogo de libros y realizar búsquedas.
  */
 public class ControladorUsuarioExterno implements IControladorUsuarioExterno {
+    private static final int MAX_RESULTADOS = 100;
+    private static final int MAX_POPULARES = 5;
+    
     private final IRepositorio<Libro> repositorioLibros;
+    private final IRepositorio<Usuario> repositorioUsuarios;
+    private final IRepositorio<Prestamo> repositorioPrestamos;
     private final VistaUsuarioExterno vista;
 
     /**
-     * Constructor que inicializa el repositorio y la vista.
+     * Constructor que inicializa los repositorios y la vista.
      * @param repositorioLibros Repositorio de libros.
+     * @param repositorioUsuarios Repositorio de usuarios, para las estadísticas.
+     * @param repositorioPrestamos Repositorio de préstamos, para las estadísticas y los populares.
      * @param vista Vista específica para usuarios externos.
      */
     public ControladorUsuarioExterno(IRepositorio<Libro> repositorioLibros,
+                                   IRepositorio<Usuario> repositorioUsuarios,
+                                   IRepositorio<Prestamo> repositorioPrestamos,
                                    VistaUsuarioExterno vista) {
         this.repositorioLibros = repositorioLibros;
+        this.repositorioUsuarios = repositorioUsuarios;
+        this.repositorioPrestamos = repositorioPrestamos;
         this.vista = vista;
     }
 
@@ -88,7 +108,16 @@ public class ControladorUsuarioExterno implements IControladorUsuarioExterno {
         
         BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
         List<Libro> resultados = repo.buscarPorTitulo(titulo);
-        vista.mostrarResultadoBusqueda(resultados, titulo);
+        if (resultados.isEmpty()) {
+            // Sin coincidencias exactas: se prueba tolerando errores de tipeo
+            List<Libro> aproximados = repo.buscarPorTituloAproximado(titulo);
+            if (!aproximados.isEmpty()) {
+                vista.mostrarResultadoAproximado(aproximados, titulo);
+                return;
+            }
+        }
+        // Los más relevantes primero; solo se ordenan los que se muestran
+        vista.mostrarResultadoBusqueda(repo.masRelevantes(resultados, titulo, MAX_RESULTADOS), titulo, resultados.size());
     }
 
     /**
@@ -105,7 +134,16 @@ public class ControladorUsuarioExterno implements IControladorUsuarioExterno {
         
         BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
         List<Libro> resultados = repo.buscarPorAutor(autor);
-        vista.mostrarResultadoBusqueda(resultados, autor);
+        if (resultados.isEmpty()) {
+            // Sin coincidencias exactas: se prueba tolerando errores de tipeo
+            List<Libro> aproximados = repo.buscarPorAutorAproximado(autor);
+            if (!aproximados.isEmpty()) {
+                vista.mostrarResultadoAproximado(aproximados, autor);
+                return;
+            }
+        }
+        // Los más relevantes primero; solo se ordenan los que se muestran
+        vista.mostrarResultadoBusqueda(repo.masRelevantes(resultados, autor, MAX_RESULTADOS), autor, resultados.size());
     }
 
     /**
@@ -125,21 +163,23 @@ public class ControladorUsuarioExterno implements IControladorUsuarioExterno {
      */
     @Override
     public void mostrarEstadisticas() {
-        List<Libro> todosLosLibros = repositorioLibros.obtenerTodos();
-        BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
-        
-        int totalLibros = todosLosLibros.size();
-        int librosDisponibles = repo.obtenerLibrosDisponibles().size();
-        int totalUsuarios = 58; // Simulado - en implementación real vendría del repositorio
-        int prestamosHoy = 12; // Simulado - en implementación real vendría del repositorio
+        // Los contadores de los repositorios: no se recorre ningún listado
+        EstadisticasBiblioteca estadisticas = EstadisticasBiblioteca.calcular(
+                (BibliotecaRepositorio) repositorioLibros, (UsuarioRepositorio) repositorioUsuarios,
+                (PrestamoRepositorio) repositorioPrestamos);
         
-        vista.mostrarEstadisticasPublicas(totalLibros, librosDisponibles, 
-                                        totalUsuarios, prestamosHoy);
+        vista.mostrarEstadisticasPublicas(estadisticas.getTotalLibros(), estadisticas.getLibrosDisponibles(),
+                                        estadisticas.getTotalUsuarios(), estadisticas.getPrestamosHoy());
     }
     
     @Override
     public void mostrarLibrosPopulares() {
-        vista.mostrarLibrosPopulares();
+        PrestamoRepositorio repo = (PrestamoRepositorio) repositorioPrestamos;
+        Map<VentanaPopularidad, List<LibroPopular>> populares = new LinkedHashMap<>();
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            populares.put(ventana, repo.obtenerLibrosPopulares(ventana, MAX_POPULARES));
+        }
+        vista.mostrarLibrosPopulares(populares);
     }
     
     @Override
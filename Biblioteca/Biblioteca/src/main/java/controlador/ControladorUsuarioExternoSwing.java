@@ -3,23 +3,52 @@ package controlador;
 import vista.VistaUsuarioExternoSwing;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import modelo.Libro;
+import modelo.Prestamo;
+import modelo.Usuario;
 import repositorio.IRepositorio;
 import repositorio.BibliotecaRepositorio;
+import repositorio.EstadisticasBiblioteca;
+import repositorio.LibroPopular;
+import repositorio.PrestamoRepositorio;
+import repositorio.UsuarioRepositorio;
+import repositorio.VentanaPopularidad;
 
 public class ControladorUsuarioExternoSwing implements IControladorUsuarioExterno, ActionListener {
+    private static final int MAX_SUGERENCIAS = 8;
+    private static final int MAX_RESULTADOS = 100;
+    private static final int MAX_POPULARES = 5;
+    
     private final IRepositorio<Libro> repositorioLibros;
+    private final IRepositorio<Usuario> repositorioUsuarios;
+    private final IRepositorio<Prestamo> repositorioPrestamos;
     private final VistaUsuarioExternoSwing vista;
     
     public ControladorUsuarioExternoSwing(IRepositorio<Libro> repositorioLibros,
+                                         IRepositorio<Usuario> repositorioUsuarios,
+                                         IRepositorio<Prestamo> repositorioPrestamos,
                                          VistaUsuarioExternoSwing vista) {
         this.repositorioLibros = repositorioLibros;
+        this.repositorioUsuarios = repositorioUsuarios;
+        this.repositorioPrestamos = repositorioPrestamos;
         this.vista = vista;
         
         // Conectar la vista con este controlador
         vista.setControladorListener(this);
+        vista.setProveedorSugerencias(this::sugerir);
+    }
+    
+    // Autocompletado del campo de búsqueda: títulos o autores según el tipo elegido
+    private List<String> sugerir(String texto) {
+        BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
+        if ("Por Autor".equals(vista.getTipoBusqueda())) {
+            return repo.sugerirAutores(texto, MAX_SUGERENCIAS);
+        }
+        return repo.sugerirTitulos(texto, MAX_SUGERENCIAS);
     }
     
     @Override
@@ -82,7 +111,16 @@ public class ControladorUsuarioExternoSwing implements IControladorUsuarioExtern
         
         BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
         List<Libro> resultados = repo.buscarPorTitulo(titulo);
-        vista.mostrarResultadoBusqueda(resultados, titulo);
+        if (resultados.isEmpty()) {
+            // Sin coincidencias exactas: se prueba tolerando errores de tipeo
+            List<Libro> aproximados = repo.buscarPorTituloAproximado(titulo);
+            if (!aproximados.isEmpty()) {
+                vista.mostrarResultadoAproximado(aproximados, titulo);
+                return;
+            }
+        }
+        // Los más relevantes primero; solo se ordenan los que se muestran
+        vista.mostrarResultadoBusqueda(repo.masRelevantes(resultados, titulo, MAX_RESULTADOS), titulo, resultados.size());
     }
     
     @Override
@@ -96,7 +134,16 @@ public class ControladorUsuarioExternoSwing implements IControladorUsuarioExtern
         
         BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
         List<Libro> resultados = repo.buscarPorAutor(autor);
-        vista.mostrarResultadoBusqueda(resultados, autor);
+        if (resultados.isEmpty()) {
+            // Sin coincidencias exactas: se prueba tolerando errores de tipeo
+            List<Libro> aproximados = repo.buscarPorAutorAproximado(autor);
+            if (!aproximados.isEmpty()) {
+                vista.mostrarResultadoAproximado(aproximados, autor);
+                return;
+            }
+        }
+        // Los más relevantes primero; solo se ordenan los que se muestran
+        vista.mostrarResultadoBusqueda(repo.masRelevantes(resultados, autor, MAX_RESULTADOS), autor, resultados.size());
     }
     
     @Override
@@ -110,21 +157,23 @@ public class ControladorUsuarioExternoSwing implements IControladorUsuarioExtern
     
     @Override
     public void mostrarEstadisticas() {
-        List<Libro> todosLosLibros = repositorioLibros.obtenerTodos();
-        BibliotecaRepositorio repo = (BibliotecaRepositorio) repositorioLibros;
-        
-        int totalLibros = todosLosLibros.size();
-        int librosDisponibles = repo.obtenerLibrosDisponibles().size();
-        int totalUsuarios = 58; // Simulado - en implementación real vendría del repositorio
-        int prestamosHoy = 12; // Simulado - en implementación real vendría del repositorio
+        // Los contadores de los repositorios: no se recorre ningún listado
+        EstadisticasBiblioteca estadisticas = EstadisticasBiblioteca.calcular(
+                (BibliotecaRepositorio) repositorioLibros, (UsuarioRepositorio) repositorioUsuarios,
+                (PrestamoRepositorio) repositorioPrestamos);
         
-        vista.mostrarEstadisticasPublicas(totalLibros, librosDisponibles, 
-                                        totalUsuarios, prestamosHoy);
+        vista.mostrarEstadisticasPublicas(estadisticas.getTotalLibros(), estadisticas.getLibrosDisponibles(),
+                                        estadisticas.getTotalUsuarios(), estadisticas.getPrestamosHoy());
     }
     
     @Override
     public void mostrarLibrosPopulares() {
-        vista.mostrarLibrosPopulares();
+        PrestamoRepositorio repo = (PrestamoRepositorio) repositorioPrestamos;
+        Map<VentanaPopularidad, List<LibroPopular>> populares = new LinkedHashMap<>();
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            populares.put(ventana, repo.obtenerLibrosPopulares(ventana, MAX_POPULARES));
+        }
+        vista.mostrarLibrosPopulares(populares);
     }
     
     @Override
@@ -16,4 +16,9 @@ public enum EstadoPrestamo {
     public String getDescripcion() {
         return descripcion;
     }
+    
+    /** true mientras el libro no se devolvió: un préstamo vencido sigue activo. */
+    public boolean sinDevolver() {
+        return this != DEVUELTO;
+    }
 }
\ No newline at end of file
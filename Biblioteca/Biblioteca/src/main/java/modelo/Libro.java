@@ -1,5 +1,6 @@
 package modelo;
 
+import util.NormalizadorTexto;
 
 public class Libro extends RecursoBiblioteca {
     private String titulo;
@@ -7,6 +8,11 @@ public class Libro extends RecursoBiblioteca {
     private int cantidadDisponible;
     private int cantidadTotal;
     
+    // Claves de búsqueda sin tildes ni mayúsculas: se calculan la primera vez que se piden
+    // (al indexar) y se descartan cuando cambia el texto
+    private String tituloNormalizado;
+    private String autorNormalizado;
+    
     // Constructores
     public Libro() {}
     
@@ -24,6 +30,7 @@ public class Libro extends RecursoBiblioteca {
     
     public void setTitulo(String titulo) {
         this.titulo = titulo;
+        this.tituloNormalizado = null;
     }
     
     public String getAutor() {
@@ -32,6 +39,21 @@ public class Libro extends RecursoBiblioteca {
     
     public void setAutor(String autor) {
         this.autor = autor;
+        this.autorNormalizado = null;
+    }
+    
+    public String getTituloNormalizado() {
+        if (tituloNormalizado == null) {
+            tituloNormalizado = NormalizadorTexto.normalizar(titulo);
+        }
+        return tituloNormalizado;
+    }
+    
+    public String getAutorNormalizado() {
+        if (autorNormalizado == null) {
+            autorNormalizado = NormalizadorTexto.normalizar(autor);
+        }
+        return autorNormalizado;
     }
     
     public int getCantidadDisponible() {
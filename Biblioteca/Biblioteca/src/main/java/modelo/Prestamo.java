@@ -93,8 +93,9 @@ public class Prestamo {
     
     // Métodos de negocio
     public boolean estaVencido() {
-        return LocalDate.now().isAfter(fechaDevolucionEsperada) && 
-               estado == EstadoPrestamo.ACTIVO;
+        // Marcado por el programador de vencimientos, o vencido desde la última pasada
+        return estado == EstadoPrestamo.VENCIDO ||
+               (estado == EstadoPrestamo.ACTIVO && LocalDate.now().isAfter(fechaDevolucionEsperada));
     }
     
     public long getDiasRetraso() {
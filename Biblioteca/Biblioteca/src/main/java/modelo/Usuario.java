@@ -1,8 +1,7 @@
 package modelo;
 
+import util.NormalizadorTexto;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
 
 public class Usuario extends RecursoBiblioteca {
     private String nombre;
@@ -10,12 +9,15 @@ public class Usuario extends RecursoBiblioteca {
     private String telefono;
     private TipoUsuario tipoUsuario;
     private LocalDate fechaRegistro;
-    private List<Prestamo> historialPrestamos;
     private boolean activo;
+    // Mantenido por PrestamoRepositorio a partir de prestamos.csv; no se guarda en usuarios.csv
+    private int prestamosActivos;
+    // Claves de búsqueda sin tildes ni mayúsculas, calculadas al pedirlas por primera vez
+    private String nombreNormalizado;
+    private String emailNormalizado;
     
     // Constructores
     public Usuario() {
-        this.historialPrestamos = new ArrayList<>();
         this.fechaRegistro = LocalDate.now();
         this.activo = true;
     }
@@ -35,6 +37,7 @@ public class Usuario extends RecursoBiblioteca {
     
     public void setNombre(String nombre) {
         this.nombre = nombre;
+        this.nombreNormalizado = null;
     }
     
     public String getEmail() {
@@ -43,6 +46,21 @@ public class Usuario extends RecursoBiblioteca {
     
     public void setEmail(String email) {
         this.email = email;
+        this.emailNormalizado = null;
+    }
+    
+    public String getNombreNormalizado() {
+        if (nombreNormalizado == null) {
+            nombreNormalizado = NormalizadorTexto.normalizar(nombre);
+        }
+        return nombreNormalizado;
+    }
+    
+    public String getEmailNormalizado() {
+        if (emailNormalizado == null) {
+            emailNormalizado = NormalizadorTexto.normalizar(email);
+        }
+        return emailNormalizado;
     }
     
     public String getTelefono() {
@@ -69,14 +87,6 @@ public class Usuario extends RecursoBiblioteca {
         this.fechaRegistro = fechaRegistro;
     }
     
-    public List<Prestamo> getHistorialPrestamos() {
-        return historialPrestamos;
-    }
-    
-    public void setHistorialPrestamos(List<Prestamo> historialPrestamos) {
-        this.historialPrestamos = historialPrestamos;
-    }
-    
     public boolean isActivo() {
         return activo;
     }
@@ -87,17 +97,15 @@ public class Usuario extends RecursoBiblioteca {
     
     // Métodos de negocio
     public int getPrestamosActivos() {
-        return (int) historialPrestamos.stream()
-                .filter(prestamo -> prestamo.getEstado() == EstadoPrestamo.ACTIVO)
-                .count();
+        return prestamosActivos;
     }
     
-    public boolean puedePrestar() {
-        return activo && getPrestamosActivos() < tipoUsuario.getLimitePrestamos();
+    public void setPrestamosActivos(int prestamosActivos) {
+        this.prestamosActivos = prestamosActivos;
     }
     
-    public void agregarPrestamo(Prestamo prestamo) {
-        historialPrestamos.add(prestamo);
+    public boolean puedePrestar() {
+        return activo && prestamosActivos < tipoUsuario.getLimitePrestamos();
     }
     
     // Métodos para manejo de CSV
@@ -136,7 +144,7 @@ public class Usuario extends RecursoBiblioteca {
         usuario.setId(id);
         usuario.setFechaRegistro(fechaRegistro);
         usuario.setActivo(activo);
-        // El historial de préstamos se manejará por separado
+        // Los préstamos activos los cuenta PrestamoRepositorio al cargar prestamos.csv
         
         return usuario;
     }
@@ -0,0 +1,140 @@
+package repositorio;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Almacén residente de un repositorio: las entidades por ID en orden de llegada (el
+ * LinkedHashMap de siempre) más la lista ordenada de sus IDs, que permite pedir una página
+ * por posición o a partir de un ID, y recorrer de a tandas, sin copiar el resto del almacén.
+ *
+ * Las vistas que entrega son de solo lectura, para que ningún cambio se saltee la lista de IDs.
+ */
+final class AlmacenPorId<T> {
+    // Tamaño de las tandas con que se recorre al pedir un flujo
+    private static final int TANDA = 256;
+
+    private final Map<Integer, T> porId = new LinkedHashMap<>();
+    private final ListaIds ids = new ListaIds();
+
+    T get(int id) {
+        return porId.get(id);
+    }
+
+    boolean containsKey(int id) {
+        return porId.containsKey(id);
+    }
+
+    T put(int id, T entidad) {
+        T anterior = porId.put(id, entidad);
+        if (anterior == null) {
+            ids.agregar(id);
+        }
+        return anterior;
+    }
+
+    T remove(int id) {
+        T eliminado = porId.remove(id);
+        if (eliminado != null) {
+            ids.quitar(id);
+        }
+        return eliminado;
+    }
+
+    void clear() {
+        porId.clear();
+        ids.limpiar();
+    }
+
+    int size() {
+        return porId.size();
+    }
+
+    Collection<T> values() {
+        return Collections.unmodifiableCollection(porId.values());
+    }
+
+    Map<Integer, T> comoMapa() {
+        return Collections.unmodifiableMap(porId);
+    }
+
+    /** Mayor ID presente, o 0 si está vacío. */
+    int ultimoId() {
+        return ids.tamano() == 0 ? 0 : ids.obtener(ids.tamano() - 1);
+    }
+
+    /** Entidades de las posiciones [desde, desde + cantidad) en orden de ID. */
+    List<T> pagina(int desde, int cantidad) {
+        int inicio = Math.max(0, Math.min(desde, ids.tamano()));
+        int fin = (int) Math.min((long) inicio + Math.max(cantidad, 0), ids.tamano());
+        return porIds(ids.tramo(inicio, fin));
+    }
+
+    /** Hasta {@code cantidad} entidades con ID mayor que {@code despuesDeId}, en orden de ID. */
+    List<T> siguientes(int despuesDeId, int cantidad) {
+        return porIds(idsSiguientes(despuesDeId, cantidad));
+    }
+
+    /**
+     * Recorrido perezoso en orden de ID a partir de {@code despuesDeId}. Se avanza de a tandas
+     * por ID, no por posición, así que lo que se agregue o quite mientras tanto no hace saltear
+     * ni repetir entidades.
+     */
+    Stream<T> flujo(int despuesDeId) {
+        Iterator<T> iterador = new Iterator<>() {
+            private int[] tanda = new int[0];
+            private int posicion;
+            private int ultimo = despuesDeId;
+            private boolean agotado;
+            private T siguiente;
+
+            @Override
+            public boolean hasNext() {
+                while (siguiente == null) {
+                    if (posicion == tanda.length) {
+                        if (agotado) {
+                            return false;
+                        }
+                        tanda = idsSiguientes(ultimo, TANDA);
+                        posicion = 0;
+                        agotado = tanda.length < TANDA;
+                        if (tanda.length == 0) {
+                            return false;
+                        }
+                    }
+                    ultimo = tanda[posicion++];
+                    // Pudo haberse quitado después de pedir la tanda
+                    siguiente = porId.get(ultimo);
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T entidad = siguiente;
+                siguiente = null;
+                return entidad;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                iterador, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private int[] idsSiguientes(int despuesDeId, int cantidad) {
+        int inicio = ids.posicionMayorQue(despuesDeId);
+        int fin = (int) Math.min((long) inicio + Math.max(cantidad, 0), ids.tamano());
+        return ids.tramo(inicio, fin);
+    }
+
+    private List<T> porIds(int[] tramo) {
+        List<T> resultado = new ArrayList<>(tramo.length);
+        for (int id : tramo) {
+            resultado.add(porId.get(id));
+        }
+        return resultado;
+    }
+}
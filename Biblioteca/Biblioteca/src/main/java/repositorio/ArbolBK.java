@@ -0,0 +1,171 @@
+package repositorio;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Árbol BK sobre las palabras de un diccionario, para encontrar las que están a pocas
+ * ediciones (distancia de Levenshtein) de una palabra mal escrita. Cada hijo cuelga de su
+ * padre según la distancia entre ambos; por la desigualdad triangular, buscando a distancia
+ * k desde un nodo a distancia d solo hace falta bajar por los hijos de d-k a d+k, y así se
+ * visita una parte pequeña del diccionario.
+ *
+ * Solo se agregan palabras: las que dejan de usarse se descartan al buscar con el filtro de
+ * vigentes, y desaparecen en la siguiente carga completa.
+ */
+final class ArbolBK {
+    private static final class Nodo {
+        final String palabra;
+        int[] distancias = new int[2];
+        Nodo[] hijos = new Nodo[2];
+        int cantidadHijos;
+        int mayorDistancia;
+
+        Nodo(String palabra) {
+            this.palabra = palabra;
+        }
+
+        Nodo hijo(int distancia) {
+            for (int i = 0; i < cantidadHijos; i++) {
+                if (distancias[i] == distancia) {
+                    return hijos[i];
+                }
+            }
+            return null;
+        }
+
+        void agregarHijo(int distancia, Nodo hijo) {
+            if (cantidadHijos == hijos.length) {
+                distancias = Arrays.copyOf(distancias, cantidadHijos * 2);
+                hijos = Arrays.copyOf(hijos, cantidadHijos * 2);
+            }
+            distancias[cantidadHijos] = distancia;
+            hijos[cantidadHijos++] = hijo;
+            mayorDistancia = Math.max(mayorDistancia, distancia);
+        }
+    }
+
+    private Nodo raiz;
+    private int cantidad;
+
+    void limpiar() {
+        raiz = null;
+        cantidad = 0;
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    void agregar(String palabra) {
+        if (raiz == null) {
+            raiz = new Nodo(palabra);
+            cantidad = 1;
+            return;
+        }
+        Nodo nodo = raiz;
+        while (true) {
+            int distancia = distancia(palabra, nodo.palabra);
+            if (distancia == 0) {
+                return;
+            }
+            Nodo hijo = nodo.hijo(distancia);
+            if (hijo == null) {
+                nodo.agregarHijo(distancia, new Nodo(palabra));
+                cantidad++;
+                return;
+            }
+            nodo = hijo;
+        }
+    }
+
+    /**
+     * Palabras vigentes a distancia de edición {@code maximaDistancia} o menos, con su
+     * distancia; como mucho las {@code maximoResultados} más cercanas. Para acotar el costo de
+     * consultas patológicas se visitan como mucho {@code maximoNodos} nodos.
+     */
+    Map<String, Integer> buscar(String palabra, int maximaDistancia, Predicate<String> vigente,
+                                int maximoNodos, int maximoResultados) {
+        List<String> encontradas = new ArrayList<>();
+        List<Integer> distanciasEncontradas = new ArrayList<>();
+        if (raiz != null) {
+            Deque<Nodo> pendientes = new ArrayDeque<>();
+            pendientes.push(raiz);
+            int visitados = 0;
+            while (!pendientes.isEmpty() && visitados++ < maximoNodos) {
+                Nodo nodo = pendientes.pop();
+                // Más allá de este límite ni el nodo ni ninguno de sus hijos pueden servir
+                int distancia = distancia(palabra, nodo.palabra, nodo.mayorDistancia + maximaDistancia);
+                if (distancia <= maximaDistancia && vigente.test(nodo.palabra)) {
+                    encontradas.add(nodo.palabra);
+                    distanciasEncontradas.add(distancia);
+                }
+                for (int i = 0; i < nodo.cantidadHijos; i++) {
+                    if (Math.abs(nodo.distancias[i] - distancia) <= maximaDistancia) {
+                        pendientes.push(nodo.hijos[i]);
+                    }
+                }
+            }
+        }
+
+        // Las más cercanas primero; a igual distancia, alfabéticamente para que sea reproducible
+        Integer[] orden = new Integer[encontradas.size()];
+        for (int i = 0; i < orden.length; i++) orden[i] = i;
+        Arrays.sort(orden, (a, b) -> {
+            int porDistancia = Integer.compare(distanciasEncontradas.get(a), distanciasEncontradas.get(b));
+            return porDistancia != 0 ? porDistancia : encontradas.get(a).compareTo(encontradas.get(b));
+        });
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        for (int i = 0; i < orden.length && resultado.size() < maximoResultados; i++) {
+            resultado.put(encontradas.get(orden[i]), distanciasEncontradas.get(orden[i]));
+        }
+        return resultado;
+    }
+
+    /** Estimación de bytes: cada nodo con sus dos arreglos (la palabra la comparte el índice). */
+    long bytesEstimados() {
+        return 80L * cantidad;
+    }
+
+    static int distancia(String a, String b) {
+        return distancia(a, b, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Levenshtein con dos filas; si la distancia supera el límite se corta en cuanto una fila
+     * entera lo supera y se devuelve limite + 1. La mayoría de los nodos del árbol son hojas y
+     * se descartan así tras unas pocas filas.
+     */
+    static int distancia(String a, String b, int limite) {
+        if (a.length() < b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        if (a.length() - b.length() > limite) {
+            return limite + 1;
+        }
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            char c = a.charAt(i - 1);
+            int menor = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int sustitucion = anterior[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                actual[j] = Math.min(sustitucion, Math.min(anterior[j], actual[j - 1]) + 1);
+                menor = Math.min(menor, actual[j]);
+            }
+            if (menor > limite) {
+                return limite + 1;
+            }
+            int[] t = anterior;
+            anterior = actual;
+            actual = t;
+        }
+        return Math.min(anterior[b.length()], limite + 1);
+    }
+}
@@ -1,17 +1,51 @@
 package repositorio;
 
 import modelo.Libro;
+import util.MejoresK;
+import util.NormalizadorTexto;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.function.Predicate;
 
 public class BibliotecaRepositorio implements IRepositorio<Libro> {
     private final File archivoCsv;
     private int contadorId;
     private static final String RUTA = "data/libros.csv";
     
+    // Almacén residente: el CSV se lee una sola vez y las lecturas se sirven desde memoria
+    private final AlmacenPorId<Libro> libros = new AlmacenPorId<>();
+    
+    // Diario de solo anexado con las mutaciones posteriores al archivo base
+    private final DiarioCambios diario;
+    
+    // Índices de texto para no recorrer el catálogo en cada búsqueda: palabras completas
+    // y trigramas para las búsquedas por subcadena
+    private final IndiceTextoLibros indiceTexto = new IndiceTextoLibros();
+    private final IndiceTrigramas trigramasTitulo = new IndiceTrigramas("trigramas de título");
+    private final IndiceTrigramas trigramasAutor = new IndiceTrigramas("trigramas de autor");
+    private final IndiceDisponibilidad disponibilidad = new IndiceDisponibilidad();
+    
+    // Sugerencias por prefijo para los campos de búsqueda
+    private final IndiceAutocompletado sugerenciasTitulos = new IndiceAutocompletado("sugerencias de título");
+    private final IndiceAutocompletado sugerenciasAutores = new IndiceAutocompletado("sugerencias de autor");
+    
+    // Título y autor normalizados con que se indexó cada libro: los controladores modifican
+    // los libros en el lugar antes de actualizar, así que se desindexan con este texto
+    private final Map<Integer, String[]> textoIndexado = new HashMap<>();
+    
+    // Líneas del CSV base que no se pudieron leer en la última carga; con alguna, la
+    // instantánea binaria no lo representaría y no se escribe
+    private int lineasDescartadas;
+    
     public BibliotecaRepositorio() {
-        this.archivoCsv = new File(RUTA);
+        this(new File(RUTA));
+    }
+    
+    public BibliotecaRepositorio(File archivoCsv) {
+        this.archivoCsv = archivoCsv;
+        this.diario = new DiarioCambios(archivoCsv);
+        cargarEnMemoria();
         this.contadorId = obtenerMaximoId() + 1;
     }
     
@@ -25,179 +59,719 @@ public class BibliotecaRepositorio implements IRepositorio<Libro> {
     private void guardarTodos(List<Libro> libros) throws IOException {
         asegurarDirectorio();
         
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(archivoCsv, false), StandardCharsets.UTF_8))) {
-            
-            // Cabecera
-            bw.write("id;titulo;autor;cantidadDisponible;cantidadTotal");
-            bw.newLine();
-            
-            for (Libro libro : libros) {
-                bw.write(libro.toCsv());
-                bw.newLine();
-            }
+        List<String> lineas = new ArrayList<>(libros.size() + 1);
+        
+        // Cabecera
+        lineas.add("id;titulo;autor;cantidadDisponible;cantidadTotal");
+        
+        for (Libro libro : libros) {
+            lineas.add(libro.toCsv());
         }
+        
+        // Temporal + fsync + renombrado atómico: el CSV vivo nunca queda truncado
+        EscrituraAtomica.escribir(archivoCsv, lineas);
     }
     
     private List<Libro> cargarTodos() throws IOException {
         List<Libro> lista = new ArrayList<>();
+        lineasDescartadas = 0;
         if (!archivoCsv.exists()) {
             return lista; // Si no existe, devuelve lista vacía
         }
         
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream(archivoCsv), StandardCharsets.UTF_8))) {
-            
-            String linea;
-            boolean primera = true;
-            
-            while ((linea = br.readLine()) != null) {
-                if (linea.trim().isEmpty()) continue;
-                
-                // Saltar cabecera si es la primera línea
-                if (primera) {
-                    primera = false;
-                    if (linea.toLowerCase().startsWith("id;")) {
-                        continue;
-                    }
-                }
-                
-                try {
-                    lista.add(Libro.fromCsv(linea));
-                } catch (Exception e) {
-                    System.err.println("Error al procesar línea CSV: " + linea + " - " + e.getMessage());
-                }
+        // Lectura por bytes sobre el archivo mapeado: solo se crean las String de título y autor
+        LectorCsvMapeado.recorrer(archivoCsv, fila -> {
+            try {
+                lista.add(libroDe(fila));
+            } catch (Exception e) {
+                lineasDescartadas++;
+                System.err.println("Error al procesar línea CSV: " + fila.linea() + " - " + e.getMessage());
+            }
+        });
+        return lista;
+    }
+    
+    // Lo mismo que Libro.fromCsv, con los campos leídos desde los bytes de la línea
+    private static Libro libroDe(LectorCsvMapeado.Fila fila) {
+        fila.exigirCampos(5);
+        Libro libro = new Libro(fila.texto(1), fila.texto(2), fila.entero(3));
+        libro.setId(fila.entero(0));
+        libro.setCantidadTotal(fila.entero(4));
+        return libro;
+    }
+    
+    // El CSV base, o su instantánea binaria si está habilitada y corresponde al CSV actual
+    private List<Libro> cargarBase() throws IOException {
+        if (!InstantaneaBinaria.habilitada() || !archivoCsv.exists()) {
+            return cargarTodos();
+        }
+        String firma = diario.firmaBase();
+        InstantaneaBinaria.Lector instantanea = InstantaneaBinaria.leer(archivoCsv, firma, 3, 2);
+        if (instantanea != null) {
+            return leerInstantanea(instantanea);
+        }
+        
+        List<Libro> lista = cargarTodos();
+        if (lineasDescartadas == 0) {
+            try {
+                escribirInstantanea(lista, firma);
+            } catch (IOException e) {
+                System.err.println("Error al escribir la instantánea de libros: " + e.getMessage());
             }
         }
         return lista;
     }
     
-    private int obtenerMaximoId() {
+    // Columnas: id, cantidadDisponible, cantidadTotal | titulo, autor
+    private void escribirInstantanea(List<Libro> lista, String firma) throws IOException {
+        InstantaneaBinaria.Escritor escritor = new InstantaneaBinaria.Escritor(lista.size());
+        int[] ids = escritor.columnaEnteros();
+        int[] disponibles = escritor.columnaEnteros();
+        int[] totales = escritor.columnaEnteros();
+        int[] titulos = escritor.columnaTextos();
+        int[] autores = escritor.columnaTextos();
+        for (int i = 0; i < lista.size(); i++) {
+            Libro libro = lista.get(i);
+            ids[i] = libro.getId();
+            disponibles[i] = libro.getCantidadDisponible();
+            totales[i] = libro.getCantidadTotal();
+            titulos[i] = escritor.cadena(libro.getTitulo());
+            autores[i] = escritor.cadena(libro.getAutor());
+        }
+        escritor.escribir(archivoCsv, firma);
+    }
+    
+    private static List<Libro> leerInstantanea(InstantaneaBinaria.Lector instantanea) {
+        int[] ids = instantanea.enteros(0);
+        int[] disponibles = instantanea.enteros(1);
+        int[] totales = instantanea.enteros(2);
+        String[] titulos = instantanea.textos(0);
+        String[] autores = instantanea.textos(1);
+        List<Libro> lista = new ArrayList<>(instantanea.filas());
+        for (int i = 0; i < instantanea.filas(); i++) {
+            Libro libro = new Libro(titulos[i], autores[i], disponibles[i]);
+            libro.setId(ids[i]);
+            libro.setCantidadTotal(totales[i]);
+            lista.add(libro);
+        }
+        return lista;
+    }
+    
+    private void cargarEnMemoria() {
         try {
-            List<Libro> libros = cargarTodos();
-            return libros.stream()
-                        .mapToInt(Libro::getId)
-                        .max()
-                        .orElse(0);
+            // CSV base y luego los cambios posteriores registrados en el diario
+            diario.cargar(() -> {
+                for (Libro libro : cargarBase()) {
+                    libros.put(libro.getId(), libro);
+                }
+            }, linea -> {
+                Libro libro = Libro.fromCsv(linea);
+                libros.put(libro.getId(), libro);
+            }, libros::remove);
         } catch (IOException e) {
-            return 0; // Si hay error al cargar, empezamos desde 0
+            System.err.println("Error al cargar libros: " + e.getMessage());
+        }
+        reconstruirIndices();
+    }
+    
+    private void reconstruirIndices() {
+        textoIndexado.clear();
+        indiceTexto.limpiar();
+        trigramasTitulo.limpiar();
+        trigramasAutor.limpiar();
+        disponibilidad.limpiar();
+        for (Libro libro : libros.values()) {
+            indexarTexto(libro);
+            disponibilidad.actualizar(libro.getId(), libro.estaDisponible());
+        }
+        indiceTexto.ajustarCapacidad();
+        trigramasTitulo.ajustarCapacidad();
+        trigramasAutor.ajustarCapacidad();
+        sugerenciasTitulos.reconstruir(libros.values(), Libro::getTitulo, Libro::getTituloNormalizado);
+        sugerenciasAutores.reconstruir(libros.values(), Libro::getAutor, Libro::getAutorNormalizado);
+    }
+    
+    private void indexar(Libro libro) {
+        disponibilidad.actualizar(libro.getId(), libro.estaDisponible());
+        String[] anterior = textoIndexado.get(libro.getId());
+        // Un préstamo o una devolución solo cambia la disponibilidad: el texto queda como estaba
+        if (anterior != null && anterior[0].equals(libro.getTituloNormalizado())
+                && anterior[1].equals(libro.getAutorNormalizado())) {
+            return;
+        }
+        desindexarTexto(libro.getId());
+        String[] texto = indexarTexto(libro);
+        sugerenciasTitulos.agregar(libro.getTitulo(), texto[0]);
+        sugerenciasAutores.agregar(libro.getAutor(), texto[1]);
+    }
+    
+    private String[] indexarTexto(Libro libro) {
+        int id = libro.getId();
+        String[] texto = {libro.getTituloNormalizado(), libro.getAutorNormalizado()};
+        textoIndexado.put(id, texto);
+        indiceTexto.agregar(id, texto[0], texto[1]);
+        trigramasTitulo.agregar(id, texto[0]);
+        trigramasAutor.agregar(id, texto[1]);
+        return texto;
+    }
+    
+    private void desindexar(int id) {
+        disponibilidad.quitar(id);
+        desindexarTexto(id);
+    }
+    
+    private void desindexarTexto(int id) {
+        String[] texto = textoIndexado.remove(id);
+        if (texto != null) {
+            indiceTexto.quitar(id, texto[0], texto[1]);
+            trigramasTitulo.quitar(id, texto[0]);
+            trigramasAutor.quitar(id, texto[1]);
+            sugerenciasTitulos.quitar(texto[0]);
+            sugerenciasAutores.quitar(texto[1]);
+        }
+    }
+    
+    // Incorpora los cambios que otros procesos escribieron desde la última lectura
+    void ponerAlDia() {
+        try {
+            diario.ponerAlDia(this::aplicarAlta, this::aplicarBaja, this::recargar);
+        } catch (IOException e) {
+            System.err.println("Error al leer cambios de libros: " + e.getMessage());
+        }
+    }
+    
+    private void ponerAlDiaSiCorresponde() {
+        if (diario.debeComprobar()) {
+            ponerAlDia();
+        }
+    }
+    
+    // Los cambios ajenos se copian sobre los objetos existentes, que otros repositorios referencian
+    private void aplicarAlta(String linea) {
+        Libro leido = Libro.fromCsv(linea);
+        Libro existente = libros.get(leido.getId());
+        if (existente != null) {
+            copiarCampos(leido, existente);
+            indexar(existente);
+        } else {
+            libros.put(leido.getId(), leido);
+            indexar(leido);
+        }
+        contadorId = Math.max(contadorId, leido.getId() + 1);
+    }
+    
+    private void aplicarBaja(int id) {
+        libros.remove(id);
+        desindexar(id);
+    }
+    
+    // Otro proceso compactó: se relee todo, conservando la identidad de los objetos ya entregados
+    private void recargar() {
+        Map<Integer, Libro> anteriores = new HashMap<>(libros.comoMapa());
+        libros.clear();
+        cargarEnMemoria();
+        for (Libro leido : new ArrayList<>(libros.values())) {
+            Libro existente = anteriores.get(leido.getId());
+            if (existente != null) {
+                copiarCampos(leido, existente);
+                libros.put(existente.getId(), existente);
+            }
+        }
+        contadorId = Math.max(contadorId, obtenerMaximoId() + 1);
+    }
+    
+    // Solo tras un error de escritura: memoria y disco vuelven a coincidir, sobre los mismos objetos
+    private void restaurarDesdeDisco() {
+        recargar();
+    }
+    
+    private static void copiarCampos(Libro origen, Libro destino) {
+        destino.setId(origen.getId());
+        destino.setTitulo(origen.getTitulo());
+        destino.setAutor(origen.getAutor());
+        destino.setCantidadDisponible(origen.getCantidadDisponible());
+        destino.setCantidadTotal(origen.getCantidadTotal());
+    }
+    
+    // Cada mutación se anexa al diario: su costo no depende del tamaño del CSV
+    private void registrarAlta(Libro libro) throws IOException {
+        asegurarArchivoBase();
+        diario.registrarAlta(libro.toCsv());
+    }
+    
+    private void registrarBaja(int id) throws IOException {
+        asegurarArchivoBase();
+        diario.registrarBaja(id);
+    }
+    
+    // El archivo base (con su cabecera) debe existir aunque los cambios vivan en el diario
+    private void asegurarArchivoBase() throws IOException {
+        if (!archivoCsv.exists()) {
+            guardarTodos(new ArrayList<>());
+            diario.baseCreada();
         }
     }
     
+    private int obtenerMaximoId() {
+        return libros.ultimoId();
+    }
+    
     @Override
     public boolean crear(Libro libro) {
+        // Cada mutación se hace con el cerrojo de escritura y sobre la vista al día,
+        // para que los IDs no choquen con los de otro proceso
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
+            ponerAlDia();
             libro.setId(contadorId++);
-            List<Libro> libros = cargarTodos();
-            libros.add(libro);
-            guardarTodos(libros);
-            return true;
-        } catch (IOException e) {
-            System.err.println("Error al crear libro: " + e.getMessage());
-            return false;
+            libros.put(libro.getId(), libro);
+            try {
+                registrarAlta(libro);
+                indexar(libro);
+                return true;
+            } catch (IOException e) {
+                // Deshacer el cambio en memoria para que coincida con el disco
+                libros.remove(libro.getId());
+                System.err.println("Error al crear libro: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            diario.desbloquear();
         }
     }
     
     @Override
     public Libro obtenerPorId(int id) {
-        try {
-            List<Libro> libros = cargarTodos();
-            return libros.stream()
-                        .filter(libro -> libro.getId() == id)
-                        .findFirst()
-                        .orElse(null);
-        } catch (IOException e) {
-            System.err.println("Error al obtener libro por ID: " + e.getMessage());
-            return null;
-        }
+        ponerAlDiaSiCorresponde();
+        return libros.get(id);
     }
     
     @Override
     public List<Libro> obtenerTodos() {
-        try {
-            return new ArrayList<>(cargarTodos());
-        } catch (IOException e) {
-            System.err.println("Error al obtener todos los libros: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        ponerAlDiaSiCorresponde();
+        return new ArrayList<>(libros.values());
     }
     
+    @Override
+    public int contar() {
+        ponerAlDiaSiCorresponde();
+        return libros.size();
+    }
+    
+    @Override
+    public List<Libro> obtenerPagina(int desde, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        return libros.pagina(desde, cantidad);
+    }
+    
+    @Override
+    public List<Libro> obtenerSiguientes(int despuesDeId, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        return libros.siguientes(despuesDeId, cantidad);
+    }
+    
+    @Override
+    public Stream<Libro> flujo() {
+        ponerAlDiaSiCorresponde();
+        return libros.flujo(0);
+    }
+    
+    /**
+     * Guarda título, autor y cantidad total del libro. La cantidad disponible no se toma del
+     * objeto recibido, que puede estar desactualizado respecto de otros procesos: se parte de
+     * la guardada y solo se ajusta por el cambio en el total. Los préstamos y devoluciones
+     * pasan por {@link #prestar(int)} y {@link #devolver(int)}.
+     */
     @Override
     public boolean actualizar(Libro libro) {
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            List<Libro> libros = cargarTodos();
-            for (int i = 0; i < libros.size(); i++) {
-                if (libros.get(i).getId() == libro.getId()) {
-                    libros.set(i, libro);
-                    guardarTodos(libros);
-                    return true;
-                }
+            // Ponerse al día no debe pisar lo que el llamador ya modificó en el objeto
+            Libro cambios = new Libro();
+            copiarCampos(libro, cambios);
+            ponerAlDia();
+            
+            Libro residente = libros.get(cambios.getId());
+            if (residente == null) {
+                return false;
             }
+            int disponibles = residente.getCantidadDisponible()
+                    + cambios.getCantidadTotal() - residente.getCantidadTotal();
+            cambios.setCantidadDisponible(Math.max(0, Math.min(disponibles, cambios.getCantidadTotal())));
+            try {
+                registrarAlta(cambios);
+            } catch (IOException e) {
+                // El llamador suele modificar el objeto residente en el lugar, así que no hay un
+                // "anterior" en memoria que reponer: se vuelve a leer lo guardado en disco
+                System.err.println("Error al actualizar libro: " + e.getMessage());
+                restaurarDesdeDisco();
+                return false;
+            }
+            copiarCampos(cambios, residente);
+            if (libro != residente) {
+                copiarCampos(cambios, libro);
+            }
+            indexar(residente);
+            return true;
+        } finally {
+            diario.desbloquear();
+        }
+    }
+    
+    /**
+     * Descuenta un ejemplar disponible del libro. La lectura, el descuento y el registro en el
+     * diario se hacen bajo el mismo cerrojo de escritura, así dos procesos que prestan a la vez
+     * no pierden ninguno de los dos descuentos.
+     * @return false si el libro no existe, no tiene ejemplares disponibles o no se pudo guardar.
+     */
+    public boolean prestar(int id) {
+        return cambiarDisponibilidad(id, -1);
+    }
+    
+    /** Repone un ejemplar del libro, sin pasar de su cantidad total. */
+    public boolean devolver(int id) {
+        return cambiarDisponibilidad(id, 1);
+    }
+    
+    private boolean cambiarDisponibilidad(int id, int cambio) {
+        if (!diario.intentarBloquearEscritura()) {
             return false;
-        } catch (IOException e) {
-            System.err.println("Error al actualizar libro: " + e.getMessage());
-            return false;
+        }
+        try {
+            ponerAlDia();
+            Libro libro = libros.get(id);
+            if (libro == null) {
+                return false;
+            }
+            int disponibles = libro.getCantidadDisponible() + cambio;
+            if (disponibles < 0) {
+                return false;
+            }
+            if (disponibles > libro.getCantidadTotal()) {
+                // Como Libro.devolver: con todos los ejemplares en su lugar no hay nada que reponer
+                return true;
+            }
+            // El objeto residente solo cambia una vez que el registro quedó escrito
+            Libro cambiado = new Libro();
+            copiarCampos(libro, cambiado);
+            cambiado.setCantidadDisponible(disponibles);
+            try {
+                registrarAlta(cambiado);
+            } catch (IOException e) {
+                System.err.println("Error al actualizar la disponibilidad del libro: " + e.getMessage());
+                return false;
+            }
+            libro.setCantidadDisponible(disponibles);
+            indexar(libro);
+            return true;
+        } finally {
+            diario.desbloquear();
         }
     }
     
     @Override
     public boolean eliminar(int id) {
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            List<Libro> libros = cargarTodos();
-            boolean eliminado = libros.removeIf(libro -> libro.getId() == id);
-            if (eliminado) {
-                guardarTodos(libros);
+            ponerAlDia();
+            Libro eliminado = libros.remove(id);
+            if (eliminado == null) {
+                return false;
             }
-            return eliminado;
-        } catch (IOException e) {
-            System.err.println("Error al eliminar libro: " + e.getMessage());
-            return false;
+            try {
+                registrarBaja(id);
+                desindexar(id);
+                return true;
+            } catch (IOException e) {
+                libros.put(id, eliminado);
+                System.err.println("Error al eliminar libro: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            diario.desbloquear();
         }
     }
     
     // Métodos específicos
+    // Las búsquedas no distinguen mayúsculas ni tildes: se comparan las claves normalizadas
     public List<Libro> buscarPorTitulo(String titulo) {
-        try {
-            List<Libro> libros = cargarTodos();
-            return libros.stream()
-                        .filter(libro -> libro.getTitulo().toLowerCase()
-                                             .contains(titulo.toLowerCase()))
-                        .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al buscar por título: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        ponerAlDiaSiCorresponde();
+        String busqueda = NormalizadorTexto.normalizar(titulo);
+        // Los trigramas acotan los candidatos; después se verifica que el título contenga el texto
+        return filtrar(trigramasTitulo.candidatos(busqueda), busqueda,
+                       libro -> libro.getTituloNormalizado().contains(busqueda));
+    }
+    
+    /**
+     * Una página de buscarPorTitulo: hasta cantidad libros con ID mayor que despuesDeId. Solo
+     * se verifican los candidatos necesarios para llenarla.
+     */
+    public List<Libro> buscarPorTitulo(String titulo, int despuesDeId, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        String busqueda = NormalizadorTexto.normalizar(titulo);
+        return filtrarPagina(trigramasTitulo.candidatos(busqueda),
+                             libro -> libro.getTituloNormalizado().contains(busqueda), despuesDeId, cantidad);
     }
     
     public List<Libro> buscarPorAutor(String autor) {
-        try {
-            List<Libro> libros = cargarTodos();
-            return libros.stream()
-                        .filter(libro -> libro.getAutor().toLowerCase()
-                                             .contains(autor.toLowerCase()))
-                        .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al buscar por autor: " + e.getMessage());
-            return new ArrayList<>();
+        ponerAlDiaSiCorresponde();
+        String busqueda = NormalizadorTexto.normalizar(autor);
+        return filtrar(trigramasAutor.candidatos(busqueda), busqueda,
+                       libro -> libro.getAutorNormalizado().contains(busqueda));
+    }
+    
+    /**
+     * Busca libros por palabras completas en el título o el autor.
+     * @param todas true para exigir todas las palabras de la consulta (AND), false para
+     *              aceptar cualquiera de ellas (OR).
+     */
+    public List<Libro> buscarPorPalabras(String consulta, boolean todas) {
+        ponerAlDiaSiCorresponde();
+        return porIds(indiceTexto.buscarPalabras(NormalizadorTexto.normalizar(consulta), todas));
+    }
+    
+    /**
+     * Los {@code maximo} libros más relevantes para la consulta entre los dados (normalmente
+     * el resultado de otra búsqueda), del más relevante al menos; ver {@link RankingBM25}.
+     * Se eligen con un montículo acotado, sin ordenar todas las coincidencias.
+     */
+    public List<Libro> masRelevantes(List<Libro> coincidencias, String consulta, int maximo) {
+        ponerAlDiaSiCorresponde();
+        RankingBM25 ranking = new RankingBM25(indiceTexto, libros.size(), NormalizadorTexto.normalizar(consulta));
+        MejoresK<Libro> mejores = new MejoresK<>(Math.min(maximo, coincidencias.size()));
+        for (Libro libro : coincidencias) {
+            mejores.agregar(libro, ranking.puntuar(libro.getTituloNormalizado(), libro.getAutorNormalizado(),
+                                                   libro.estaDisponible()));
         }
+        return mejores.enOrden();
     }
     
-    public List<Libro> obtenerLibrosDisponibles() {
-        try {
-            List<Libro> libros = cargarTodos();
-            return libros.stream()
-                        .filter(Libro::estaDisponible)
+    /**
+     * Búsqueda tolerante a errores de tipeo ("Cervantez", "Orwel"): libros cuyo título tiene,
+     * por cada palabra de la consulta, una palabra igual o a una o dos ediciones de distancia.
+     * Los más parecidos salen primero.
+     */
+    public List<Libro> buscarPorTituloAproximado(String titulo) {
+        return buscarAproximado(titulo, true);
+    }
+    
+    public List<Libro> buscarPorAutorAproximado(String autor) {
+        return buscarAproximado(autor, false);
+    }
+    
+    private List<Libro> buscarAproximado(String texto, boolean enTitulo) {
+        ponerAlDiaSiCorresponde();
+        List<Map<String, Integer>> expansiones = indiceTexto.expandir(NormalizadorTexto.normalizar(texto), enTitulo);
+        int[] ids = indiceTexto.buscarExpansiones(expansiones, enTitulo);
+        
+        // Si cada palabra tiene una sola expansión, todos los resultados se parecen por igual
+        boolean hayQueOrdenar = false;
+        for (Map<String, Integer> expansion : expansiones) {
+            hayQueOrdenar |= expansion.size() > 1;
+        }
+        if (!hayQueOrdenar) {
+            return porIds(ids);
+        }
+        
+        // Suma, por palabra de la consulta, de la menor distancia a una palabra del campo indexado
+        long[] porDistancia = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            String[] indexado = textoIndexado.get(ids[i]);
+            List<String> palabras = IndiceTextoLibros.palabras(indexado[enTitulo ? 0 : 1]);
+            int total = 0;
+            for (Map<String, Integer> expansion : expansiones) {
+                int menor = Integer.MAX_VALUE;
+                for (String palabra : palabras) {
+                    menor = Math.min(menor, expansion.getOrDefault(palabra, Integer.MAX_VALUE));
+                }
+                total += menor;
+            }
+            porDistancia[i] = ((long) total << 32) | ids[i];
+        }
+        Arrays.sort(porDistancia);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) porDistancia[i];
+        }
+        return porIds(ids);
+    }
+    
+    // candidatos == null: la consulta es muy corta para los trigramas, se recorre todo el catálogo
+    private List<Libro> filtrar(int[] candidatos, String consulta, Predicate<Libro> condicion) {
+        if (candidatos == null) {
+            return libros.values().stream()
+                        .filter(condicion)
                         .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al obtener libros disponibles: " + e.getMessage());
-            return new ArrayList<>();
         }
+        if (IndiceTrigramas.esExacta(consulta)) {
+            return porIds(candidatos);
+        }
+        List<Libro> resultado = new ArrayList<>();
+        for (int id : candidatos) {
+            Libro libro = libros.get(id);
+            if (libro != null && condicion.test(libro)) {
+                resultado.add(libro);
+            }
+        }
+        return resultado;
+    }
+    
+    private List<Libro> filtrarPagina(int[] candidatos, Predicate<Libro> condicion, int despuesDeId, int cantidad) {
+        List<Libro> resultado = new ArrayList<>(Math.min(Math.max(cantidad, 0), 1024));
+        if (candidatos == null) {
+            libros.flujo(despuesDeId).filter(condicion).limit(Math.max(cantidad, 0)).forEach(resultado::add);
+            return resultado;
+        }
+        int inicio = Arrays.binarySearch(candidatos, despuesDeId);
+        inicio = inicio >= 0 ? inicio + 1 : -inicio - 1;
+        for (int i = inicio; i < candidatos.length && resultado.size() < cantidad; i++) {
+            Libro libro = libros.get(candidatos[i]);
+            if (libro != null && condicion.test(libro)) {
+                resultado.add(libro);
+            }
+        }
+        return resultado;
+    }
+    
+    private List<Libro> porIds(int[] ids) {
+        List<Libro> resultado = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Libro libro = libros.get(id);
+            if (libro != null) {
+                resultado.add(libro);
+            }
+        }
+        return resultado;
+    }
+    
+    /** Los libros que cumplen la consulta, en orden de ID; ver {@link PlanConsulta}. */
+    public List<Libro> ejecutar(Consulta.Libros consulta) {
+        return ejecutar(consulta, 0, Integer.MAX_VALUE);
+    }
+    
+    /** Una página de ejecutar: hasta cantidad libros con ID mayor que despuesDeId. */
+    public List<Libro> ejecutar(Consulta.Libros consulta, int despuesDeId, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        return planear(consulta).ejecutar(libros::get, libros::flujo, despuesDeId, cantidad);
+    }
+    
+    /** Qué índice usaría la consulta y cuántos candidatos se estiman, sin ejecutarla. */
+    public String explicar(Consulta.Libros consulta) {
+        ponerAlDiaSiCorresponde();
+        return planear(consulta).explicar();
+    }
+    
+    private PlanConsulta<Libro> planear(Consulta.Libros consulta) {
+        return PlanConsulta.planear(consulta, this::accesoIndice, libros.size());
+    }
+    
+    private PlanConsulta.AccesoIndice accesoIndice(Consulta.Filtro<Libro> filtro) {
+        switch (filtro.campo) {
+            case TITULO:
+                return accesoTrigramas(trigramasTitulo, "trigramas de título", (String) filtro.valor);
+            case AUTOR:
+                return accesoTrigramas(trigramasAutor, "trigramas de autor", (String) filtro.valor);
+            case TITULO_O_AUTOR: {
+                String texto = (String) filtro.valor;
+                int enTitulo = trigramasTitulo.estimarCandidatos(texto);
+                int enAutor = trigramasAutor.estimarCandidatos(texto);
+                if (enTitulo < 0 || enAutor < 0) {
+                    return null;
+                }
+                return new PlanConsulta.AccesoIndice("trigramas de título y de autor", enTitulo + enAutor,
+                        () -> ListaIds.unir(trigramasTitulo.candidatos(texto), trigramasAutor.candidatos(texto)));
+            }
+            case DISPONIBLE:
+                return new PlanConsulta.AccesoIndice("disponibilidad (mapa de bits)", disponibilidad.cantidad(),
+                                                     disponibilidad::ids, disponibilidad::contiene);
+            default:
+                return null;
+        }
+    }
+    
+    private static PlanConsulta.AccesoIndice accesoTrigramas(IndiceTrigramas indice, String nombre, String texto) {
+        int estimados = indice.estimarCandidatos(texto);
+        return estimados < 0 ? null : new PlanConsulta.AccesoIndice(nombre, estimados, () -> indice.candidatos(texto));
+    }
+    
+    public List<Libro> obtenerLibrosDisponibles() {
+        return ejecutar(Consulta.libros().disponibles());
+    }
+    
+    /** Cuántos libros tienen algún ejemplar disponible, sin recorrer el catálogo. */
+    public int contarDisponibles() {
+        ponerAlDiaSiCorresponde();
+        return disponibilidad.cantidad();
     }
 
+    /**
+     * Títulos que empiezan por el texto dado (sin distinguir mayúsculas ni tildes), para
+     * autocompletar: primero los más repetidos y luego en orden alfabético.
+     */
+    public List<String> sugerirTitulos(String prefijo, int maximo) {
+        ponerAlDiaSiCorresponde();
+        return sugerenciasTitulos.sugerir(NormalizadorTexto.normalizar(prefijo), maximo);
+    }
+    
+    /** Autores que empiezan por el texto dado; los que tienen más libros primero. */
+    public List<String> sugerirAutores(String prefijo, int maximo) {
+        ponerAlDiaSiCorresponde();
+        return sugerenciasAutores.sugerir(NormalizadorTexto.normalizar(prefijo), maximo);
+    }
+    
+    /** Tamaño en memoria de los índices de búsqueda de libros. */
+    public List<EstadisticasIndice> getEstadisticasIndices() {
+        // Nodo del HashMap, clave Integer, hueco y arreglo de dos textos por libro
+        EstadisticasIndice textos = new EstadisticasIndice("texto indexado por libro", textoIndexado.size(),
+                                                           textoIndexado.size(), 80L * textoIndexado.size());
+        return List.of(indiceTexto.estadisticas(), trigramasTitulo.estadisticas(),
+                       trigramasAutor.estadisticas(), disponibilidad.estadisticas(), sugerenciasTitulos.estadisticas(),
+                       sugerenciasAutores.estadisticas(), textos);
+    }
+    
     public List<Libro> getLibros() {
         return obtenerTodos();
     }
     
+    public void setPoliticaCompactacion(PoliticaCompactacion politica) {
+        diario.setPoliticaCompactacion(politica);
+    }
+    
+    public void setPoliticaDurabilidad(PoliticaDurabilidad politica) {
+        try {
+            diario.setPoliticaDurabilidad(politica);
+        } catch (IOException e) {
+            System.err.println("Error al escribir los cambios pendientes: " + e.getMessage());
+        }
+    }
+    
+    public PoliticaDurabilidad getPoliticaDurabilidad() {
+        return diario.getPoliticaDurabilidad();
+    }
+    
+    public MetricasEscritura getMetricasEscritura() {
+        return diario.getMetricas();
+    }
+    
+    /**
+     * Escribe en disco las mutaciones que la política de durabilidad haya dejado pendientes.
+     * @return false si la escritura falló; los cambios siguen pendientes y se reintentarán.
+     */
+    public boolean sincronizar() {
+        try {
+            diario.vaciar();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al escribir los cambios pendientes: " + e.getMessage());
+            return false;
+        }
+    }
+    
     public String rutaAbsoluta() {
         try {
             return archivoCsv.getCanonicalPath();
@@ -0,0 +1,71 @@
+package repositorio;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bosquejo count-min: una matriz de filas × ancho contadores y una función de hash por fila.
+ * Sumar a una clave suma en una celda de cada fila; la estimación es el mínimo de esas celdas,
+ * que nunca es menor que el valor real (mientras ningún valor real sea negativo) y lo excede
+ * en más de e/ancho × total con probabilidad a lo sumo e^-filas.
+ *
+ * Es lineal: restar lo que se sumó deja el bosquejo como estaba, así una ventana deslizante
+ * se mantiene restando los préstamos del día que sale.
+ */
+final class BosquejoConteoMinimo {
+    // Semillas fijas: dos procesos con los mismos datos dan las mismas estimaciones
+    private static final long SEMILLA = 0x5DEECE66DL;
+
+    private final int ancho;
+    private final int[] contadores;
+    private final long[] semillas;
+    private long total;
+
+    BosquejoConteoMinimo(int filas, int ancho) {
+        this.ancho = ancho;
+        this.contadores = new int[filas * ancho];
+        this.semillas = new long[filas];
+        Random azar = new Random(SEMILLA);
+        for (int fila = 0; fila < filas; fila++) {
+            semillas[fila] = azar.nextLong() | 1;
+        }
+    }
+
+    void sumar(int clave, int cambio) {
+        for (int fila = 0; fila < semillas.length; fila++) {
+            contadores[celda(fila, clave)] += cambio;
+        }
+        total += cambio;
+    }
+
+    int estimar(int clave) {
+        int minimo = Integer.MAX_VALUE;
+        for (int fila = 0; fila < semillas.length; fila++) {
+            minimo = Math.min(minimo, contadores[celda(fila, clave)]);
+        }
+        return Math.max(minimo, 0);
+    }
+
+    /** Suma de todo lo agregado: el N de la cota de error. */
+    long total() {
+        return total;
+    }
+
+    void limpiar() {
+        Arrays.fill(contadores, 0);
+        total = 0;
+    }
+
+    long bytesEstimados() {
+        return 16 + 16 + 4L * contadores.length + 16 + 8L * semillas.length;
+    }
+
+    private int celda(int fila, int clave) {
+        // Multiplicación por una constante impar y mezcla de los bits altos (como en SplitMix64)
+        long h = (clave + 0x9E3779B97F4A7C15L) * semillas[fila];
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return fila * ancho + (int) ((h >>> 1) % ancho);
+    }
+}
@@ -0,0 +1,137 @@
+package repositorio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cerrojo entre procesos de un archivo de datos y sus diarios, sobre un archivo ".lock" propio
+ * que nunca se renombra ni se borra. Usa dos regiones de bloqueo de FileChannel:
+ * - datos: compartido para leer (cargas y puestas al día), exclusivo para escribir
+ *   (anexar al diario, rotarlo, reemplazar el CSV base);
+ * - compactación: exclusivo mientras un proceso compacta, para que no haya dos compactaciones
+ *   a la vez ni se borren los temporales de una compactación en curso.
+ * Los bloqueos de archivo pertenecen a toda la JVM, así que dentro del proceso hay un único
+ * cerrojo por archivo (por ruta canónica) y los hilos se coordinan con un ReentrantLock.
+ */
+final class CerrojoDatos {
+    private static final Map<String, CerrojoDatos> REGISTRO = new ConcurrentHashMap<>();
+    private static final long REGION_DATOS = 0;
+    private static final long REGION_COMPACTACION = 1;
+
+    private final File archivo;
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final AtomicBoolean compactando = new AtomicBoolean();
+    private FileChannel canal;
+    private FileLock bloqueoDatos;
+    private FileLock bloqueoCompactacion;
+    private boolean exclusivo;
+
+    private CerrojoDatos(File archivo) {
+        this.archivo = archivo;
+    }
+
+    /** Cerrojo compartido por todos los repositorios del proceso que usan el mismo archivo base. */
+    static CerrojoDatos para(File archivoBase) {
+        File absoluto = archivoBase.getAbsoluteFile();
+        String ruta;
+        try {
+            ruta = absoluto.getCanonicalPath();
+        } catch (IOException e) {
+            ruta = absoluto.getPath();
+        }
+        if (ruta.toLowerCase().endsWith(".csv")) {
+            ruta = ruta.substring(0, ruta.length() - 4);
+        }
+        return REGISTRO.computeIfAbsent(ruta, r -> new CerrojoDatos(new File(r + ".lock")));
+    }
+
+    void bloquearLectura() throws IOException {
+        bloquear(true);
+    }
+
+    void bloquearEscritura() throws IOException {
+        bloquear(false);
+    }
+
+    private void bloquear(boolean compartido) throws IOException {
+        mutex.lock();
+        if (mutex.getHoldCount() > 1) {
+            // Reentrada: el bloqueo exterior ya cubre la operación, salvo que pida más de lo que tiene
+            if (!compartido && !exclusivo) {
+                mutex.unlock();
+                throw new IllegalStateException("No se puede pasar de un bloqueo de lectura a uno de escritura");
+            }
+            return;
+        }
+        try {
+            bloqueoDatos = canal().lock(REGION_DATOS, 1, compartido);
+            exclusivo = !compartido;
+        } catch (IOException | RuntimeException e) {
+            mutex.unlock();
+            throw e;
+        }
+    }
+
+    void desbloquear() {
+        try {
+            if (mutex.getHoldCount() == 1 && bloqueoDatos != null) {
+                try {
+                    bloqueoDatos.release();
+                } catch (IOException e) {
+                    System.err.println("Error al liberar el bloqueo de " + archivo.getName() + ": " + e.getMessage());
+                }
+                bloqueoDatos = null;
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /** @return false si este u otro proceso ya está compactando estos datos. */
+    boolean intentarCompactar() {
+        if (!compactando.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            bloqueoCompactacion = canal().tryLock(REGION_COMPACTACION, 1, false);
+        } catch (IOException e) {
+            System.err.println("Error al bloquear " + archivo.getName() + ": " + e.getMessage());
+            bloqueoCompactacion = null;
+        }
+        if (bloqueoCompactacion == null) {
+            compactando.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    void terminarCompactacion() {
+        try {
+            bloqueoCompactacion.release();
+        } catch (IOException e) {
+            System.err.println("Error al liberar el bloqueo de " + archivo.getName() + ": " + e.getMessage());
+        }
+        bloqueoCompactacion = null;
+        compactando.set(false);
+    }
+
+    private synchronized FileChannel canal() throws IOException {
+        // Un hilo interrumpido mientras esperaba el bloqueo deja el canal cerrado
+        if (canal == null || !canal.isOpen()) {
+            File directorio = archivo.getParentFile();
+            if (directorio != null && !directorio.exists()) {
+                directorio.mkdirs();
+            }
+            canal = FileChannel.open(archivo.toPath(), StandardOpenOption.CREATE,
+                                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return canal;
+    }
+}
@@ -0,0 +1,143 @@
+package repositorio;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Montículo de mínimos de préstamos activos por fecha de devolución esperada. Cada entrada es
+ * un long con el día (epoch day) en la parte alta y el ID en la baja, así que el mínimo es el
+ * préstamo que vence primero y no hay una caja Long por préstamo.
+ *
+ * Las entradas no se quitan cuando un préstamo se devuelve o cambia de fecha: quien extrae
+ * verifica contra el índice que la entrada siga vigente y descarta las viejas. Para que no se
+ * acumulen, {@link #depurar} deja solo las vigentes cuando las viejas pasan a ser mayoría.
+ */
+final class ColaVencimientos {
+    private long[] monticulo = new long[16];
+    private int tamano;
+
+    static long entrada(long dia, int id) {
+        return (dia << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    static long dia(long entrada) {
+        return entrada >> 32;
+    }
+
+    static int id(long entrada) {
+        return (int) entrada;
+    }
+
+    void agregar(long dia, int id) {
+        if (tamano == monticulo.length) {
+            monticulo = Arrays.copyOf(monticulo, tamano * 2);
+        }
+        monticulo[tamano] = entrada(dia, id);
+        subir(tamano++);
+    }
+
+    void limpiar() {
+        tamano = 0;
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    /** Saca y devuelve las entradas con día anterior a {@code hasta}, de la que vence antes a la última. */
+    long[] extraerAnterioresA(long hasta) {
+        long[] extraidas = new long[8];
+        int cantidad = 0;
+        while (tamano > 0 && dia(monticulo[0]) < hasta) {
+            if (cantidad == extraidas.length) {
+                extraidas = Arrays.copyOf(extraidas, cantidad * 2);
+            }
+            extraidas[cantidad++] = monticulo[0];
+            monticulo[0] = monticulo[--tamano];
+            bajar(0);
+        }
+        return Arrays.copyOf(extraidas, cantidad);
+    }
+
+    /**
+     * Las mismas entradas que extraería {@link #extraerAnterioresA}, sin sacarlas: se recorre
+     * el montículo cortando en cuanto un nodo no vence antes, así que cuesta lo que se devuelve.
+     */
+    long[] anterioresA(long hasta) {
+        long[] encontradas = new long[8];
+        int cantidad = 0;
+        int[] pendientes = new int[16];
+        int tope = 0;
+        if (tamano > 0) {
+            pendientes[tope++] = 0;
+        }
+        while (tope > 0) {
+            int i = pendientes[--tope];
+            if (dia(monticulo[i]) >= hasta) {
+                continue;
+            }
+            if (cantidad == encontradas.length) {
+                encontradas = Arrays.copyOf(encontradas, cantidad * 2);
+            }
+            encontradas[cantidad++] = monticulo[i];
+            if (tope + 2 > pendientes.length) {
+                pendientes = Arrays.copyOf(pendientes, pendientes.length * 2);
+            }
+            for (int hijo = 2 * i + 1; hijo <= 2 * i + 2 && hijo < tamano; hijo++) {
+                pendientes[tope++] = hijo;
+            }
+        }
+        return Arrays.copyOf(encontradas, cantidad);
+    }
+
+    /** Deja solo las entradas vigentes y rearma el montículo en tiempo lineal. */
+    void depurar(LongPredicate vigente) {
+        int quedan = 0;
+        for (int i = 0; i < tamano; i++) {
+            if (vigente.test(monticulo[i])) {
+                monticulo[quedan++] = monticulo[i];
+            }
+        }
+        tamano = quedan;
+        for (int i = tamano / 2 - 1; i >= 0; i--) {
+            bajar(i);
+        }
+    }
+
+    long bytesEstimados() {
+        return 16 + 8L * monticulo.length;
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (monticulo[padre] <= monticulo[i]) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int menor = i;
+            for (int hijo = 2 * i + 1; hijo <= 2 * i + 2 && hijo < tamano; hijo++) {
+                if (monticulo[hijo] < monticulo[menor]) {
+                    menor = hijo;
+                }
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        long valor = monticulo[a];
+        monticulo[a] = monticulo[b];
+        monticulo[b] = valor;
+    }
+}
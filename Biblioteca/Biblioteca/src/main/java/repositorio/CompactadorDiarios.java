@@ -0,0 +1,128 @@
+package repositorio;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compacta en segundo plano los diarios de cambios de los repositorios: funde el CSV base
+ * con el diario rotado en una instantánea nueva que se escribe a un archivo temporal, se
+ * fuerza a disco y se intercambia con un renombrado atómico.
+ * Trabaja sobre las líneas CSV (indexadas por el ID de la primera columna), sin tocar los
+ * mapas en memoria de los repositorios, por lo que nunca bloquea sus lecturas. Solo toma el
+ * cerrojo de escritura para rotar el diario y para reemplazar el CSV base.
+ */
+final class CompactadorDiarios {
+    private static final ExecutorService EJECUTOR = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "compactador-diarios");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    // Diarios con una compactación ya encolada, para no programarla dos veces
+    private static final Set<DiarioCambios> PROGRAMADOS = ConcurrentHashMap.newKeySet();
+
+    private CompactadorDiarios() {}
+
+    static void programarSiEsNecesario(DiarioCambios diario) {
+        if (diario.requiereCompactacion() && PROGRAMADOS.add(diario)) {
+            EJECUTOR.execute(() -> {
+                PROGRAMADOS.remove(diario);
+                try {
+                    compactar(diario);
+                } catch (IOException e) {
+                    System.err.println("Error al compactar " + diario.getArchivo() + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Funde el diario rotado con el CSV base. Si al terminar el diario activo volvió a
+     * superar el umbral, se programa otra pasada. Si otro proceso (u otro repositorio sobre
+     * los mismos archivos) ya está compactando, no hace nada.
+     */
+    static void compactar(DiarioCambios diario) throws IOException {
+        CerrojoDatos cerrojo = diario.getCerrojo();
+        if (!cerrojo.intentarCompactar()) {
+            return;
+        }
+        try {
+            fundir(diario);
+        } finally {
+            cerrojo.terminarCompactacion();
+        }
+        programarSiEsNecesario(diario);
+    }
+
+    private static void fundir(DiarioCambios diario) throws IOException {
+        File diarioRotado = diario.rotarParaCompactar();
+        if (diarioRotado == null) {
+            return;
+        }
+
+        File archivoBase = diario.getArchivoBase();
+        String[] cabecera = new String[1];
+        Map<Integer, String> filas = new LinkedHashMap<>();
+        List<String> sinId = new ArrayList<>();
+        leerBase(archivoBase, cabecera, filas, sinId);
+
+        DiarioCambios.leerRegistros(diarioRotado,
+                linea -> filas.put(idDeLinea(linea), linea),
+                filas::remove);
+
+        List<String> lineas = new ArrayList<>(filas.size() + sinId.size() + 1);
+        if (cabecera[0] != null) {
+            lineas.add(cabecera[0]);
+        }
+        lineas.addAll(filas.values());
+        lineas.addAll(sinId);
+        File temporal = EscrituraAtomica.escribirTemporal(archivoBase, lineas);
+
+        diario.reemplazarBase(temporal, diarioRotado);
+    }
+
+    // Las líneas sin ID válido no se pueden fundir con el diario, pero no se descartan: la
+    // compactación reescribe el CSV base y se perderían para siempre
+    private static void leerBase(File archivoBase, String[] cabecera, Map<Integer, String> filas,
+                                 List<String> sinId) throws IOException {
+        if (!archivoBase.exists()) {
+            return;
+        }
+
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(archivoBase), StandardCharsets.UTF_8))) {
+
+            String linea;
+            boolean primera = true;
+
+            while ((linea = br.readLine()) != null) {
+                if (linea.trim().isEmpty()) continue;
+
+                // Conservar la cabecera tal cual
+                if (primera) {
+                    primera = false;
+                    if (linea.toLowerCase().startsWith("id;")) {
+                        cabecera[0] = linea;
+                        continue;
+                    }
+                }
+
+                try {
+                    filas.put(idDeLinea(linea), linea);
+                } catch (NumberFormatException e) {
+                    System.err.println("Línea CSV sin ID válido durante la compactación, se conserva: " + linea);
+                    sinId.add(linea);
+                }
+            }
+        }
+    }
+
+    private static int idDeLinea(String linea) {
+        int separador = linea.indexOf(';');
+        return Integer.parseInt((separador < 0 ? linea : linea.substring(0, separador)).trim());
+    }
+}
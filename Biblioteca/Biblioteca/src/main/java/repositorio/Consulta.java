@@ -0,0 +1,212 @@
+package repositorio;
+
+import modelo.*;
+import util.NormalizadorTexto;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Consulta armada por partes: una lista de filtros que se cumplen todos a la vez (AND).
+ * Se arma con {@link #libros()}, {@link #usuarios()} o {@link #prestamos()} y se le pasa al
+ * repositorio correspondiente, que elige con {@link PlanConsulta} qué índice usar para
+ * obtener los candidatos y verifica el resto de los filtros sobre ellos. Si ningún filtro
+ * tiene índice se recorre todo el almacén.
+ *
+ * <pre>
+ *   repo.ejecutar(Consulta.libros().tituloOAutorContiene("garcia").disponibles());
+ *   repo.explicar(...)   // qué índice se eligió y por qué
+ * </pre>
+ *
+ * Los textos se comparan normalizados, igual que en las búsquedas de los repositorios.
+ */
+public abstract class Consulta<T> {
+    /** Campos por los que se puede filtrar; cada repositorio sabe cuáles tienen índice. */
+    enum Campo {
+        TITULO, AUTOR, TITULO_O_AUTOR, DISPONIBLE,
+        NOMBRE, EMAIL, EMAIL_PARCIAL, TIPO_USUARIO, ACTIVO, FECHA_REGISTRO,
+        ESTADO, USUARIO, LIBRO, FECHA_PRESTAMO, FECHA_DEVOLUCION_ESPERADA
+    }
+
+    /** Un filtro: el campo y el valor con que un índice lo puede resolver, y la condición exacta. */
+    static final class Filtro<T> {
+        final Campo campo;
+        final Object valor;
+        final Predicate<T> condicion;
+        final String descripcion;
+
+        Filtro(Campo campo, Object valor, Predicate<T> condicion, String descripcion) {
+            this.campo = campo;
+            this.valor = valor;
+            this.condicion = condicion;
+            this.descripcion = descripcion;
+        }
+    }
+
+    private final List<Filtro<T>> filtros = new ArrayList<>();
+
+    private Consulta() {
+    }
+
+    public static Libros libros() {
+        return new Libros();
+    }
+
+    public static Usuarios usuarios() {
+        return new Usuarios();
+    }
+
+    public static Prestamos prestamos() {
+        return new Prestamos();
+    }
+
+    List<Filtro<T>> getFiltros() {
+        return Collections.unmodifiableList(filtros);
+    }
+
+    boolean cumple(T entidad) {
+        for (Filtro<T> filtro : filtros) {
+            if (!filtro.condicion.test(entidad)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void agregar(Campo campo, Object valor, Predicate<T> condicion, String descripcion) {
+        filtros.add(new Filtro<>(campo, valor, condicion, descripcion));
+    }
+
+    // Rango de fechas con extremos incluidos; null en un extremo lo deja abierto
+    void agregarRango(Campo campo, Function<T, LocalDate> fecha, LocalDate desde, LocalDate hasta, String nombre) {
+        agregar(campo, null, entidad -> {
+            LocalDate valor = fecha.apply(entidad);
+            return valor != null && (desde == null || !valor.isBefore(desde))
+                                 && (hasta == null || !valor.isAfter(hasta));
+        }, nombre + " entre " + (desde == null ? "-" : desde) + " y " + (hasta == null ? "-" : hasta));
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner texto = new StringJoiner(" y ");
+        filtros.forEach(filtro -> texto.add(filtro.descripcion));
+        return filtros.isEmpty() ? "todos" : texto.toString();
+    }
+
+    public static final class Libros extends Consulta<Libro> {
+        private Libros() {
+        }
+
+        public Libros tituloContiene(String texto) {
+            String busqueda = NormalizadorTexto.normalizar(texto);
+            agregar(Campo.TITULO, busqueda, libro -> libro.getTituloNormalizado().contains(busqueda),
+                    "título contiene '" + busqueda + "'");
+            return this;
+        }
+
+        public Libros autorContiene(String texto) {
+            String busqueda = NormalizadorTexto.normalizar(texto);
+            agregar(Campo.AUTOR, busqueda, libro -> libro.getAutorNormalizado().contains(busqueda),
+                    "autor contiene '" + busqueda + "'");
+            return this;
+        }
+
+        public Libros tituloOAutorContiene(String texto) {
+            String busqueda = NormalizadorTexto.normalizar(texto);
+            agregar(Campo.TITULO_O_AUTOR, busqueda,
+                    libro -> libro.getTituloNormalizado().contains(busqueda)
+                          || libro.getAutorNormalizado().contains(busqueda),
+                    "título o autor contiene '" + busqueda + "'");
+            return this;
+        }
+
+        public Libros disponibles() {
+            agregar(Campo.DISPONIBLE, true, Libro::estaDisponible, "disponible");
+            return this;
+        }
+    }
+
+    public static final class Usuarios extends Consulta<Usuario> {
+        private Usuarios() {
+        }
+
+        public Usuarios nombreContiene(String texto) {
+            String busqueda = NormalizadorTexto.normalizar(texto);
+            agregar(Campo.NOMBRE, busqueda, usuario -> usuario.getNombreNormalizado().contains(busqueda),
+                    "nombre contiene '" + busqueda + "'");
+            return this;
+        }
+
+        public Usuarios email(String email) {
+            // La misma clave que el índice de emails del repositorio
+            String clave = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+            agregar(Campo.EMAIL, clave, usuario -> usuario.getEmail() != null
+                                   && usuario.getEmail().trim().toLowerCase(Locale.ROOT).equals(clave),
+                    "email = '" + clave + "'");
+            return this;
+        }
+
+        public Usuarios emailContiene(String texto) {
+            String busqueda = NormalizadorTexto.normalizar(texto);
+            agregar(Campo.EMAIL_PARCIAL, busqueda, usuario -> usuario.getEmailNormalizado().contains(busqueda),
+                    "email contiene '" + busqueda + "'");
+            return this;
+        }
+
+        public Usuarios tipo(TipoUsuario tipo) {
+            agregar(Campo.TIPO_USUARIO, tipo, usuario -> usuario.getTipoUsuario() == tipo, "tipo = " + tipo);
+            return this;
+        }
+
+        /** Usuarios de cualquiera de los tipos dados. */
+        public Usuarios tipos(Set<TipoUsuario> tipos) {
+            Set<TipoUsuario> copia = tipos.isEmpty() ? EnumSet.noneOf(TipoUsuario.class) : EnumSet.copyOf(tipos);
+            agregar(Campo.TIPO_USUARIO, copia, usuario -> copia.contains(usuario.getTipoUsuario()), "tipo en " + copia);
+            return this;
+        }
+
+        public Usuarios activos() {
+            agregar(Campo.ACTIVO, true, Usuario::isActivo, "activo");
+            return this;
+        }
+
+        public Usuarios registradosEntre(LocalDate desde, LocalDate hasta) {
+            agregarRango(Campo.FECHA_REGISTRO, Usuario::getFechaRegistro, desde, hasta, "registro");
+            return this;
+        }
+    }
+
+    public static final class Prestamos extends Consulta<Prestamo> {
+        private Prestamos() {
+        }
+
+        public Prestamos estado(EstadoPrestamo estado) {
+            agregar(Campo.ESTADO, estado, prestamo -> prestamo.getEstado() == estado, "estado = " + estado);
+            return this;
+        }
+
+        public Prestamos deUsuario(int usuarioId) {
+            agregar(Campo.USUARIO, usuarioId, prestamo -> prestamo.getUsuario().getId() == usuarioId,
+                    "usuario = " + usuarioId);
+            return this;
+        }
+
+        public Prestamos deLibro(int libroId) {
+            agregar(Campo.LIBRO, libroId, prestamo -> prestamo.getLibro().getId() == libroId,
+                    "libro = " + libroId);
+            return this;
+        }
+
+        public Prestamos prestadosEntre(LocalDate desde, LocalDate hasta) {
+            agregarRango(Campo.FECHA_PRESTAMO, Prestamo::getFechaPrestamo, desde, hasta, "préstamo");
+            return this;
+        }
+
+        public Prestamos vencenEntre(LocalDate desde, LocalDate hasta) {
+            agregarRango(Campo.FECHA_DEVOLUCION_ESPERADA, Prestamo::getFechaDevolucionEsperada,
+                         desde, hasta, "devolución esperada");
+            return this;
+        }
+    }
+}
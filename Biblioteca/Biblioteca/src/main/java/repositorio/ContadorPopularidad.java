@@ -0,0 +1,34 @@
+package repositorio;
+
+import java.time.LocalDate;
+
+/**
+ * Cuántas veces se prestó cada libro en cada {@link VentanaPopularidad}, por fecha de
+ * préstamo. El índice de préstamos le avisa cada alta y baja; las consultas corren antes las
+ * ventanas hasta hoy. La {@link PoliticaPopularidad} elige entre contar exacto o aproximado.
+ */
+interface ContadorPopularidad {
+
+    static ContadorPopularidad crear(PoliticaPopularidad politica) {
+        return politica.esExacta() ? new ContadorPopularidadExacto() : new ContadorPopularidadAproximado(politica);
+    }
+
+    void limpiar();
+
+    void agregar(int libroId, LocalDate prestadoEl);
+
+    void quitar(int libroId, LocalDate prestadoEl);
+
+    /** Corre las ventanas hasta la fecha dada, descontando los días que quedaron fuera de cada una. */
+    void avanzar(LocalDate fecha);
+
+    /** Los IDs de los K libros más prestados en la ventana, del más prestado al menos. */
+    int[] masPrestados(VentanaPopularidad ventana, int k);
+
+    int prestamos(VentanaPopularidad ventana, int libroId);
+
+    /** Préstamos hechos en el día dado, si está dentro del último año. */
+    int prestadosEl(LocalDate fecha);
+
+    EstadisticasIndice estadisticas();
+}
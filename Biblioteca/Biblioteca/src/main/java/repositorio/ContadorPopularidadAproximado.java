@@ -0,0 +1,162 @@
+package repositorio;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Conteo aproximado de popularidad, de memoria fija por ventana. Cada ventana tiene un
+ * {@link BosquejoConteoMinimo} con los préstamos por libro y un {@link ResumenFrecuentes} con
+ * los candidatos al ranking; de cada día del último año solo se guarda la lista de libros
+ * prestados (un int por préstamo), para restarla de los bosquejos cuando el día sale de la
+ * ventana.
+ *
+ * Los conteos que devuelve nunca son menores que los reales, y con la probabilidad de la
+ * {@link PoliticaPopularidad} no los exceden en más de error × préstamos de la ventana.
+ */
+final class ContadorPopularidadAproximado implements ContadorPopularidad {
+    private static final int DIAS_GUARDADOS = VentanaPopularidad.ANIO.getDias();
+
+    // Libros prestados en un día, con repetidos y sin orden
+    private static final class Dia {
+        int[] libros = new int[4];
+        int cantidad;
+
+        void agregar(int libroId) {
+            if (cantidad == libros.length) {
+                libros = Arrays.copyOf(libros, cantidad * 2);
+            }
+            libros[cantidad++] = libroId;
+        }
+
+        boolean quitar(int libroId) {
+            for (int i = 0; i < cantidad; i++) {
+                if (libros[i] == libroId) {
+                    libros[i] = libros[--cantidad];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final TreeMap<Long, Dia> dias = new TreeMap<>();
+    private final Map<VentanaPopularidad, BosquejoConteoMinimo> bosquejos = new EnumMap<>(VentanaPopularidad.class);
+    private final Map<VentanaPopularidad, ResumenFrecuentes> frecuentes = new EnumMap<>(VentanaPopularidad.class);
+    // Día (epoch day) al que están ajustadas las ventanas; solo avanza
+    private long hoy = LocalDate.now().toEpochDay();
+
+    ContadorPopularidadAproximado(PoliticaPopularidad politica) {
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            bosquejos.put(ventana, new BosquejoConteoMinimo(politica.filasBosquejo(), politica.anchoBosquejo()));
+            frecuentes.put(ventana, new ResumenFrecuentes(politica.capacidadFrecuentes()));
+        }
+    }
+
+    @Override
+    public void limpiar() {
+        dias.clear();
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            bosquejos.get(ventana).limpiar();
+            frecuentes.get(ventana).limpiar();
+        }
+    }
+
+    @Override
+    public void agregar(int libroId, LocalDate prestadoEl) {
+        if (prestadoEl == null || prestadoEl.toEpochDay() < inicio(DIAS_GUARDADOS)) {
+            return;
+        }
+        long dia = prestadoEl.toEpochDay();
+        dias.computeIfAbsent(dia, d -> new Dia()).agregar(libroId);
+        contar(libroId, dia, 1);
+    }
+
+    @Override
+    public void quitar(int libroId, LocalDate prestadoEl) {
+        if (prestadoEl == null) {
+            return;
+        }
+        long dia = prestadoEl.toEpochDay();
+        Dia registro = dias.get(dia);
+        if (registro == null || !registro.quitar(libroId)) {
+            return;
+        }
+        if (registro.cantidad == 0) {
+            dias.remove(dia);
+        }
+        contar(libroId, dia, -1);
+    }
+
+    private void contar(int libroId, long dia, int cambio) {
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            if (dia >= inicio(ventana.getDias())) {
+                BosquejoConteoMinimo bosquejo = bosquejos.get(ventana);
+                bosquejo.sumar(libroId, cambio);
+                frecuentes.get(ventana).ofrecer(libroId, bosquejo.estimar(libroId));
+            }
+        }
+    }
+
+    @Override
+    public void avanzar(LocalDate fecha) {
+        long nuevo = fecha.toEpochDay();
+        if (nuevo <= hoy) {
+            return;
+        }
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            BosquejoConteoMinimo bosquejo = bosquejos.get(ventana);
+            long desde = inicio(ventana.getDias());
+            long hasta = nuevo - ventana.getDias() + 1;
+            SortedMap<Long, Dia> salidos = dias.subMap(desde, true, hasta, false);
+            if (salidos.isEmpty()) {
+                continue;
+            }
+            for (Dia salido : salidos.values()) {
+                for (int i = 0; i < salido.cantidad; i++) {
+                    bosquejo.sumar(salido.libros[i], -1);
+                }
+            }
+            frecuentes.get(ventana).reestimar(bosquejo::estimar);
+        }
+        hoy = nuevo;
+        dias.headMap(inicio(DIAS_GUARDADOS), false).clear();
+    }
+
+    @Override
+    public int[] masPrestados(VentanaPopularidad ventana, int k) {
+        return frecuentes.get(ventana).mejores(k);
+    }
+
+    @Override
+    public int prestamos(VentanaPopularidad ventana, int libroId) {
+        return bosquejos.get(ventana).estimar(libroId);
+    }
+
+    @Override
+    public int prestadosEl(LocalDate fecha) {
+        Dia registro = dias.get(fecha.toEpochDay());
+        return registro == null ? 0 : registro.cantidad;
+    }
+
+    @Override
+    public EstadisticasIndice estadisticas() {
+        long entradas = 0;
+        long bytes = 0;
+        for (Dia dia : dias.values()) {
+            entradas += dia.cantidad;
+            // Nodo del TreeMap con su clave Long, el registro y su arreglo
+            bytes += 40 + 24 + 24 + 16 + 4L * dia.libros.length;
+        }
+        int monitoreados = 0;
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            bytes += bosquejos.get(ventana).bytesEstimados() + frecuentes.get(ventana).bytesEstimados();
+            monitoreados = Math.max(monitoreados, frecuentes.get(ventana).tamano());
+        }
+        return new EstadisticasIndice("popularidad aproximada", monitoreados, entradas, bytes);
+    }
+
+    // Primer día que entra en una ventana de tantos días que termina hoy
+    private long inicio(int diasVentana) {
+        return hoy - diasVentana + 1;
+    }
+}
@@ -0,0 +1,141 @@
+package repositorio;
+
+import util.MejoresK;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Conteo exacto de popularidad. Se guardan los préstamos de cada día del último año por libro;
+ * cada ventana lleva su propio conteo por libro, que se ajusta en cada alta o baja y, al
+ * cambiar el día, restando los días que quedaron fuera. Así ni el ranking ni los préstamos de
+ * hoy recorren el historial, pero la memoria crece con los libros distintos prestados.
+ */
+final class ContadorPopularidadExacto implements ContadorPopularidad {
+    private static final int DIAS_GUARDADOS = VentanaPopularidad.ANIO.getDias();
+
+    private static final class Dia {
+        final Map<Integer, Integer> porLibro = new HashMap<>();
+        int total;
+    }
+
+    private final TreeMap<Long, Dia> dias = new TreeMap<>();
+    private final Map<VentanaPopularidad, Map<Integer, Integer>> conteos = new EnumMap<>(VentanaPopularidad.class);
+    // Día (epoch day) al que están ajustadas las ventanas; solo avanza
+    private long hoy = LocalDate.now().toEpochDay();
+
+    ContadorPopularidadExacto() {
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            conteos.put(ventana, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void limpiar() {
+        dias.clear();
+        for (Map<Integer, Integer> conteo : conteos.values()) {
+            conteo.clear();
+        }
+    }
+
+    @Override
+    public void agregar(int libroId, LocalDate prestadoEl) {
+        cambiar(libroId, prestadoEl, 1);
+    }
+
+    @Override
+    public void quitar(int libroId, LocalDate prestadoEl) {
+        cambiar(libroId, prestadoEl, -1);
+    }
+
+    private void cambiar(int libroId, LocalDate prestadoEl, int cambio) {
+        if (prestadoEl == null) {
+            return;
+        }
+        long dia = prestadoEl.toEpochDay();
+        // Fuera de todas las ventanas: no se guarda
+        if (dia < inicio(DIAS_GUARDADOS)) {
+            return;
+        }
+        Dia registro = dias.computeIfAbsent(dia, d -> new Dia());
+        sumar(registro.porLibro, libroId, cambio);
+        registro.total += cambio;
+        if (registro.total == 0) {
+            dias.remove(dia);
+        }
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            if (dia >= inicio(ventana.getDias())) {
+                sumar(conteos.get(ventana), libroId, cambio);
+            }
+        }
+    }
+
+    @Override
+    public void avanzar(LocalDate fecha) {
+        long nuevo = fecha.toEpochDay();
+        if (nuevo <= hoy) {
+            return;
+        }
+        for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+            Map<Integer, Integer> conteo = conteos.get(ventana);
+            long desde = inicio(ventana.getDias());
+            long hasta = nuevo - ventana.getDias() + 1;
+            for (Dia salido : dias.subMap(desde, true, hasta, false).values()) {
+                for (Map.Entry<Integer, Integer> libro : salido.porLibro.entrySet()) {
+                    sumar(conteo, libro.getKey(), -libro.getValue());
+                }
+            }
+        }
+        hoy = nuevo;
+        dias.headMap(inicio(DIAS_GUARDADOS), false).clear();
+    }
+
+    @Override
+    public int[] masPrestados(VentanaPopularidad ventana, int k) {
+        MejoresK<Integer> mejores = new MejoresK<>(k);
+        for (Map.Entry<Integer, Integer> libro : conteos.get(ventana).entrySet()) {
+            mejores.agregar(libro.getKey(), libro.getValue());
+        }
+        List<Integer> ids = mejores.enOrden();
+        int[] resultado = new int[ids.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = ids.get(i);
+        }
+        return resultado;
+    }
+
+    @Override
+    public int prestamos(VentanaPopularidad ventana, int libroId) {
+        return conteos.get(ventana).getOrDefault(libroId, 0);
+    }
+
+    @Override
+    public int prestadosEl(LocalDate fecha) {
+        Dia registro = dias.get(fecha.toEpochDay());
+        return registro == null ? 0 : registro.total;
+    }
+
+    @Override
+    public EstadisticasIndice estadisticas() {
+        // Por día y por ventana, un nodo del HashMap con su clave y su valor Integer y el hueco en la tabla
+        long entradas = 0;
+        for (Dia dia : dias.values()) {
+            entradas += dia.porLibro.size();
+        }
+        int libros = 0;
+        for (Map<Integer, Integer> conteo : conteos.values()) {
+            entradas += conteo.size();
+            libros = Math.max(libros, conteo.size());
+        }
+        long bytes = 72L * entradas + 96L * dias.size();
+        return new EstadisticasIndice("popularidad exacta", libros, entradas, bytes);
+    }
+
+    // Primer día que entra en una ventana de tantos días que termina hoy
+    private long inicio(int diasVentana) {
+        return hoy - diasVentana + 1;
+    }
+
+    private static void sumar(Map<Integer, Integer> conteo, int libroId, int cambio) {
+        conteo.merge(libroId, cambio, (a, b) -> a + b == 0 ? null : a + b);
+    }
+}
@@ -0,0 +1,528 @@
+package repositorio;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Diario de cambios de solo anexado asociado a un archivo CSV de entidades.
+ * Cada mutación agrega un único registro al final del diario, de modo que su costo
+ * no depende de la cantidad de entidades:
+ *   U;&lt;línea CSV de la entidad&gt;  (alta o modificación)
+ *   D;&lt;id&gt;                       (baja)
+ * El estado vigente se obtiene cargando el archivo base y reproduciendo el diario en orden.
+ * Al compactar, el diario se rota a un archivo ".compactando" que se funde con el CSV base
+ * en segundo plano, mientras las nuevas mutaciones siguen anexándose a un diario nuevo.
+ * Según la {@link PoliticaDurabilidad}, cada registro se fuerza a disco antes de confirmar la
+ * mutación o se acumula en memoria y se escribe por lotes desde {@link VaciadorDiarios}.
+ *
+ * Varios procesos pueden compartir los mismos archivos: los accesos se coordinan con
+ * {@link CerrojoDatos} y cada diario recuerda hasta dónde leyó, para incorporar solo los
+ * registros que otros procesos anexaron después (ver {@link #ponerAlDia}).
+ */
+class DiarioCambios {
+    static final String ALTA = "U;";
+    static final String BAJA = "D;";
+
+    private final File archivoBase;
+    private final File archivo;
+    private final File archivoCompactando;
+    private final CerrojoDatos cerrojo;
+    private volatile PoliticaCompactacion politica = PoliticaCompactacion.predeterminada();
+    private volatile PoliticaDurabilidad durabilidad = PoliticaDurabilidad.predeterminada();
+    private final MetricasEscritura metricas = new MetricasEscritura();
+
+    // Registros confirmados en memoria que aún no se escribieron (protegidos por this)
+    private ByteArrayOutputStream pendientes = new ByteArrayOutputStream();
+    private int registrosPendientes;
+    private boolean vaciadoProgramado;
+
+    // Lo que este proceso ya incorporó de disco; se modifica con el cerrojo tomado y se
+    // consulta sin él para decidir rápido si hace falta ponerse al día
+    private volatile Firma firmaBase = Firma.AUSENTE;
+    private volatile Object claveDiario;
+    private volatile long offsetDiario;
+    private volatile boolean alDiaEnRotacion;
+
+    // Intervalo mínimo entre comprobaciones de cambios externos en las lecturas
+    private static final long INTERVALO_COMPROBACION_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("biblioteca.sincronizacion.intervaloMs", 200));
+    private volatile long ultimaComprobacion = System.nanoTime();
+
+    /** Lectura del CSV base que realiza cada repositorio. */
+    interface CargaBase {
+        void cargar() throws IOException;
+    }
+
+    /** Fecha de modificación, tamaño e identidad de un archivo, para detectar que otro proceso lo reemplazó. */
+    private static final class Firma {
+        static final Firma AUSENTE = new Firma(-1, -1, null);
+
+        final long modificado;
+        final long tamano;
+        final Object clave;
+
+        private Firma(long modificado, long tamano, Object clave) {
+            this.modificado = modificado;
+            this.tamano = tamano;
+            this.clave = clave;
+        }
+
+        static Firma de(File archivo) throws IOException {
+            try {
+                BasicFileAttributes atributos = Files.readAttributes(archivo.toPath(), BasicFileAttributes.class);
+                return new Firma(atributos.lastModifiedTime().toMillis(), atributos.size(), atributos.fileKey());
+            } catch (NoSuchFileException e) {
+                return AUSENTE;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Firma)) {
+                return false;
+            }
+            Firma otra = (Firma) o;
+            return modificado == otra.modificado && tamano == otra.tamano && Objects.equals(clave, otra.clave);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modificado, tamano, clave);
+        }
+
+        @Override
+        public String toString() {
+            return modificado + "/" + tamano + "/" + clave;
+        }
+    }
+
+    DiarioCambios(File archivoCsv) {
+        this.archivoBase = archivoCsv;
+        String ruta = archivoCsv.getPath();
+        if (ruta.toLowerCase().endsWith(".csv")) {
+            ruta = ruta.substring(0, ruta.length() - 4);
+        }
+        this.archivo = new File(ruta + ".diario");
+        this.archivoCompactando = new File(ruta + ".diario.compactando");
+        this.cerrojo = CerrojoDatos.para(archivoCsv);
+
+        // Comprobación de arranque: temporales huérfanos y registros incompletos. Los temporales
+        // solo se borran si ningún proceso está compactando, porque podrían ser suyos.
+        try {
+            cerrojo.bloquearEscritura();
+            try {
+                boolean sinCompactacion = cerrojo.intentarCompactar();
+                try {
+                    EscrituraAtomica.recuperar(archivoBase, sinCompactacion, archivoCompactando, archivo);
+                } finally {
+                    if (sinCompactacion) {
+                        cerrojo.terminarCompactacion();
+                    }
+                }
+            } finally {
+                cerrojo.desbloquear();
+            }
+        } catch (IOException e) {
+            System.err.println("Error al bloquear " + archivoBase.getName() + ": " + e.getMessage());
+        }
+    }
+
+    void registrarAlta(String lineaCsv) throws IOException {
+        anexar(ALTA + lineaCsv);
+    }
+
+    void registrarBaja(int id) throws IOException {
+        anexar(BAJA + id);
+    }
+
+    /** Varias altas o modificaciones en un solo anexado: en modo SINCRONA, una sola escritura forzada. */
+    void registrarAltas(List<String> lineasCsv) throws IOException {
+        if (lineasCsv.isEmpty()) {
+            return;
+        }
+        StringBuilder registros = new StringBuilder();
+        for (String linea : lineasCsv) {
+            registros.append(ALTA).append(linea).append(System.lineSeparator());
+        }
+        anexar(registros.toString().getBytes(StandardCharsets.UTF_8), lineasCsv.size());
+    }
+
+    private void anexar(String registro) throws IOException {
+        anexar((registro + System.lineSeparator()).getBytes(StandardCharsets.UTF_8), 1);
+    }
+
+    private void anexar(byte[] datos, int registros) throws IOException {
+        PoliticaDurabilidad politica = durabilidad;
+
+        if (politica.esSincrona()) {
+            cerrojo.bloquearEscritura();
+            try {
+                // Lo que haya quedado de un modo diferido va primero, para conservar el orden
+                vaciarPendientes();
+                // El registro se fuerza a disco antes de confirmar la mutación
+                long inicio = System.nanoTime();
+                escribirEnDiario(datos, true);
+                metricas.registrarVaciado(registros, System.nanoTime() - inicio);
+            } finally {
+                cerrojo.desbloquear();
+            }
+            CompactadorDiarios.programarSiEsNecesario(this);
+            return;
+        }
+
+        synchronized (this) {
+            pendientes.write(datos, 0, datos.length);
+            int anteriores = registrosPendientes;
+            registrosPendientes += registros;
+            if (anteriores < politica.getTamanoLote() && registrosPendientes >= politica.getTamanoLote()) {
+                // Lote lleno: se escribe ya, sin esperar al resto de la ventana
+                VaciadorDiarios.programar(this, 0);
+            } else if (!vaciadoProgramado) {
+                // El primer registro de la ventana fija cuándo se escribe el lote
+                vaciadoProgramado = true;
+                VaciadorDiarios.programar(this, politica.getVentanaMs());
+            }
+        }
+    }
+
+    // Requiere el cerrojo de escritura
+    private void escribirEnDiario(byte[] datos, boolean forzar) throws IOException {
+        // Si nadie más escribió desde la última lectura, lo propio no hace falta releerlo
+        long longitud = archivo.length();
+        boolean alDia = longitud == offsetDiario && Objects.equals(claveDe(archivo), claveDiario);
+
+        EscrituraAtomica.anexar(archivo, datos, forzar);
+
+        if (alDia) {
+            offsetDiario = longitud + datos.length;
+            claveDiario = claveDe(archivo);
+        }
+    }
+
+    /**
+     * Escribe en un solo anexado los registros pendientes y, salvo en modo ASINCRONA, los
+     * fuerza a disco. Si la escritura falla, los registros siguen pendientes y se reintenta.
+     */
+    void vaciar() throws IOException {
+        boolean escrito;
+        cerrojo.bloquearEscritura();
+        try {
+            escrito = vaciarPendientes();
+        } finally {
+            cerrojo.desbloquear();
+        }
+        if (escrito) {
+            CompactadorDiarios.programarSiEsNecesario(this);
+        }
+    }
+
+    // Requiere el cerrojo de escritura
+    private boolean vaciarPendientes() throws IOException {
+        byte[] lote;
+        int registros;
+        synchronized (this) {
+            vaciadoProgramado = false;
+            if (registrosPendientes == 0) {
+                return false;
+            }
+            lote = pendientes.toByteArray();
+            registros = registrosPendientes;
+            pendientes = new ByteArrayOutputStream();
+            registrosPendientes = 0;
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            escribirEnDiario(lote, durabilidad.forzarADisco());
+        } catch (IOException e) {
+            synchronized (this) {
+                // Devolver el lote delante de lo que llegó mientras tanto
+                ByteArrayOutputStream restaurados = new ByteArrayOutputStream(lote.length + pendientes.size());
+                restaurados.write(lote, 0, lote.length);
+                pendientes.writeTo(restaurados);
+                pendientes = restaurados;
+                registrosPendientes += registros;
+                if (!vaciadoProgramado) {
+                    vaciadoProgramado = true;
+                    VaciadorDiarios.programar(this, Math.max(durabilidad.getVentanaMs(), 100));
+                }
+            }
+            throw e;
+        }
+        metricas.registrarVaciado(registros, System.nanoTime() - inicio);
+        return true;
+    }
+
+    /**
+     * Carga el estado vigente: el CSV base y luego los registros del diario en el orden en
+     * que fueron escritos (primero los de una compactación pendiente, luego los del diario activo).
+     * @param cargaBase lectura del CSV base.
+     * @param alAlta recibe la línea CSV de cada alta o modificación.
+     * @param alBaja recibe el ID de cada baja.
+     */
+    void cargar(CargaBase cargaBase, Consumer<String> alAlta, IntConsumer alBaja) throws IOException {
+        // Los registros aún en memoria también forman parte del estado vigente
+        vaciar();
+
+        cerrojo.bloquearLectura();
+        try {
+            firmaBase = Firma.de(archivoBase);
+            cargaBase.cargar();
+            leerRegistros(archivoCompactando, 0, alAlta, alBaja);
+            claveDiario = claveDe(archivo);
+            offsetDiario = leerRegistros(archivo, 0, alAlta, alBaja);
+            ultimaComprobacion = System.nanoTime();
+        } finally {
+            cerrojo.desbloquear();
+        }
+
+        // Un diario grande o una compactación interrumpida de una sesión anterior
+        CompactadorDiarios.programarSiEsNecesario(this);
+    }
+
+    /**
+     * Firma del CSV base que se está cargando, para validar una {@link InstantaneaBinaria}.
+     * Solo es fiable dentro de {@link CargaBase#cargar()}, que corre con el cerrojo tomado.
+     */
+    String firmaBase() {
+        return firmaBase.toString();
+    }
+
+    /** Indica si pasó el intervalo mínimo desde la última comprobación de cambios externos. */
+    boolean debeComprobar() {
+        return System.nanoTime() - ultimaComprobacion >= INTERVALO_COMPROBACION_NANOS;
+    }
+
+    /**
+     * Incorpora los cambios que otros procesos escribieron desde la última lectura: los
+     * registros nuevos del diario se entregan uno a uno; si otro proceso reemplazó el CSV base
+     * (compactó) y ya no se puede seguir el diario, se pide una recarga completa.
+     */
+    void ponerAlDia(Consumer<String> alAlta, IntConsumer alBaja, Runnable recargaCompleta) throws IOException {
+        ultimaComprobacion = System.nanoTime();
+        if (!hayCambiosExternos()) {
+            return;
+        }
+
+        // Lo propio primero, para que los registros ajenos queden antes en el diario
+        vaciar();
+
+        boolean recargar = false;
+        cerrojo.bloquearLectura();
+        try {
+            Object clave = claveDe(archivo);
+            if (!Firma.de(archivoBase).equals(firmaBase)) {
+                recargar = true;
+            } else if (claveDiario != null && !claveDiario.equals(clave)) {
+                // Otro proceso rotó el diario: lo que faltaba leer quedó en el archivo ".compactando"
+                if (claveDiario.equals(claveDe(archivoCompactando))) {
+                    leerRegistros(archivoCompactando, offsetDiario, alAlta, alBaja);
+                    claveDiario = clave;
+                    offsetDiario = leerRegistros(archivo, 0, alAlta, alBaja);
+                } else {
+                    recargar = true;
+                }
+            } else if (archivo.length() < offsetDiario) {
+                recargar = true;
+            } else {
+                claveDiario = clave;
+                offsetDiario = leerRegistros(archivo, offsetDiario, alAlta, alBaja);
+            }
+        } finally {
+            cerrojo.desbloquear();
+        }
+
+        if (recargar) {
+            recargaCompleta.run();
+        }
+    }
+
+    private boolean hayCambiosExternos() throws IOException {
+        Firma diarioActual = Firma.de(archivo);
+        long longitud = diarioActual == Firma.AUSENTE ? 0 : diarioActual.tamano;
+        return longitud != offsetDiario
+                || !Objects.equals(diarioActual.clave, claveDiario)
+                || !Firma.de(archivoBase).equals(firmaBase);
+    }
+
+    // Identidad del archivo (p. ej. el inodo), o null si no existe o el sistema no la ofrece
+    private static Object claveDe(File archivo) throws IOException {
+        try {
+            return Files.readAttributes(archivo.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    static void leerRegistros(File origen, Consumer<String> alAlta, IntConsumer alBaja) throws IOException {
+        leerRegistros(origen, 0, alAlta, alBaja);
+    }
+
+    /**
+     * Reproduce los registros de {@code origen} a partir de la posición {@code desde}.
+     * @return la posición hasta la que se leyó (el tamaño del archivo).
+     */
+    static long leerRegistros(File origen, long desde, Consumer<String> alAlta, IntConsumer alBaja) throws IOException {
+        if (!origen.exists()) {
+            return 0;
+        }
+
+        try (FileChannel canal = FileChannel.open(origen.toPath(), StandardOpenOption.READ)) {
+            long longitud = canal.size();
+            if (desde >= longitud) {
+                return longitud;
+            }
+            canal.position(desde);
+            BufferedReader br = new BufferedReader(Channels.newReader(canal, StandardCharsets.UTF_8.newDecoder(), -1));
+
+            String registro;
+            while ((registro = br.readLine()) != null) {
+                if (registro.trim().isEmpty()) continue;
+
+                try {
+                    if (registro.startsWith(ALTA)) {
+                        alAlta.accept(registro.substring(ALTA.length()));
+                    } else if (registro.startsWith(BAJA)) {
+                        alBaja.accept(Integer.parseInt(registro.substring(BAJA.length()).trim()));
+                    } else {
+                        System.err.println("Registro de diario desconocido: " + registro);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error al reproducir registro del diario: " + registro + " - " + e.getMessage());
+                }
+            }
+            return longitud;
+        }
+    }
+
+    /**
+     * Indica que este proceso acaba de crear el CSV base vacío (solo cabecera): no es un
+     * cambio externo que obligue a recargar. Requiere el cerrojo de escritura.
+     */
+    void baseCreada() throws IOException {
+        if (firmaBase == Firma.AUSENTE) {
+            firmaBase = Firma.de(archivoBase);
+        }
+    }
+
+    boolean requiereCompactacion() {
+        if (archivoCompactando.exists()) {
+            return true;
+        }
+        return archivo.exists() && politica.debeCompactar(archivo.length(), archivoBase.length());
+    }
+
+    /**
+     * Rota el diario activo para compactarlo. Si quedó una compactación pendiente se reutiliza
+     * y el diario activo se compactará en la siguiente pasada.
+     * @return el archivo a fundir con el CSV base, o null si no hay nada que compactar.
+     */
+    File rotarParaCompactar() throws IOException {
+        cerrojo.bloquearEscritura();
+        try {
+            if (archivoCompactando.exists()) {
+                // Sobrante de otra sesión o de otro proceso: tras fundirlo conviene recargar
+                alDiaEnRotacion = false;
+                return archivoCompactando;
+            }
+            if (!archivo.exists()) {
+                return null;
+            }
+
+            // Si este proceso ya leyó todo, la base compactada coincidirá con su vista
+            alDiaEnRotacion = archivo.length() == offsetDiario
+                    && Objects.equals(claveDe(archivo), claveDiario)
+                    && Firma.de(archivoBase).equals(firmaBase);
+            Files.move(archivo.toPath(), archivoCompactando.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            if (alDiaEnRotacion) {
+                claveDiario = null;
+                offsetDiario = 0;
+            }
+            return archivoCompactando;
+        } finally {
+            cerrojo.desbloquear();
+        }
+    }
+
+    /**
+     * Reemplaza atómicamente el CSV base por la instantánea compactada y descarta el diario
+     * ya incorporado. Si el proceso se interrumpe entre ambos pasos, el diario rotado se vuelve
+     * a reproducir sobre la nueva base sin efectos, porque sus registros son idempotentes.
+     */
+    void reemplazarBase(File instantanea, File diarioCompactado) throws IOException {
+        cerrojo.bloquearEscritura();
+        try {
+            EscrituraAtomica.reemplazar(instantanea, archivoBase);
+            Files.deleteIfExists(diarioCompactado.toPath());
+            EscrituraAtomica.sincronizarDirectorio(archivoBase.getAbsoluteFile().getParentFile());
+            if (alDiaEnRotacion) {
+                firmaBase = Firma.de(archivoBase);
+            }
+        } finally {
+            cerrojo.desbloquear();
+        }
+    }
+
+    /**
+     * Toma el cerrojo de escritura para una mutación del repositorio.
+     * @return false si no se pudo bloquear el archivo; el error ya quedó informado.
+     */
+    boolean intentarBloquearEscritura() {
+        try {
+            cerrojo.bloquearEscritura();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al bloquear " + archivoBase.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    void desbloquear() {
+        cerrojo.desbloquear();
+    }
+
+    CerrojoDatos getCerrojo() {
+        return cerrojo;
+    }
+
+    void setPoliticaCompactacion(PoliticaCompactacion politica) {
+        this.politica = politica;
+        CompactadorDiarios.programarSiEsNecesario(this);
+    }
+
+    void setPoliticaDurabilidad(PoliticaDurabilidad durabilidad) throws IOException {
+        this.durabilidad = durabilidad;
+        if (durabilidad.esSincrona()) {
+            // Al volver a SINCRONA no deben quedar mutaciones confirmadas sin escribir
+            vaciar();
+        }
+    }
+
+    PoliticaDurabilidad getPoliticaDurabilidad() {
+        return durabilidad;
+    }
+
+    MetricasEscritura getMetricas() {
+        return metricas;
+    }
+
+    File getArchivoBase() {
+        return archivoBase;
+    }
+
+    File getArchivo() {
+        return archivo;
+    }
+}
@@ -0,0 +1,165 @@
+package repositorio;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Escritura de archivos a prueba de caídas: el contenido nuevo se escribe en un temporal del
+ * mismo directorio, se fuerza a disco (fsync) y reemplaza al archivo vivo con un renombrado
+ * atómico. Una interrupción en cualquier punto deja el archivo anterior intacto o el nuevo
+ * completo, nunca uno truncado.
+ */
+final class EscrituraAtomica {
+
+    private EscrituraAtomica() {}
+
+    static void escribir(File destino, Iterable<String> lineas) throws IOException {
+        File temporal = escribirTemporal(destino, lineas);
+        try {
+            reemplazar(temporal, destino);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal.toPath());
+            throw e;
+        }
+    }
+
+    /** Igual que {@link #escribir(File, Iterable)} para un contenido binario. */
+    static void escribir(File destino, ByteBuffer contenido) throws IOException {
+        File temporal = Files.createTempFile(directorioDe(destino).toPath(), destino.getName() + ".", ".tmp").toFile();
+        try {
+            try (FileChannel canal = FileChannel.open(temporal.toPath(), StandardOpenOption.WRITE)) {
+                while (contenido.hasRemaining()) {
+                    canal.write(contenido);
+                }
+                canal.force(true);
+            }
+            reemplazar(temporal, destino);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Escribe las líneas en un temporal junto a {@code destino} y lo fuerza a disco.
+     * @return el temporal, listo para {@link #reemplazar(File, File)}.
+     */
+    static File escribirTemporal(File destino, Iterable<String> lineas) throws IOException {
+        File directorio = directorioDe(destino);
+        File temporal = Files.createTempFile(directorio.toPath(), destino.getName() + ".", ".tmp").toFile();
+
+        try (FileOutputStream salida = new FileOutputStream(temporal);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8))) {
+            for (String linea : lineas) {
+                bw.write(linea);
+                bw.newLine();
+            }
+            bw.flush();
+            salida.getChannel().force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal.toPath());
+            throw e;
+        }
+        return temporal;
+    }
+
+    /** Renombra atómicamente el temporal sobre el destino y fuerza a disco la entrada del directorio. */
+    static void reemplazar(File temporal, File destino) throws IOException {
+        Files.move(temporal.toPath(), destino.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(directorioDe(destino));
+    }
+
+    /** Anexa bytes al final del archivo y, si se pide, los fuerza a disco antes de volver. */
+    static void anexar(File archivo, byte[] datos, boolean forzar) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            if (forzar) {
+                canal.force(false);
+            }
+        }
+    }
+
+    static void sincronizarDirectorio(File directorio) {
+        // En algunos sistemas (p. ej. Windows) no se puede abrir un directorio; ahí basta el renombrado
+        try (FileChannel canal = FileChannel.open(directorio.toPath(), StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Sin soporte para fsync de directorios
+        }
+    }
+
+    /**
+     * Comprobación de arranque para un archivo de datos y sus diarios:
+     * - si {@code borrarTemporales}, borra temporales de escrituras interrumpidas (el archivo vivo
+     *   nunca llegó a reemplazarse); no debe pedirse mientras otro proceso esté compactando;
+     * - recorta un registro final incompleto del diario, para que el siguiente anexado no quede
+     *   pegado a una línea rota.
+     */
+    static void recuperar(File archivoBase, boolean borrarTemporales, File... diarios) {
+        File directorio = directorioDe(archivoBase);
+        String prefijo = archivoBase.getName() + ".";
+        File[] temporales = directorio.listFiles((dir, nombre) -> nombre.startsWith(prefijo) && nombre.endsWith(".tmp"));
+        if (borrarTemporales && temporales != null) {
+            for (File temporal : temporales) {
+                System.err.println("Descartando escritura interrumpida: " + temporal.getName());
+                temporal.delete();
+            }
+        }
+
+        if (archivoBase.exists() && archivoBase.length() == 0) {
+            System.err.println("Advertencia: " + archivoBase.getName() + " está vacío");
+        }
+
+        for (File diario : diarios) {
+            try {
+                recortarRegistroIncompleto(diario);
+            } catch (IOException e) {
+                System.err.println("Error al verificar el diario " + diario.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void recortarRegistroIncompleto(File diario) throws IOException {
+        if (!diario.exists() || diario.length() == 0) {
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(diario, "rw")) {
+            long longitud = raf.length();
+            raf.seek(longitud - 1);
+            if (raf.read() == '\n') {
+                return;
+            }
+
+            // Buscar el último salto de línea y descartar lo que sigue
+            long posicion = longitud - 1;
+            while (posicion > 0) {
+                raf.seek(posicion - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                posicion--;
+            }
+            System.err.println("Recortando registro incompleto al final de " + diario.getName() +
+                               " (" + (longitud - posicion) + " bytes)");
+            raf.setLength(posicion);
+            raf.getChannel().force(true);
+        }
+    }
+
+    private static File directorioDe(File archivo) {
+        File directorio = archivo.getAbsoluteFile().getParentFile();
+        if (!directorio.exists()) {
+            directorio.mkdirs();
+        }
+        return directorio;
+    }
+}
@@ -0,0 +1,65 @@
+package repositorio;
+
+/**
+ * Las cifras del panel de estadísticas, leídas de los contadores que los repositorios
+ * mantienen al día en cada alta, baja o modificación (tamaño de cada almacén, mapa de bits
+ * de disponibilidad, índice de préstamos por estado, por vencimiento y por fecha de
+ * préstamo). Armarlas cuesta lo mismo con veinte libros que con un millón: no se recorre ni
+ * se copia ninguna lista.
+ */
+public final class EstadisticasBiblioteca {
+    private final int totalLibros;
+    private final int librosDisponibles;
+    private final int totalUsuarios;
+    private final int prestamosActivos;
+    private final int prestamosVencidos;
+    private final int prestamosHoy;
+
+    private EstadisticasBiblioteca(int totalLibros, int librosDisponibles, int totalUsuarios,
+                                   int prestamosActivos, int prestamosVencidos, int prestamosHoy) {
+        this.totalLibros = totalLibros;
+        this.librosDisponibles = librosDisponibles;
+        this.totalUsuarios = totalUsuarios;
+        this.prestamosActivos = prestamosActivos;
+        this.prestamosVencidos = prestamosVencidos;
+        this.prestamosHoy = prestamosHoy;
+    }
+
+    public static EstadisticasBiblioteca calcular(BibliotecaRepositorio libros, UsuarioRepositorio usuarios,
+                                                  PrestamoRepositorio prestamos) {
+        return new EstadisticasBiblioteca(libros.contar(), libros.contarDisponibles(), usuarios.contar(),
+                                          prestamos.contarActivos(),
+                                          prestamos.contarVencidos(), prestamos.contarPrestadosHoy());
+    }
+
+    public int getTotalLibros() {
+        return totalLibros;
+    }
+
+    public int getLibrosDisponibles() {
+        return librosDisponibles;
+    }
+
+    public int getTotalUsuarios() {
+        return totalUsuarios;
+    }
+
+    public int getPrestamosActivos() {
+        return prestamosActivos;
+    }
+
+    public int getPrestamosVencidos() {
+        return prestamosVencidos;
+    }
+
+    public int getPrestamosHoy() {
+        return prestamosHoy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d libros (%d disponibles), %d usuarios, %d préstamos activos (%d vencidos), %d hoy",
+                             totalLibros, librosDisponibles, totalUsuarios, prestamosActivos, prestamosVencidos,
+                             prestamosHoy);
+    }
+}
@@ -0,0 +1,42 @@
+package repositorio;
+
+/**
+ * Tamaño de un índice en memoria: cuántas claves tiene, cuántas apariciones guarda en total
+ * y una estimación de los bytes que ocupa (objetos, mapas y arreglos, sin contar los textos
+ * que comparte con los modelos).
+ */
+public final class EstadisticasIndice {
+    private final String nombre;
+    private final int claves;
+    private final long entradas;
+    private final long bytesEstimados;
+
+    EstadisticasIndice(String nombre, int claves, long entradas, long bytesEstimados) {
+        this.nombre = nombre;
+        this.claves = claves;
+        this.entradas = entradas;
+        this.bytesEstimados = bytesEstimados;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getClaves() {
+        return claves;
+    }
+
+    public long getEntradas() {
+        return entradas;
+    }
+
+    public long getBytesEstimados() {
+        return bytesEstimados;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d claves, %d entradas, ~%.1f MB",
+                             nombre, claves, entradas, bytesEstimados / (1024.0 * 1024.0));
+    }
+}
@@ -1,6 +1,7 @@
 package repositorio;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface IRepositorio<T> {
     boolean crear(T entidad);
@@ -8,4 +9,13 @@ public interface IRepositorio<T> {
     List<T> obtenerTodos();
     boolean actualizar(T entidad);
     boolean eliminar(int id);
-}
\ No newline at end of file
+    
+    // Consultas por partes, en orden de ID, sin copiar todo el almacén
+    int contar();
+    // Paginación por posición: hasta cantidad entidades a partir de la posición desde (0 = la primera)
+    List<T> obtenerPagina(int desde, int cantidad);
+    // Paginación por clave: hasta cantidad entidades con ID mayor que despuesDeId (0 = desde el principio)
+    List<T> obtenerSiguientes(int despuesDeId, int cantidad);
+    // Recorrido perezoso de a tandas; no materializa la lista completa
+    Stream<T> flujo();
+}
@@ -0,0 +1,303 @@
+package repositorio;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Sugerencias por prefijo para los campos de búsqueda. Guarda los textos distintos
+ * (por ejemplo, los títulos) ordenados por su clave normalizada, de modo que los que empiezan
+ * por un prefijo forman un rango contiguo que se encuentra por bisección. Las sugerencias
+ * salen ordenadas por cuántos registros comparten el texto y luego alfabéticamente; para no
+ * recorrer rangos enormes ("a"), un árbol de segmentos da el más frecuente de cualquier rango
+ * y se extraen solo los N primeros.
+ *
+ * Los arreglos son inmutables: las altas y bajas posteriores se anotan aparte y se combinan
+ * en cada consulta, y cuando se acumulan muchas se reconstruyen los arreglos.
+ */
+class IndiceAutocompletado {
+    private static final int MAX_CAMBIOS_PENDIENTES = 1024;
+
+    private final String nombre;
+
+    // Base ordenada por clave normalizada: texto visible y cuántos registros lo tienen
+    private String[] claves = new String[0];
+    private String[] textos = new String[0];
+    private int[] apariciones = new int[0];
+    // Árbol de segmentos con la posición del más frecuente de cada tramo
+    private int[] arbol = new int[0];
+
+    // Cambios desde la última reconstrucción, con la cuenta actual de cada clave (0 = ya no está)
+    private final TreeMap<String, Sugerencia> cambios = new TreeMap<>();
+
+    private static final class Sugerencia {
+        String texto;
+        int apariciones;
+
+        Sugerencia(String texto, int apariciones) {
+            this.texto = texto;
+            this.apariciones = apariciones;
+        }
+    }
+
+    IndiceAutocompletado(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /** Carga completa: reemplaza todo el contenido por los textos de los elementos dados. */
+    <T> void reconstruir(Collection<T> elementos, Function<T, String> texto, Function<T, String> normalizado) {
+        // Primero se cuentan las claves distintas; el texto visible es el del primer elemento
+        // que tiene cada una
+        Map<String, Integer> posicionPorClave = new HashMap<>();
+        String[] distintas = new String[elementos.size()];
+        String[] textosDistintas = new String[elementos.size()];
+        int[] cuentas = new int[elementos.size()];
+        int n = 0;
+        for (T elemento : elementos) {
+            String clave = normalizado.apply(elemento);
+            if (clave.isEmpty()) {
+                continue;
+            }
+            Integer posicion = posicionPorClave.putIfAbsent(clave, n);
+            if (posicion == null) {
+                distintas[n] = clave;
+                textosDistintas[n] = texto.apply(elemento);
+                cuentas[n++] = 1;
+            } else {
+                cuentas[posicion]++;
+            }
+        }
+
+        String[] nuevasClaves = new String[n];
+        String[] nuevosTextos = new String[n];
+        int[] nuevasApariciones = new int[n];
+        int[] orden = ordenarPorClave(Arrays.copyOf(distintas, n));
+        for (int i = 0; i < n; i++) {
+            nuevasClaves[i] = distintas[orden[i]];
+            nuevosTextos[i] = textosDistintas[orden[i]];
+            nuevasApariciones[i] = cuentas[orden[i]];
+        }
+        cambios.clear();
+        construir(nuevasClaves, nuevosTextos, nuevasApariciones, n);
+    }
+
+    void agregar(String texto, String normalizado) {
+        if (normalizado.isEmpty()) {
+            return;
+        }
+        Sugerencia sugerencia = cambio(normalizado, texto);
+        if (sugerencia.apariciones == 0) {
+            sugerencia.texto = texto;
+        }
+        sugerencia.apariciones++;
+        consolidarSiCorresponde();
+    }
+
+    void quitar(String normalizado) {
+        if (normalizado.isEmpty()) {
+            return;
+        }
+        Sugerencia sugerencia = cambio(normalizado, null);
+        if (sugerencia.apariciones > 0) {
+            sugerencia.apariciones--;
+        }
+        consolidarSiCorresponde();
+    }
+
+    /**
+     * Hasta {@code maximo} textos cuya clave normalizada empieza por el prefijo (ya normalizado),
+     * de los más frecuentes a los menos y, a igual frecuencia, en orden alfabético.
+     */
+    List<String> sugerir(String prefijo, int maximo) {
+        if (prefijo.isEmpty() || maximo <= 0) {
+            return new ArrayList<>();
+        }
+        String limite = prefijo + Character.MAX_VALUE;
+        List<Sugerencia> candidatas = new ArrayList<>();
+        List<String> clavesCandidatas = new ArrayList<>();
+
+        // De la base, los más frecuentes del rango que no tengan cambios pendientes
+        int desde = cotaInferior(prefijo);
+        int hasta = cotaInferior(limite);
+        if (desde < hasta) {
+            PriorityQueue<int[]> tramos = new PriorityQueue<>((a, b) -> comparar(a[0], b[0]));
+            tramos.add(new int[]{maximoEn(desde, hasta), desde, hasta});
+            int tomadas = 0;
+            while (!tramos.isEmpty() && tomadas < maximo) {
+                int[] tramo = tramos.poll();
+                int pos = tramo[0];
+                if (!cambios.containsKey(claves[pos])) {
+                    candidatas.add(new Sugerencia(textos[pos], apariciones[pos]));
+                    clavesCandidatas.add(claves[pos]);
+                    tomadas++;
+                }
+                if (tramo[1] < pos) {
+                    tramos.add(new int[]{maximoEn(tramo[1], pos), tramo[1], pos});
+                }
+                if (pos + 1 < tramo[2]) {
+                    tramos.add(new int[]{maximoEn(pos + 1, tramo[2]), pos + 1, tramo[2]});
+                }
+            }
+        }
+
+        // Más las claves con cambios pendientes dentro del rango
+        for (Map.Entry<String, Sugerencia> entrada : cambios.subMap(prefijo, limite).entrySet()) {
+            if (entrada.getValue().apariciones > 0) {
+                candidatas.add(entrada.getValue());
+                clavesCandidatas.add(entrada.getKey());
+            }
+        }
+
+        Integer[] orden = new Integer[candidatas.size()];
+        for (int i = 0; i < orden.length; i++) orden[i] = i;
+        Arrays.sort(orden, (a, b) -> {
+            int porApariciones = Integer.compare(candidatas.get(b).apariciones, candidatas.get(a).apariciones);
+            return porApariciones != 0 ? porApariciones : clavesCandidatas.get(a).compareTo(clavesCandidatas.get(b));
+        });
+        List<String> resultado = new ArrayList<>(Math.min(maximo, orden.length));
+        for (int i = 0; i < orden.length && resultado.size() < maximo; i++) {
+            resultado.add(candidatas.get(orden[i]).texto);
+        }
+        return resultado;
+    }
+
+    EstadisticasIndice estadisticas() {
+        // Tres arreglos de n, el árbol de 2n y los nodos del TreeMap de cambios
+        long bytes = 16 * 4 + 12L * claves.length + 8L * arbol.length / 2 + 64L * cambios.size();
+        long entradas = 0;
+        for (int cantidad : apariciones) {
+            entradas += cantidad;
+        }
+        return new EstadisticasIndice(nombre, claves.length + cambios.size(), entradas, bytes);
+    }
+
+    // Sugerencia pendiente para la clave, creada a partir de la base si aún no tenía cambios
+    private Sugerencia cambio(String normalizado, String texto) {
+        Sugerencia sugerencia = cambios.get(normalizado);
+        if (sugerencia == null) {
+            int pos = Arrays.binarySearch(claves, normalizado);
+            sugerencia = pos >= 0 ? new Sugerencia(textos[pos], apariciones[pos]) : new Sugerencia(texto, 0);
+            cambios.put(normalizado, sugerencia);
+        }
+        return sugerencia;
+    }
+
+    // Mezcla lineal de la base ordenada con los cambios (también ordenados)
+    private void consolidarSiCorresponde() {
+        if (cambios.size() <= MAX_CAMBIOS_PENDIENTES) {
+            return;
+        }
+        int capacidad = claves.length + cambios.size();
+        String[] nuevasClaves = new String[capacidad];
+        String[] nuevosTextos = new String[capacidad];
+        int[] nuevasApariciones = new int[capacidad];
+        int n = 0;
+        int i = 0;
+        for (Map.Entry<String, Sugerencia> entrada : cambios.entrySet()) {
+            while (i < claves.length && claves[i].compareTo(entrada.getKey()) < 0) {
+                nuevasClaves[n] = claves[i];
+                nuevosTextos[n] = textos[i];
+                nuevasApariciones[n++] = apariciones[i++];
+            }
+            if (i < claves.length && claves[i].equals(entrada.getKey())) {
+                i++;
+            }
+            if (entrada.getValue().apariciones > 0) {
+                nuevasClaves[n] = entrada.getKey();
+                nuevosTextos[n] = entrada.getValue().texto;
+                nuevasApariciones[n++] = entrada.getValue().apariciones;
+            }
+        }
+        while (i < claves.length) {
+            nuevasClaves[n] = claves[i];
+            nuevosTextos[n] = textos[i];
+            nuevasApariciones[n++] = apariciones[i++];
+        }
+        cambios.clear();
+        construir(nuevasClaves, nuevosTextos, nuevasApariciones, n);
+    }
+
+    private void construir(String[] nuevasClaves, String[] nuevosTextos, int[] nuevasApariciones, int n) {
+        claves = nuevasClaves.length == n ? nuevasClaves : Arrays.copyOf(nuevasClaves, n);
+        textos = nuevosTextos.length == n ? nuevosTextos : Arrays.copyOf(nuevosTextos, n);
+        apariciones = nuevasApariciones.length == n ? nuevasApariciones : Arrays.copyOf(nuevasApariciones, n);
+        arbol = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            arbol[n + i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            arbol[i] = mejor(arbol[2 * i], arbol[2 * i + 1]);
+        }
+    }
+
+    // Posición del más frecuente en [desde, hasta)
+    private int maximoEn(int desde, int hasta) {
+        int n = claves.length;
+        int resultado = desde;
+        for (int izq = desde + n, der = hasta + n; izq < der; izq >>= 1, der >>= 1) {
+            if ((izq & 1) == 1) resultado = mejor(resultado, arbol[izq++]);
+            if ((der & 1) == 1) resultado = mejor(resultado, arbol[--der]);
+        }
+        return resultado;
+    }
+
+    private int mejor(int a, int b) {
+        return comparar(a, b) <= 0 ? a : b;
+    }
+
+    // Más apariciones primero; a igualdad, la posición menor (orden alfabético)
+    private int comparar(int a, int b) {
+        int porApariciones = Integer.compare(apariciones[b], apariciones[a]);
+        return porApariciones != 0 ? porApariciones : Integer.compare(a, b);
+    }
+
+    /**
+     * Posiciones de las claves (distintas) en orden. Comparar un millón de Strings sueltos en
+     * memoria es lento, así que primero se ordenan long que llevan los primeros caracteres de
+     * la clave y su posición, y solo los tramos que comparten ese comienzo se terminan de
+     * ordenar comparando las claves completas. Los caracteres fuera de Latin-1 se aplanan a
+     * 255: el orden de los long sigue siendo compatible y el desempate lo hace la comparación.
+     */
+    private static int[] ordenarPorClave(String[] claves) {
+        int n = claves.length;
+        int bitsPosicion = Math.max(1, 32 - Integer.numberOfLeadingZeros(n));
+        int caracteres = (63 - bitsPosicion) / 8;
+        long mascara = (1L << bitsPosicion) - 1;
+        long[] prefijos = new long[n];
+        for (int i = 0; i < n; i++) {
+            String clave = claves[i];
+            long prefijo = 0;
+            for (int c = 0; c < caracteres; c++) {
+                prefijo = (prefijo << 8) | (c < clave.length() ? Math.min(clave.charAt(c), 255) : 0);
+            }
+            prefijos[i] = (prefijo << bitsPosicion) | i;
+        }
+        Arrays.sort(prefijos);
+
+        int[] orden = new int[n];
+        for (int i = 0; i < n; ) {
+            int fin = i + 1;
+            while (fin < n && (prefijos[fin] >>> bitsPosicion) == (prefijos[i] >>> bitsPosicion)) {
+                fin++;
+            }
+            if (fin - i == 1) {
+                orden[i] = (int) (prefijos[i] & mascara);
+            } else {
+                Integer[] tramo = new Integer[fin - i];
+                for (int j = i; j < fin; j++) {
+                    tramo[j - i] = (int) (prefijos[j] & mascara);
+                }
+                Arrays.sort(tramo, (a, b) -> claves[a].compareTo(claves[b]));
+                for (int j = i; j < fin; j++) {
+                    orden[j] = tramo[j - i];
+                }
+            }
+            i = fin;
+        }
+        return orden;
+    }
+
+    private int cotaInferior(String clave) {
+        int pos = Arrays.binarySearch(claves, clave);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
@@ -0,0 +1,82 @@
+package repositorio;
+
+import java.util.BitSet;
+import java.util.TreeSet;
+
+/**
+ * Libros con algún ejemplar disponible, como un mapa de bits indexado por ID: contar los
+ * disponibles es leer un contador, listarlos es recorrer las palabras del BitSet, y cruzarlos
+ * con los candidatos de una búsqueda de texto es un bit por candidato.
+ *
+ * El repositorio lo actualiza cada vez que guarda un libro, así que refleja los préstamos y
+ * devoluciones ya persistidos; un libro prestado en el lugar y todavía no actualizado sigue
+ * con su disponibilidad anterior, y quien lista verifica el libro de todos modos.
+ *
+ * Los IDs fuera del rango del mapa (negativos, o tan grandes que el BitSet reservaría
+ * decenas de megabytes) van a un conjunto aparte, que con datos normales queda vacío.
+ */
+final class IndiceDisponibilidad {
+    // 2 MiB de mapa como máximo
+    private static final int MAXIMO_ID_MAPA = 1 << 24;
+
+    private final BitSet disponibles = new BitSet();
+    private final TreeSet<Integer> fueraDelMapa = new TreeSet<>();
+    private int cantidad;
+
+    void limpiar() {
+        disponibles.clear();
+        fueraDelMapa.clear();
+        cantidad = 0;
+    }
+
+    void actualizar(int id, boolean disponible) {
+        if (contiene(id) != disponible) {
+            if (enMapa(id)) {
+                disponibles.set(id, disponible);
+            } else if (disponible) {
+                fueraDelMapa.add(id);
+            } else {
+                fueraDelMapa.remove(id);
+            }
+            cantidad += disponible ? 1 : -1;
+        }
+    }
+
+    private static boolean enMapa(int id) {
+        return id >= 0 && id < MAXIMO_ID_MAPA;
+    }
+
+    void quitar(int id) {
+        actualizar(id, false);
+    }
+
+    boolean contiene(int id) {
+        return enMapa(id) ? disponibles.get(id) : fueraDelMapa.contains(id);
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    /** IDs disponibles en orden creciente. */
+    int[] ids() {
+        int[] ids = new int[cantidad];
+        int i = 0;
+        for (int id : fueraDelMapa.headSet(0)) {
+            ids[i++] = id;
+        }
+        for (int id = disponibles.nextSetBit(0); id >= 0; id = disponibles.nextSetBit(id + 1)) {
+            ids[i++] = id;
+        }
+        for (int id : fueraDelMapa.tailSet(MAXIMO_ID_MAPA)) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    EstadisticasIndice estadisticas() {
+        // El BitSet reserva palabras hasta el mayor ID marcado
+        return new EstadisticasIndice("disponibilidad de libros", cantidad, cantidad,
+                                      32 + disponibles.size() / 8 + 48L * fueraDelMapa.size());
+    }
+}
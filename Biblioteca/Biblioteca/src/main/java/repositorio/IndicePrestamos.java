@@ -0,0 +1,297 @@
+package repositorio;
+
+import modelo.EstadoPrestamo;
+import modelo.Prestamo;
+import modelo.Usuario;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Índices secundarios de préstamos por usuario, libro y estado, más un índice compuesto
+ * (libro, usuario) de los préstamos activos. Guardan IDs ordenados, de modo que los
+ * resultados salen en el mismo orden que el recorrido completo del repositorio.
+ * "Activo" aquí es sin devolver: en estado ACTIVO o ya marcado VENCIDO.
+ * También mantienen el contador de préstamos activos de cada {@link Usuario}, cuántos
+ * préstamos en estado ACTIVO vencen cada día (el total de vencidos sin recorrerlos) y la
+ * {@link ColaVencimientos} de donde salen los que hay que pasar a VENCIDO. El
+ * {@link ContadorPopularidad} cuenta todos los préstamos, devueltos incluidos, por fecha de
+ * préstamo.
+ *
+ * Los controladores modifican los préstamos en el lugar (p. ej. devolver()) antes de llamar
+ * a actualizar, así que cada préstamo se desindexa con las claves con que se indexó y no con
+ * las que tiene en ese momento.
+ */
+class IndicePrestamos {
+    private final Map<Integer, TreeSet<Integer>> porUsuario = new HashMap<>();
+    private final Map<Integer, TreeSet<Integer>> porLibro = new HashMap<>();
+    private final Map<EstadoPrestamo, TreeSet<Integer>> porEstado = new EnumMap<>(EstadoPrestamo.class);
+    private final Map<Integer, TreeSet<Integer>> activosPorLibro = new HashMap<>();
+    private final Map<Long, TreeSet<Integer>> activosPorLibroYUsuario = new HashMap<>();
+    private final TreeSet<Integer> activos = new TreeSet<>();
+    // Cantidad de préstamos en estado ACTIVO por fecha de devolución esperada
+    private final TreeMap<LocalDate, Integer> activosPorVencimiento = new TreeMap<>();
+    private final ColaVencimientos colaVencimientos = new ColaVencimientos();
+    private PoliticaPopularidad politicaPopularidad = PoliticaPopularidad.predeterminada();
+    private ContadorPopularidad popularidad = ContadorPopularidad.crear(politicaPopularidad);
+    // Vencidos al día calculado: se ajusta en cada alta o baja y se recalcula al cambiar el día
+    private LocalDate diaVencidos;
+    private int vencidos;
+
+    // Claves con que se indexó cada préstamo
+    private final Map<Integer, Clave> indexados = new HashMap<>();
+
+    private static final class Clave {
+        final Usuario usuario;
+        final int usuarioId;
+        final int libroId;
+        final EstadoPrestamo estado;
+        final LocalDate vencimiento;
+        final LocalDate prestadoEl;
+
+        Clave(Prestamo prestamo) {
+            this.usuario = prestamo.getUsuario();
+            this.usuarioId = usuario.getId();
+            this.libroId = prestamo.getLibro().getId();
+            this.estado = prestamo.getEstado();
+            this.vencimiento = prestamo.getFechaDevolucionEsperada();
+            this.prestadoEl = prestamo.getFechaPrestamo();
+        }
+
+        boolean esActivo() {
+            return estado.sinDevolver();
+        }
+
+        // Todavía no pasó a VENCIDO: cuenta para los vencimientos y está en la cola
+        boolean esperaVencimiento() {
+            return estado == EstadoPrestamo.ACTIVO && vencimiento != null;
+        }
+    }
+
+    void reconstruir(Collection<Prestamo> prestamos, Collection<Usuario> usuarios) {
+        for (Usuario usuario : usuarios) {
+            usuario.setPrestamosActivos(0);
+        }
+        porUsuario.clear();
+        porLibro.clear();
+        porEstado.clear();
+        activosPorLibro.clear();
+        activosPorLibroYUsuario.clear();
+        activos.clear();
+        activosPorVencimiento.clear();
+        colaVencimientos.limpiar();
+        popularidad.limpiar();
+        diaVencidos = null;
+        indexados.clear();
+        for (Prestamo prestamo : prestamos) {
+            agregar(prestamo);
+        }
+    }
+
+    void agregar(Prestamo prestamo) {
+        int id = prestamo.getId();
+        Clave clave = new Clave(prestamo);
+        indexados.put(id, clave);
+
+        agregarA(porUsuario, clave.usuarioId, id);
+        agregarA(porLibro, clave.libroId, id);
+        agregarA(porEstado, clave.estado, id);
+        popularidad.agregar(clave.libroId, clave.prestadoEl);
+        if (clave.esActivo()) {
+            clave.usuario.setPrestamosActivos(clave.usuario.getPrestamosActivos() + 1);
+            agregarA(activosPorLibro, clave.libroId, id);
+            agregarA(activosPorLibroYUsuario, claveCompuesta(clave.libroId, clave.usuarioId), id);
+            activos.add(id);
+        }
+        if (clave.esperaVencimiento()) {
+            contarVencimiento(clave.vencimiento, 1);
+            colaVencimientos.agregar(clave.vencimiento.toEpochDay(), id);
+        }
+    }
+
+    void quitar(int id) {
+        Clave clave = indexados.remove(id);
+        if (clave == null) {
+            return;
+        }
+
+        quitarDe(porUsuario, clave.usuarioId, id);
+        quitarDe(porLibro, clave.libroId, id);
+        quitarDe(porEstado, clave.estado, id);
+        popularidad.quitar(clave.libroId, clave.prestadoEl);
+        if (clave.esActivo()) {
+            clave.usuario.setPrestamosActivos(clave.usuario.getPrestamosActivos() - 1);
+            quitarDe(activosPorLibro, clave.libroId, id);
+            quitarDe(activosPorLibroYUsuario, claveCompuesta(clave.libroId, clave.usuarioId), id);
+            activos.remove(id);
+        }
+        if (clave.esperaVencimiento()) {
+            // La entrada de la cola queda vieja y se descarta al extraerla
+            contarVencimiento(clave.vencimiento, -1);
+        }
+    }
+
+    private void contarVencimiento(LocalDate vencimiento, int cambio) {
+        activosPorVencimiento.merge(vencimiento, cambio, (a, b) -> a + b == 0 ? null : a + b);
+        if (diaVencidos != null && vencimiento.isBefore(diaVencidos)) {
+            vencidos += cambio;
+        }
+    }
+
+    /**
+     * Préstamos vencidos a la fecha: los ya marcados VENCIDO más los ACTIVO cuya devolución
+     * esperada es anterior a hoy. Lo mismo que contar estaVencido().
+     */
+    int contarVencidos(LocalDate hoy) {
+        if (!hoy.equals(diaVencidos)) {
+            // Una vez por día: se suman las fechas ya pasadas, no los préstamos
+            vencidos = 0;
+            for (int cantidad : activosPorVencimiento.headMap(hoy, false).values()) {
+                vencidos += cantidad;
+            }
+            diaVencidos = hoy;
+        }
+        return vencidos + idsPorEstado(EstadoPrestamo.VENCIDO).size();
+    }
+
+    /**
+     * Saca de la cola los préstamos en estado ACTIVO con devolución esperada anterior a hoy,
+     * para pasarlos a VENCIDO. Las entradas viejas (devueltos, fecha cambiada, eliminados) se
+     * descartan por el camino.
+     * @return los IDs en orden creciente.
+     */
+    int[] extraerVencidos(LocalDate hoy) {
+        int[] ids = vigentes(colaVencimientos.extraerAnterioresA(hoy.toEpochDay()));
+        // Cuando las entradas viejas superan a las vigentes se depura la cola
+        if (colaVencimientos.tamano() > 2 * idsPorEstado(EstadoPrestamo.ACTIVO).size() + 1024) {
+            colaVencimientos.depurar(this::esVigente);
+        }
+        return ids;
+    }
+
+    /** Los mismos préstamos que extraería extraerVencidos, sin sacarlos de la cola. */
+    int[] activosVencidos(LocalDate hoy) {
+        return vigentes(colaVencimientos.anterioresA(hoy.toEpochDay()));
+    }
+
+    // IDs de las entradas que siguen vigentes, ordenados y sin repetir: un préstamo reindexado
+    // con la misma fecha tiene dos entradas
+    private int[] vigentes(long[] entradas) {
+        int[] ids = new int[entradas.length];
+        int cantidad = 0;
+        for (long entrada : entradas) {
+            if (esVigente(entrada)) {
+                ids[cantidad++] = ColaVencimientos.id(entrada);
+            }
+        }
+        Arrays.sort(ids, 0, cantidad);
+        int distintos = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (distintos == 0 || ids[distintos - 1] != ids[i]) {
+                ids[distintos++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distintos);
+    }
+
+    private boolean esVigente(long entrada) {
+        Clave clave = indexados.get(ColaVencimientos.id(entrada));
+        return clave != null && clave.esperaVencimiento()
+            && clave.vencimiento.toEpochDay() == ColaVencimientos.dia(entrada);
+    }
+
+    /** Cambia la forma de contar la popularidad, recontando los préstamos ya indexados. */
+    void setPoliticaPopularidad(PoliticaPopularidad politica) {
+        politicaPopularidad = politica;
+        popularidad = ContadorPopularidad.crear(politica);
+        for (Clave clave : indexados.values()) {
+            popularidad.agregar(clave.libroId, clave.prestadoEl);
+        }
+    }
+
+    PoliticaPopularidad getPoliticaPopularidad() {
+        return politicaPopularidad;
+    }
+
+    EstadisticasIndice estadisticasPopularidad() {
+        return popularidad.estadisticas();
+    }
+
+    /** IDs de los K libros más prestados en la ventana que termina hoy. */
+    int[] masPrestados(VentanaPopularidad ventana, int k, LocalDate hoy) {
+        popularidad.avanzar(hoy);
+        return popularidad.masPrestados(ventana, k);
+    }
+
+    int vecesPrestado(VentanaPopularidad ventana, int libroId, LocalDate hoy) {
+        popularidad.avanzar(hoy);
+        return popularidad.prestamos(ventana, libroId);
+    }
+
+    int contarPrestadosEl(LocalDate dia) {
+        popularidad.avanzar(dia);
+        return popularidad.prestadosEl(dia);
+    }
+
+    void reindexar(Prestamo prestamo) {
+        quitar(prestamo.getId());
+        agregar(prestamo);
+    }
+
+    Set<Integer> idsPorUsuario(int usuarioId) {
+        return ids(porUsuario, usuarioId);
+    }
+
+    Set<Integer> idsPorLibro(int libroId) {
+        return ids(porLibro, libroId);
+    }
+
+    Set<Integer> idsPorEstado(EstadoPrestamo estado) {
+        return ids(porEstado, estado);
+    }
+
+    /** IDs en el estado con ID mayor que despuesDeId, en orden: para paginar sin copiar todo. */
+    Set<Integer> idsPorEstadoDespuesDe(EstadoPrestamo estado, int despuesDeId) {
+        TreeSet<Integer> ids = porEstado.get(estado);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids.tailSet(despuesDeId, false));
+    }
+
+    /** Préstamos sin devolver (ACTIVO o VENCIDO), en orden de ID. */
+    Set<Integer> idsActivos() {
+        return Collections.unmodifiableSet(activos);
+    }
+
+    Set<Integer> idsActivosDespuesDe(int despuesDeId) {
+        return Collections.unmodifiableSet(activos.tailSet(despuesDeId, false));
+    }
+
+    Set<Integer> idsActivosPorLibro(int libroId) {
+        return ids(activosPorLibro, libroId);
+    }
+
+    Set<Integer> idsActivosPorLibroYUsuario(int libroId, int usuarioId) {
+        return ids(activosPorLibroYUsuario, claveCompuesta(libroId, usuarioId));
+    }
+
+    private static long claveCompuesta(int libroId, int usuarioId) {
+        return ((long) libroId << 32) | (usuarioId & 0xFFFFFFFFL);
+    }
+
+    private static <K> void agregarA(Map<K, TreeSet<Integer>> indice, K clave, int id) {
+        indice.computeIfAbsent(clave, k -> new TreeSet<>()).add(id);
+    }
+
+    private static <K> void quitarDe(Map<K, TreeSet<Integer>> indice, K clave, int id) {
+        TreeSet<Integer> ids = indice.get(clave);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                indice.remove(clave);
+            }
+        }
+    }
+
+    private static <K> Set<Integer> ids(Map<K, TreeSet<Integer>> indice, K clave) {
+        TreeSet<Integer> ids = indice.get(clave);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+}
@@ -0,0 +1,217 @@
+package repositorio;
+
+import java.util.*;
+
+/**
+ * Índice invertido de palabras sobre el título y el autor de los libros: cada palabra
+ * (normalizada, ver {@link util.NormalizadorTexto}) apunta a la lista ordenada de IDs de los
+ * libros que la contienen. Las consultas deben llegar ya normalizadas. Las búsquedas por
+ * subcadena usan {@link IndiceTrigramas}; este índice sirve las búsquedas por palabras.
+ *
+ * El repositorio recuerda el texto con que se indexó cada libro y lo pasa al quitarlo.
+ *
+ * Las palabras de cada campo forman además un {@link ArbolBK} para las búsquedas tolerantes
+ * a errores de tipeo: cada palabra de la consulta se expande a las del diccionario que
+ * están a una o dos ediciones, y se buscan esas.
+ */
+class IndiceTextoLibros {
+    private final Map<String, ListaIds> porTitulo = new HashMap<>();
+    private final Map<String, ListaIds> porAutor = new HashMap<>();
+    private final ArbolBK diccionarioTitulo = new ArbolBK();
+    private final ArbolBK diccionarioAutor = new ArbolBK();
+    // Total de palabras indexadas por campo, para el largo promedio que usa el ranking
+    private long palabrasTitulo;
+    private long palabrasAutor;
+
+    // Límites de la búsqueda aproximada para que cueste lo mismo con cualquier consulta
+    private static final int MAX_NODOS_VISITADOS = 20_000;
+    private static final int MAX_TERMINOS_POR_PALABRA = 24;
+
+    void limpiar() {
+        porTitulo.clear();
+        porAutor.clear();
+        diccionarioTitulo.limpiar();
+        diccionarioAutor.limpiar();
+        palabrasTitulo = 0;
+        palabrasAutor = 0;
+    }
+
+    void agregar(int id, String titulo, String autor) {
+        List<String> palabrasDelTitulo = palabras(titulo);
+        List<String> palabrasDelAutor = palabras(autor);
+        for (String palabra : palabrasDelTitulo) {
+            porTitulo.computeIfAbsent(palabra, p -> nuevaPalabra(diccionarioTitulo, p)).agregar(id);
+        }
+        for (String palabra : palabrasDelAutor) {
+            porAutor.computeIfAbsent(palabra, p -> nuevaPalabra(diccionarioAutor, p)).agregar(id);
+        }
+        palabrasTitulo += palabrasDelTitulo.size();
+        palabrasAutor += palabrasDelAutor.size();
+    }
+
+    /** Quita el libro usando el texto con que se indexó. */
+    void quitar(int id, String titulo, String autor) {
+        List<String> palabrasDelTitulo = palabras(titulo);
+        List<String> palabrasDelAutor = palabras(autor);
+        quitarDe(porTitulo, palabrasDelTitulo, id);
+        quitarDe(porAutor, palabrasDelAutor, id);
+        palabrasTitulo -= palabrasDelTitulo.size();
+        palabrasAutor -= palabrasDelAutor.size();
+    }
+
+    /** Cantidad de libros que tienen la palabra en el título (o en el autor). */
+    int frecuencia(String palabra, boolean enTitulo) {
+        ListaIds ids = (enTitulo ? porTitulo : porAutor).get(palabra);
+        return ids == null ? 0 : ids.tamano();
+    }
+
+    long totalPalabras(boolean enTitulo) {
+        return enTitulo ? palabrasTitulo : palabrasAutor;
+    }
+
+    /** Tras una carga completa: devuelve la capacidad sobrante de las listas. */
+    void ajustarCapacidad() {
+        for (Map<String, ListaIds> indice : List.of(porTitulo, porAutor)) {
+            for (ListaIds ids : indice.values()) {
+                ids.ajustarCapacidad();
+            }
+        }
+    }
+
+    /**
+     * IDs de los libros que tienen, en el título o en el autor, todas las palabras de la
+     * consulta (todas = true) o al menos una de ellas (todas = false).
+     */
+    int[] buscarPalabras(String consulta, boolean todas) {
+        List<String> terminos = palabras(consulta);
+        if (terminos.isEmpty()) {
+            return new int[0];
+        }
+
+        List<int[]> listas = new ArrayList<>(terminos.size());
+        for (String termino : terminos) {
+            int[] ids = ListaIds.unir(idsDe(porTitulo, termino), idsDe(porAutor, termino));
+            if (todas && ids.length == 0) {
+                return ids;
+            }
+            listas.add(ids);
+        }
+
+        if (todas) {
+            // Se parte de la lista más corta para que cada intersección sea lo más barata posible
+            listas.sort(Comparator.comparingInt(ids -> ids.length));
+            int[] resultado = listas.get(0);
+            for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+                resultado = ListaIds.intersecar(resultado, listas.get(i));
+            }
+            return resultado;
+        }
+
+        int[] resultado = new int[0];
+        for (int[] ids : listas) {
+            resultado = ListaIds.unir(resultado, ids);
+        }
+        return resultado;
+    }
+
+    /**
+     * Para cada palabra de la consulta (normalizada), las palabras del título o del autor que
+     * se le parecen, con su distancia de edición: ninguna edición para palabras de hasta 3
+     * letras, una hasta 6 letras y dos en las más largas.
+     */
+    List<Map<String, Integer>> expandir(String consulta, boolean enTitulo) {
+        Map<String, ListaIds> indice = enTitulo ? porTitulo : porAutor;
+        ArbolBK diccionario = enTitulo ? diccionarioTitulo : diccionarioAutor;
+        List<Map<String, Integer>> expansiones = new ArrayList<>();
+        for (String termino : palabras(consulta)) {
+            int tolerancia = termino.length() <= 3 ? 0 : termino.length() <= 6 ? 1 : 2;
+            if (tolerancia == 0) {
+                expansiones.add(indice.containsKey(termino) ? Map.of(termino, 0) : Map.of());
+            } else {
+                expansiones.add(diccionario.buscar(termino, tolerancia, indice::containsKey,
+                                                   MAX_NODOS_VISITADOS, MAX_TERMINOS_POR_PALABRA));
+            }
+        }
+        return expansiones;
+    }
+
+    /**
+     * IDs de los libros que tienen en el campo, para cada expansión, alguna de sus palabras.
+     */
+    int[] buscarExpansiones(List<Map<String, Integer>> expansiones, boolean enTitulo) {
+        if (expansiones.isEmpty()) {
+            return new int[0];
+        }
+        Map<String, ListaIds> indice = enTitulo ? porTitulo : porAutor;
+        List<int[]> listas = new ArrayList<>(expansiones.size());
+        for (Map<String, Integer> expansion : expansiones) {
+            int[] ids = new int[0];
+            for (String palabra : expansion.keySet()) {
+                ids = ListaIds.unir(ids, idsDe(indice, palabra));
+            }
+            if (ids.length == 0) {
+                return ids;
+            }
+            listas.add(ids);
+        }
+        listas.sort(Comparator.comparingInt(ids -> ids.length));
+        int[] resultado = listas.get(0);
+        for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+            resultado = ListaIds.intersecar(resultado, listas.get(i));
+        }
+        return resultado;
+    }
+
+    EstadisticasIndice estadisticas() {
+        long entradas = 0;
+        long bytes = 0;
+        for (Map<String, ListaIds> indice : List.of(porTitulo, porAutor)) {
+            for (Map.Entry<String, ListaIds> entrada : indice.entrySet()) {
+                entradas += entrada.getValue().tamano();
+                // Nodo del HashMap y hueco en la tabla, la palabra y su lista
+                bytes += 32 + 8 + 40 + 2L * entrada.getKey().length() + entrada.getValue().bytesEstimados();
+            }
+        }
+        bytes += diccionarioTitulo.bytesEstimados() + diccionarioAutor.bytesEstimados();
+        return new EstadisticasIndice("palabras (título y autor)", porTitulo.size() + porAutor.size(), entradas, bytes);
+    }
+
+    // El texto ya viene normalizado: solo se parte en palabras, sin repetidas. Los títulos
+    // tienen pocas palabras, así que una lista con búsqueda lineal es más barata que un Set.
+    static List<String> palabras(String texto) {
+        List<String> palabras = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= texto.length(); i++) {
+            boolean letra = i < texto.length() && Character.isLetterOrDigit(texto.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                String palabra = texto.substring(inicio, i);
+                if (!palabras.contains(palabra)) {
+                    palabras.add(palabra);
+                }
+                inicio = -1;
+            }
+        }
+        return palabras;
+    }
+
+    private static ListaIds nuevaPalabra(ArbolBK diccionario, String palabra) {
+        diccionario.agregar(palabra);
+        return new ListaIds();
+    }
+
+    private static void quitarDe(Map<String, ListaIds> indice, List<String> palabras, int id) {
+        for (String palabra : palabras) {
+            ListaIds ids = indice.get(palabra);
+            if (ids != null && ids.quitar(id) && ids.tamano() == 0) {
+                indice.remove(palabra);
+            }
+        }
+    }
+
+    private static int[] idsDe(Map<String, ListaIds> indice, String palabra) {
+        ListaIds ids = indice.get(palabra);
+        return ids == null ? new int[0] : ids.aArreglo();
+    }
+}
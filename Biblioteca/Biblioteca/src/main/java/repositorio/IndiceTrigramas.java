@@ -0,0 +1,193 @@
+package repositorio;
+
+import java.util.*;
+
+/**
+ * Índice de trigramas para búsquedas por subcadena: cada secuencia de tres caracteres del
+ * texto normalizado (incluidos espacios y signos) apunta a la lista de IDs cuyo texto la
+ * contiene. Si el texto buscado aparece dentro de un campo, todos sus trigramas aparecen en
+ * ese campo, así que intersecar las listas de los trigramas de la consulta da un
+ * superconjunto de los resultados sin recorrer el catálogo.
+ *
+ * Las consultas de menos de tres caracteres no tienen trigramas y se resuelven recorriendo
+ * todo; las de exactamente tres no necesitan verificación.
+ *
+ * Como el texto de un modelo puede cambiar en el lugar antes de actualizar, quien usa el
+ * índice recuerda con qué texto indexó cada ID y lo pasa al quitarlo.
+ *
+ * Los trigramas se guardan en una tabla de direccionamiento abierto de long, sin una caja
+ * Long por aparición: al cargar un catálogo grande se indexan decenas de millones. Las listas
+ * que quedan vacías no se borran de la tabla; hay como mucho una por trigrama distinto.
+ */
+class IndiceTrigramas {
+    // Una vez que quedan pocos candidatos, verificarlos sale más barato que seguir intersecando
+    private static final int CANDIDATOS_PARA_VERIFICAR = 16;
+
+    private final String nombre;
+    private long[] claves = new long[1024];
+    private ListaIds[] listas = new ListaIds[1024];
+    private int cantidadClaves;
+
+    IndiceTrigramas(String nombre) {
+        this.nombre = nombre;
+    }
+
+    void limpiar() {
+        claves = new long[1024];
+        listas = new ListaIds[1024];
+        cantidadClaves = 0;
+    }
+
+    void agregar(int id, String normalizado) {
+        for (long trigrama : trigramas(normalizado)) {
+            obtenerOCrear(trigrama).agregar(id);
+        }
+    }
+
+    /** Quita el ID usando el texto con que se indexó. */
+    void quitar(int id, String normalizado) {
+        for (long trigrama : trigramas(normalizado)) {
+            ListaIds ids = obtener(trigrama);
+            if (ids != null) {
+                ids.quitar(id);
+            }
+        }
+    }
+
+    /** Tras una carga completa: devuelve la capacidad sobrante de las listas. */
+    void ajustarCapacidad() {
+        for (ListaIds ids : listas) {
+            if (ids != null) {
+                ids.ajustarCapacidad();
+            }
+        }
+    }
+
+    /**
+     * Superconjunto ordenado de los IDs cuyo texto contiene la consulta (ya normalizada).
+     * @return null si la consulta es demasiado corta para usar el índice.
+     */
+    int[] candidatos(String consulta) {
+        long[] trigramas = trigramas(consulta);
+        if (trigramas.length == 0) {
+            return null;
+        }
+
+        List<ListaIds> listas = new ArrayList<>(trigramas.length);
+        for (long trigrama : trigramas) {
+            ListaIds ids = obtener(trigrama);
+            if (ids == null || ids.tamano() == 0) {
+                return new int[0];
+            }
+            listas.add(ids);
+        }
+
+        // Se parte de la lista más corta para que cada intersección sea lo más barata posible
+        listas.sort(Comparator.comparingInt(ListaIds::tamano));
+        int[] resultado = listas.get(0).aArreglo();
+        for (int i = 1; i < listas.size() && resultado.length > CANDIDATOS_PARA_VERIFICAR; i++) {
+            resultado = listas.get(i).intersecarCon(resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Cota de cuántos candidatos daría la consulta (el largo de su lista más corta), sin
+     * intersecar nada: para que el planificador de consultas compare índices.
+     * @return -1 si la consulta es demasiado corta para usar el índice.
+     */
+    int estimarCandidatos(String consulta) {
+        long[] trigramas = trigramas(consulta);
+        if (trigramas.length == 0) {
+            return -1;
+        }
+        int menor = Integer.MAX_VALUE;
+        for (long trigrama : trigramas) {
+            ListaIds ids = obtener(trigrama);
+            menor = Math.min(menor, ids == null ? 0 : ids.tamano());
+        }
+        return menor;
+    }
+
+    /** @return true si los candidatos de la consulta ya son exactamente los que la contienen. */
+    static boolean esExacta(String consulta) {
+        return consulta.length() == 3;
+    }
+
+    EstadisticasIndice estadisticas() {
+        int conIds = 0;
+        long entradas = 0;
+        // Las dos tablas (long y referencia por hueco) y cada lista
+        long bytes = 16 + 8L * claves.length + 16 + 4L * listas.length;
+        for (ListaIds ids : listas) {
+            if (ids != null) {
+                conIds += ids.tamano() > 0 ? 1 : 0;
+                entradas += ids.tamano();
+                bytes += ids.bytesEstimados();
+            }
+        }
+        return new EstadisticasIndice(nombre, conIds, entradas, bytes);
+    }
+
+    private ListaIds obtener(long trigrama) {
+        return listas[posicion(trigrama)];
+    }
+
+    private ListaIds obtenerOCrear(long trigrama) {
+        int pos = posicion(trigrama);
+        if (listas[pos] == null) {
+            if (2 * (cantidadClaves + 1) > claves.length) {
+                agrandar();
+                pos = posicion(trigrama);
+            }
+            claves[pos] = trigrama;
+            listas[pos] = new ListaIds();
+            cantidadClaves++;
+        }
+        return listas[pos];
+    }
+
+    // Sondeo lineal: la tabla se mantiene a menos de la mitad de ocupación
+    private int posicion(long trigrama) {
+        int mascara = claves.length - 1;
+        int pos = (int) ((trigrama * 0x9E3779B97F4A7C15L) >>> 40) & mascara;
+        while (listas[pos] != null && claves[pos] != trigrama) {
+            pos = (pos + 1) & mascara;
+        }
+        return pos;
+    }
+
+    private void agrandar() {
+        long[] clavesAnteriores = claves;
+        ListaIds[] listasAnteriores = listas;
+        claves = new long[clavesAnteriores.length * 2];
+        listas = new ListaIds[listasAnteriores.length * 2];
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (listasAnteriores[i] != null) {
+                int pos = posicion(clavesAnteriores[i]);
+                claves[pos] = clavesAnteriores[i];
+                listas[pos] = listasAnteriores[i];
+            }
+        }
+    }
+
+    // Cada trigrama se empaqueta en un long (16 bits por carácter); sin repetidos
+    private static long[] trigramas(String texto) {
+        int cantidad = texto.length() - 2;
+        if (cantidad <= 0) {
+            return new long[0];
+        }
+        long[] trigramas = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            trigramas[i] = ((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2);
+        }
+        Arrays.sort(trigramas);
+        int distintos = 1;
+        for (int i = 1; i < cantidad; i++) {
+            if (trigramas[i] != trigramas[distintos - 1]) {
+                trigramas[distintos++] = trigramas[i];
+            }
+        }
+        return distintos == cantidad ? trigramas : Arrays.copyOf(trigramas, distintos);
+    }
+}
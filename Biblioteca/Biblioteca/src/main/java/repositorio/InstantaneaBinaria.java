@@ -0,0 +1,278 @@
+package repositorio;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Copia binaria por columnas del CSV base de un repositorio, para arrancar sin parsear texto.
+ * Cada columna numérica (IDs, cantidades, fechas como epoch day, enumerados como ordinal) se
+ * guarda como un bloque de ints de ancho fijo; los textos van a una tabla de cadenas sin
+ * repetidos y la columna guarda el índice en la tabla. Se lee con una sola lectura del
+ * archivo y copias en bloque a arreglos.
+ *
+ * El CSV sigue siendo el formato de datos: la instantánea guarda la firma del CSV del que
+ * salió (fecha, tamaño e identidad) y solo se usa si coincide con la del CSV actual; si no,
+ * se lee el CSV y se vuelve a escribir. El diario de cambios se reproduce después igual que
+ * sobre el CSV. Es opcional: se activa con la propiedad del sistema biblioteca.instantaneas.
+ *
+ * Formato (big-endian): mágico, versión, firma, filas, columnas numéricas y de texto;
+ * luego cada columna numérica, la tabla de cadenas (cantidad, fin de cada cadena en bytes
+ * y los bytes UTF-8 seguidos) y cada columna de texto.
+ */
+final class InstantaneaBinaria {
+    private static final int MAGICO = 0x42494231; // "BIB1"
+    private static final int VERSION = 1;
+
+    /** Valor de una columna numérica sin dato (p. ej. una fecha vacía). */
+    static final int NULO = Integer.MIN_VALUE;
+
+    private InstantaneaBinaria() {}
+
+    // Se consulta en cada carga, así se puede activar sin reiniciar (p. ej. en un benchmark)
+    static boolean habilitada() {
+        return Boolean.getBoolean("biblioteca.instantaneas");
+    }
+
+    /** libros.csv → libros.instantanea, junto al CSV y su diario. */
+    static File archivoPara(File archivoCsv) {
+        String ruta = archivoCsv.getPath();
+        if (ruta.toLowerCase().endsWith(".csv")) {
+            ruta = ruta.substring(0, ruta.length() - 4);
+        }
+        return new File(ruta + ".instantanea");
+    }
+
+    /** Arma una instantánea columna por columna, en el orden en que se leerá. */
+    static final class Escritor {
+        private final int filas;
+        private final List<int[]> enteros = new ArrayList<>();
+        private final List<int[]> textos = new ArrayList<>();
+        private final Map<String, Integer> indiceCadenas = new HashMap<>();
+        private final List<byte[]> cadenas = new ArrayList<>();
+        private long bytesCadenas;
+
+        Escritor(int filas) {
+            this.filas = filas;
+        }
+
+        int[] columnaEnteros() {
+            int[] columna = new int[filas];
+            enteros.add(columna);
+            return columna;
+        }
+
+        /** Índice en la tabla de cadenas del texto, agregándolo si es nuevo; NULO si es null. */
+        int cadena(String texto) {
+            if (texto == null) {
+                return NULO;
+            }
+            Integer indice = indiceCadenas.get(texto);
+            if (indice == null) {
+                indice = cadenas.size();
+                byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+                indiceCadenas.put(texto, indice);
+                cadenas.add(bytes);
+                bytesCadenas += bytes.length;
+            }
+            return indice;
+        }
+
+        int[] columnaTextos() {
+            int[] columna = new int[filas];
+            textos.add(columna);
+            return columna;
+        }
+
+        void escribir(File archivoCsv, String firmaCsv) throws IOException {
+            byte[] firma = firmaCsv.getBytes(StandardCharsets.UTF_8);
+            long tamano = 4L * 6 + firma.length
+                    + 4L * filas * (enteros.size() + textos.size())
+                    + 4L + 4L * cadenas.size() + bytesCadenas;
+            if (tamano > Integer.MAX_VALUE) {
+                throw new IOException("Instantánea demasiado grande: " + tamano + " bytes");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) tamano);
+            buffer.putInt(MAGICO).putInt(VERSION);
+            buffer.putInt(firma.length).put(firma);
+            buffer.putInt(filas).putInt(enteros.size()).putInt(textos.size());
+            for (int[] columna : enteros) {
+                ponerInts(buffer, columna);
+            }
+            buffer.putInt(cadenas.size());
+            int[] finales = new int[cadenas.size()];
+            int fin = 0;
+            for (int i = 0; i < finales.length; i++) {
+                fin += cadenas.get(i).length;
+                finales[i] = fin;
+            }
+            ponerInts(buffer, finales);
+            for (byte[] cadena : cadenas) {
+                buffer.put(cadena);
+            }
+            for (int[] columna : textos) {
+                ponerInts(buffer, columna);
+            }
+            buffer.flip();
+
+            EscrituraAtomica.escribir(archivoPara(archivoCsv), buffer);
+        }
+
+        private static void ponerInts(ByteBuffer buffer, int[] valores) {
+            buffer.asIntBuffer().put(valores);
+            buffer.position(buffer.position() + 4 * valores.length);
+        }
+    }
+
+    /** Columnas de una instantánea ya leída. */
+    static final class Lector {
+        private final int filas;
+        private final int[][] enteros;
+        private final int[][] textos;
+        private final String[] cadenas;
+
+        private Lector(int filas, int[][] enteros, int[][] textos, String[] cadenas) {
+            this.filas = filas;
+            this.enteros = enteros;
+            this.textos = textos;
+            this.cadenas = cadenas;
+        }
+
+        int filas() {
+            return filas;
+        }
+
+        int[] enteros(int columna) {
+            return enteros[columna];
+        }
+
+        /** La columna de texto resuelta contra la tabla: filas iguales comparten la misma String. */
+        String[] textos(int columna) {
+            int[] indices = textos[columna];
+            String[] valores = new String[filas];
+            for (int i = 0; i < filas; i++) {
+                valores[i] = indices[i] == NULO ? null : cadenas[indices[i]];
+            }
+            return valores;
+        }
+
+        /** Columna de fechas (epoch day): filas del mismo día comparten el mismo LocalDate. */
+        LocalDate[] fechas(int columna) {
+            int[] dias = enteros[columna];
+            LocalDate[] valores = new LocalDate[filas];
+            Map<Integer, LocalDate> porDia = new HashMap<>();
+            for (int i = 0; i < filas; i++) {
+                if (dias[i] != NULO) {
+                    valores[i] = porDia.computeIfAbsent(dias[i], LocalDate::ofEpochDay);
+                }
+            }
+            return valores;
+        }
+
+        /**
+         * Columna de enumerados guardados como ordinal. Un ordinal que no corresponde a ninguna
+         * constante lanza IllegalStateException, igual que una instantánea dañada.
+         */
+        <E extends Enum<E>> E[] enumerados(int columna, E[] valores) {
+            int[] ordinales = enteros[columna];
+            E[] resultado = Arrays.copyOf(valores, filas);
+            for (int i = 0; i < filas; i++) {
+                if (ordinales[i] < 0 || ordinales[i] >= valores.length) {
+                    throw new IllegalStateException("ordinal fuera de rango: " + ordinales[i]);
+                }
+                resultado[i] = valores[ordinales[i]];
+            }
+            return resultado;
+        }
+    }
+
+    /** Una fecha como columna numérica. */
+    static int dia(LocalDate fecha) {
+        return fecha == null ? NULO : Math.toIntExact(fecha.toEpochDay());
+    }
+
+    /**
+     * Lee la instantánea del CSV si existe, corresponde a {@code firmaCsv} y tiene las columnas
+     * esperadas.
+     * @return las columnas, o null si hay que leer el CSV (ausente, desactualizada o dañada).
+     */
+    static Lector leer(File archivoCsv, String firmaCsv, int columnasEnteros, int columnasTextos) {
+        File archivo = archivoPara(archivoCsv);
+        ByteBuffer buffer;
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = ByteBuffer.allocate((int) tamano);
+            while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+                // Lectura en bloque del archivo completo
+            }
+            buffer.flip();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Error al leer la instantánea " + archivo.getName() + ": " + e.getMessage());
+            return null;
+        }
+
+        try {
+            if (buffer.getInt() != MAGICO || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] firma = new byte[buffer.getInt()];
+            buffer.get(firma);
+            if (!firmaCsv.equals(new String(firma, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            int filas = buffer.getInt();
+            if (buffer.getInt() != columnasEnteros || buffer.getInt() != columnasTextos) {
+                return null;
+            }
+
+            int[][] enteros = new int[columnasEnteros][];
+            for (int c = 0; c < columnasEnteros; c++) {
+                enteros[c] = leerInts(buffer, filas);
+            }
+            int[] finales = leerInts(buffer, buffer.getInt());
+            byte[] datos = buffer.array();
+            int base = buffer.position();
+            String[] cadenas = new String[finales.length];
+            int inicio = 0;
+            for (int i = 0; i < finales.length; i++) {
+                cadenas[i] = new String(datos, base + inicio, finales[i] - inicio, StandardCharsets.UTF_8);
+                inicio = finales[i];
+            }
+            buffer.position(base + inicio);
+            int[][] textos = new int[columnasTextos][];
+            for (int c = 0; c < columnasTextos; c++) {
+                textos[c] = leerInts(buffer, filas);
+                for (int indice : textos[c]) {
+                    if (indice != NULO && (indice < 0 || indice >= cadenas.length)) {
+                        throw new IllegalStateException("índice de cadena fuera de rango: " + indice);
+                    }
+                }
+            }
+            return new Lector(filas, enteros, textos, cadenas);
+        } catch (RuntimeException e) {
+            // Truncada o con índices fuera de rango: se ignora y se relee el CSV
+            System.err.println("Instantánea " + archivo.getName() + " inválida, se lee el CSV: " + e);
+            return null;
+        }
+    }
+
+    private static int[] leerInts(ByteBuffer buffer, int cantidad) {
+        int[] valores = new int[cantidad];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(valores);
+        buffer.position(buffer.position() + 4 * cantidad);
+        return valores;
+    }
+}
@@ -0,0 +1,305 @@
+package repositorio;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Lectura de un CSV base directamente sobre sus bytes, sin BufferedReader ni split: el
+ * archivo se mapea en memoria por ventanas (MappedByteBuffer) y cada línea se recorre en el
+ * lugar anotando dónde empieza y termina cada campo. Los enteros, fechas ISO, booleanos y
+ * enumerados se interpretan desde los bytes; solo se crea una String para los campos de
+ * texto que el repositorio pide.
+ *
+ * Acepta lo mismo que los fromCsv de los modelos: campos separados por ';' con espacios
+ * alrededor, líneas en blanco, fin de línea \n o \r\n y una cabecera opcional "id;...".
+ *
+ * En Windows un archivo mapeado no se puede reemplazar hasta que el recolector libera el
+ * mapeo, y eso bloquearía la compactación; ahí cada ventana se copia a un buffer propio con
+ * la misma lectura por bytes. La propiedad biblioteca.csv.mapeado=false fuerza esa variante.
+ */
+final class LectorCsvMapeado {
+    private static final byte SEPARADOR = ';';
+    // Ventana de mapeo: la línea que queda cortada al final se relee al principio de la siguiente
+    private static final int VENTANA = 64 * 1024 * 1024;
+
+    private static final boolean MAPEAR = Boolean.parseBoolean(System.getProperty("biblioteca.csv.mapeado",
+            String.valueOf(!System.getProperty("os.name", "").toLowerCase().startsWith("windows"))));
+
+    /** Recibe cada línea de datos del CSV. */
+    interface Consumidor {
+        void aceptar(Fila fila);
+    }
+
+    private LectorCsvMapeado() {}
+
+    /**
+     * Recorre las líneas de datos (sin la cabecera ni las líneas en blanco) del archivo.
+     * La {@link Fila} que recibe el consumidor se reutiliza: solo vale durante la llamada.
+     */
+    static void recorrer(File archivo, Consumidor consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long longitud = canal.size();
+            Fila fila = new Fila();
+            ByteBuffer copia = null;
+            long posicion = 0;
+            boolean primera = true;
+
+            while (posicion < longitud) {
+                int tamano = (int) Math.min(VENTANA, longitud - posicion);
+                ByteBuffer ventana;
+                if (MAPEAR) {
+                    ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, tamano);
+                } else {
+                    if (copia == null) {
+                        copia = ByteBuffer.allocate((int) Math.min(VENTANA, longitud));
+                    }
+                    copia.clear().limit(tamano);
+                    while (copia.hasRemaining() && canal.read(copia, posicion + copia.position()) >= 0) {
+                        // Lectura de la ventana completa
+                    }
+                    copia.flip();
+                    ventana = copia;
+                }
+                boolean ultima = posicion + tamano == longitud;
+
+                int inicio = 0;
+                while (inicio < tamano) {
+                    int fin = buscarFinDeLinea(ventana, inicio, tamano);
+                    if (fin == tamano && !ultima) {
+                        // Línea cortada por la ventana: se relee entera en la siguiente
+                        if (inicio == 0) {
+                            throw new IOException("Línea de más de " + VENTANA + " bytes en " + archivo.getName());
+                        }
+                        break;
+                    }
+                    if (fila.preparar(ventana, inicio, fin)) {
+                        // La cabecera solo puede ser la primera línea con contenido
+                        boolean cabecera = primera && fila.esCabecera();
+                        primera = false;
+                        if (!cabecera) {
+                            consumidor.aceptar(fila);
+                        }
+                    }
+                    inicio = fin + 1;
+                }
+                posicion += Math.min(inicio, tamano);
+            }
+        }
+    }
+
+    private static int buscarFinDeLinea(ByteBuffer ventana, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            if (ventana.get(i) == '\n') {
+                return i;
+            }
+        }
+        return hasta;
+    }
+
+    /**
+     * Una línea del CSV vista en el buffer: límites de cada campo ya recortados de espacios.
+     * Los métodos lanzan IllegalArgumentException si el campo no tiene el formato esperado.
+     */
+    static final class Fila {
+        private ByteBuffer buffer;
+        private int inicioLinea;
+        private int finLinea;
+        private int campos;
+        private int[] inicios = new int[8];
+        private int[] fines = new int[8];
+        private byte[] bytesTexto = new byte[64];
+
+        // false si la línea está en blanco
+        private boolean preparar(ByteBuffer buffer, int inicio, int fin) {
+            this.buffer = buffer;
+            this.inicioLinea = inicio;
+            this.finLinea = fin;
+            this.campos = 0;
+
+            int desde = inicio;
+            boolean enBlanco = true;
+            for (int i = inicio; i < fin; i++) {
+                byte b = buffer.get(i);
+                if (b == SEPARADOR) {
+                    agregarCampo(desde, i);
+                    desde = i + 1;
+                }
+                if ((b & 0xFF) > ' ') {
+                    enBlanco = false;
+                }
+            }
+            agregarCampo(desde, fin);
+            return !enBlanco;
+        }
+
+        private void agregarCampo(int desde, int hasta) {
+            if (campos == inicios.length) {
+                inicios = Arrays.copyOf(inicios, campos * 2);
+                fines = Arrays.copyOf(fines, campos * 2);
+            }
+            // Mismo recorte que String.trim(): todo lo que sea <= ' ' en los extremos
+            while (desde < hasta && (buffer.get(desde) & 0xFF) <= ' ') {
+                desde++;
+            }
+            while (hasta > desde && (buffer.get(hasta - 1) & 0xFF) <= ' ') {
+                hasta--;
+            }
+            inicios[campos] = desde;
+            fines[campos] = hasta;
+            campos++;
+        }
+
+        // Como en la lectura con BufferedReader: la línea empieza con "id;" sin distinguir mayúsculas
+        private boolean esCabecera() {
+            return finLinea - inicioLinea >= 3
+                    && (buffer.get(inicioLinea) | 0x20) == 'i'
+                    && (buffer.get(inicioLinea + 1) | 0x20) == 'd'
+                    && buffer.get(inicioLinea + 2) == SEPARADOR;
+        }
+
+        int campos() {
+            return campos;
+        }
+
+        /** Exige al menos {@code cantidad} campos, como el split de los fromCsv. */
+        void exigirCampos(int cantidad) {
+            if (campos < cantidad) {
+                throw new IllegalArgumentException("Línea CSV inválida: " + linea());
+            }
+        }
+
+        boolean vacio(int campo) {
+            return inicios[campo] == fines[campo];
+        }
+
+        int entero(int campo) {
+            int i = inicios[campo];
+            int fin = fines[campo];
+            boolean negativo = false;
+            if (i < fin && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativo = buffer.get(i) == '-';
+                i++;
+            }
+            if (i == fin) {
+                throw formatoInvalido(campo);
+            }
+            long valor = 0;
+            for (; i < fin; i++) {
+                int digito = buffer.get(i) - '0';
+                if (digito < 0 || digito > 9) {
+                    throw formatoInvalido(campo);
+                }
+                valor = valor * 10 + digito;
+                if (valor > Integer.MAX_VALUE + 1L) {
+                    throw formatoInvalido(campo);
+                }
+            }
+            valor = negativo ? -valor : valor;
+            if (valor > Integer.MAX_VALUE) {
+                throw formatoInvalido(campo);
+            }
+            return (int) valor;
+        }
+
+        /** Fecha aaaa-mm-dd; null si el campo está vacío. */
+        LocalDate fecha(int campo) {
+            int i = inicios[campo];
+            if (i == fines[campo]) {
+                return null;
+            }
+            if (fines[campo] - i != 10 || buffer.get(i + 4) != '-' || buffer.get(i + 7) != '-') {
+                throw formatoInvalido(campo);
+            }
+            try {
+                return LocalDate.of(digitos(campo, i, 4), digitos(campo, i + 5, 2), digitos(campo, i + 8, 2));
+            } catch (java.time.DateTimeException e) {
+                throw formatoInvalido(campo);
+            }
+        }
+
+        private int digitos(int campo, int desde, int cantidad) {
+            int valor = 0;
+            for (int i = desde; i < desde + cantidad; i++) {
+                int digito = buffer.get(i) - '0';
+                if (digito < 0 || digito > 9) {
+                    throw formatoInvalido(campo);
+                }
+                valor = valor * 10 + digito;
+            }
+            return valor;
+        }
+
+        /** Como Boolean.parseBoolean: true solo si el campo es "true" sin distinguir mayúsculas. */
+        boolean booleano(int campo) {
+            return igualSinMayusculas(campo, "true");
+        }
+
+        /** La constante cuyo nombre coincide exactamente con el campo, como Enum.valueOf. */
+        <E extends Enum<E>> E enumerado(int campo, E[] valores) {
+            for (E valor : valores) {
+                if (igual(campo, valor.name())) {
+                    return valor;
+                }
+            }
+            throw formatoInvalido(campo);
+        }
+
+        /** El campo como String (UTF-8); es la única lectura que crea objetos. */
+        String texto(int campo) {
+            int longitud = fines[campo] - inicios[campo];
+            if (longitud == 0) {
+                return "";
+            }
+            if (bytesTexto.length < longitud) {
+                bytesTexto = new byte[Math.max(longitud, bytesTexto.length * 2)];
+            }
+            buffer.get(inicios[campo], bytesTexto, 0, longitud);
+            return new String(bytesTexto, 0, longitud, StandardCharsets.UTF_8);
+        }
+
+        /** La línea completa, para los mensajes de error. */
+        String linea() {
+            int fin = finLinea;
+            if (fin > inicioLinea && buffer.get(fin - 1) == '\r') {
+                fin--;
+            }
+            byte[] bytes = new byte[fin - inicioLinea];
+            buffer.get(inicioLinea, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Nombres de enumerados y "true" son ASCII: se comparan byte a byte sin decodificar
+        private boolean igual(int campo, String ascii) {
+            if (fines[campo] - inicios[campo] != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                if (buffer.get(inicios[campo] + i) != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean igualSinMayusculas(int campo, String ascii) {
+            if (fines[campo] - inicios[campo] != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                if ((buffer.get(inicios[campo] + i) | 0x20) != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private IllegalArgumentException formatoInvalido(int campo) {
+            return new IllegalArgumentException("Campo " + (campo + 1) + " inválido: " + texto(campo));
+        }
+    }
+}
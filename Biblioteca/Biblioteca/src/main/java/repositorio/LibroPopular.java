@@ -0,0 +1,27 @@
+package repositorio;
+
+import modelo.Libro;
+
+/** Un libro del ranking de populares, con cuántas veces se prestó en el período. */
+public final class LibroPopular {
+    private final Libro libro;
+    private final int prestamos;
+
+    LibroPopular(Libro libro, int prestamos) {
+        this.libro = libro;
+        this.prestamos = prestamos;
+    }
+
+    public Libro getLibro() {
+        return libro;
+    }
+
+    public int getPrestamos() {
+        return prestamos;
+    }
+
+    @Override
+    public String toString() {
+        return libro.getTitulo() + " (" + prestamos + " préstamos)";
+    }
+}
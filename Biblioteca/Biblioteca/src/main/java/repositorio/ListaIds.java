@@ -0,0 +1,153 @@
+package repositorio;
+
+import java.util.Arrays;
+
+/**
+ * Lista ordenada y sin repetidos de IDs, usada como lista de apariciones en los índices de texto.
+ * Es un arreglo de int en lugar de un TreeSet: con un catálogo de un millón de títulos hay
+ * decenas de millones de apariciones y un nodo por ID no cabría cómodamente en memoria.
+ * Los IDs nuevos son siempre mayores que los existentes, así que agregar suele ser anexar.
+ */
+final class ListaIds {
+    private int[] ids = new int[2];
+    private int tamano;
+
+    void agregar(int id) {
+        if (tamano == 0 || ids[tamano - 1] < id) {
+            asegurarCapacidad();
+            ids[tamano++] = id;
+            return;
+        }
+        int pos = Arrays.binarySearch(ids, 0, tamano, id);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        asegurarCapacidad();
+        System.arraycopy(ids, pos, ids, pos + 1, tamano - pos);
+        ids[pos] = id;
+        tamano++;
+    }
+
+    boolean quitar(int id) {
+        int pos = Arrays.binarySearch(ids, 0, tamano, id);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(ids, pos + 1, ids, pos, tamano - pos - 1);
+        tamano--;
+        return true;
+    }
+
+    boolean contiene(int id) {
+        return Arrays.binarySearch(ids, 0, tamano, id) >= 0;
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    /** ID en la posición dada (0 es el menor). */
+    int obtener(int posicion) {
+        return ids[posicion];
+    }
+
+    /** Posición del primer ID mayor que el dado (tamano() si no hay ninguno). */
+    int posicionMayorQue(int id) {
+        int pos = Arrays.binarySearch(ids, 0, tamano, id);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    /** IDs de las posiciones [desde, hasta). */
+    int[] tramo(int desde, int hasta) {
+        return Arrays.copyOfRange(ids, desde, hasta);
+    }
+
+    void limpiar() {
+        ids = new int[2];
+        tamano = 0;
+    }
+
+    void ajustarCapacidad() {
+        if (ids.length > tamano) {
+            ids = Arrays.copyOf(ids, Math.max(tamano, 2));
+        }
+    }
+
+    int[] aArreglo() {
+        return Arrays.copyOf(ids, tamano);
+    }
+
+    /** IDs de esta lista que también están en la lista ordenada dada. */
+    int[] intersecarCon(int[] otros) {
+        return intersecar(otros, otros.length, ids, tamano);
+    }
+
+    /** Estimación de bytes ocupados: cabecera del objeto más el arreglo con su capacidad. */
+    long bytesEstimados() {
+        return 16 + 16 + 4L * ids.length;
+    }
+
+    private void asegurarCapacidad() {
+        if (tamano == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+    }
+
+    static int[] unir(int[] a, int[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        int[] resultado = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                resultado[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                resultado[n++] = b[j++];
+            } else {
+                resultado[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) resultado[n++] = a[i++];
+        while (j < b.length) resultado[n++] = b[j++];
+        return Arrays.copyOf(resultado, n);
+    }
+
+    static int[] intersecar(int[] a, int[] b) {
+        return a.length <= b.length ? intersecar(a, a.length, b, b.length) : intersecar(b, b.length, a, a.length);
+    }
+
+    // a es la más corta. Con tamaños parecidos conviene recorrer ambas a la par; si b es mucho
+    // más larga, buscar cada ID de a en b por bisección desde la última posición encontrada.
+    private static int[] intersecar(int[] a, int tamanoA, int[] b, int tamanoB) {
+        int[] resultado = new int[Math.min(tamanoA, tamanoB)];
+        int n = 0;
+        if (tamanoB / 16 < tamanoA) {
+            int i = 0, j = 0;
+            while (i < tamanoA && j < tamanoB) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    resultado[n++] = a[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(resultado, n);
+        }
+        int desde = 0;
+        for (int i = 0; i < tamanoA; i++) {
+            int pos = Arrays.binarySearch(b, desde, tamanoB, a[i]);
+            if (pos >= 0) {
+                resultado[n++] = a[i];
+                desde = pos + 1;
+            } else {
+                desde = -pos - 1;
+                if (desde == tamanoB) break;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+}
@@ -0,0 +1,58 @@
+package repositorio;
+
+/**
+ * Métricas de las escrituras al diario de un repositorio: cuántos vaciados a disco hubo,
+ * cuántos registros llevó cada uno y cuánto tardaron.
+ */
+public class MetricasEscritura {
+    private long vaciados;
+    private long registros;
+    private long latenciaTotalNanos;
+    private long latenciaMaximaNanos;
+    private long latenciaUltimaNanos;
+    private int loteMaximo;
+
+    synchronized void registrarVaciado(int registrosDelLote, long nanos) {
+        vaciados++;
+        registros += registrosDelLote;
+        latenciaTotalNanos += nanos;
+        latenciaUltimaNanos = nanos;
+        latenciaMaximaNanos = Math.max(latenciaMaximaNanos, nanos);
+        loteMaximo = Math.max(loteMaximo, registrosDelLote);
+    }
+
+    public synchronized long getVaciados() {
+        return vaciados;
+    }
+
+    public synchronized long getRegistrosEscritos() {
+        return registros;
+    }
+
+    public synchronized double getLatenciaPromedioMs() {
+        return vaciados == 0 ? 0 : latenciaTotalNanos / (double) vaciados / 1_000_000.0;
+    }
+
+    public synchronized double getLatenciaMaximaMs() {
+        return latenciaMaximaNanos / 1_000_000.0;
+    }
+
+    public synchronized double getLatenciaUltimaMs() {
+        return latenciaUltimaNanos / 1_000_000.0;
+    }
+
+    public synchronized double getTamanoLotePromedio() {
+        return vaciados == 0 ? 0 : registros / (double) vaciados;
+    }
+
+    public synchronized int getTamanoLoteMaximo() {
+        return loteMaximo;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Vaciados: %d | Registros: %d | Lote prom/máx: %.1f/%d | Latencia prom/máx: %.3f/%.3f ms",
+                             vaciados, registros, getTamanoLotePromedio(), loteMaximo,
+                             getLatenciaPromedioMs(), getLatenciaMaximaMs());
+    }
+}
@@ -0,0 +1,163 @@
+package repositorio;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Plan de ejecución de una {@link Consulta}: de los filtros que tienen índice se elige el que
+ * promete menos candidatos, se piden al índice sus IDs y sobre cada uno se verifican todos los
+ * filtros (los índices de trigramas devuelven de más, y un préstamo modificado en el lugar
+ * puede seguir indexado con su estado anterior). Si ningún filtro tiene índice, o el mejor no
+ * descarta nada, se recorre el almacén entero.
+ *
+ * Los índices que además saben responder si un ID está (un mapa de bits) se cruzan con los
+ * candidatos antes de buscar cada entidad, aunque no sean los elegidos.
+ */
+final class PlanConsulta<T> {
+    /** Cómo resolver un filtro con un índice: su nombre, cuántos IDs se estima que da y cómo pedirlos. */
+    static final class AccesoIndice {
+        final String indice;
+        final int estimados;
+        // IDs en orden creciente
+        final Supplier<int[]> candidatos;
+        // Pertenencia de un ID en O(1), o null si el índice solo sabe listar
+        final IntPredicate contiene;
+
+        AccesoIndice(String indice, int estimados, Supplier<int[]> candidatos) {
+            this(indice, estimados, candidatos, null);
+        }
+
+        AccesoIndice(String indice, int estimados, Supplier<int[]> candidatos, IntPredicate contiene) {
+            this.indice = indice;
+            this.estimados = estimados;
+            this.candidatos = candidatos;
+            this.contiene = contiene;
+        }
+    }
+
+    /** Lo que cada repositorio sabe de sus índices: el acceso para un filtro, o null si no hay. */
+    interface Indices<T> {
+        AccesoIndice acceso(Consulta.Filtro<T> filtro);
+    }
+
+    private final Consulta<T> consulta;
+    private final int total;
+    private final Consulta.Filtro<T> elegido;
+    private final AccesoIndice acceso;
+    // Los demás filtros con índice, para explicar por qué no se eligieron
+    private final Map<Consulta.Filtro<T>, AccesoIndice> descartados = new LinkedHashMap<>();
+    // Los descartados que se pueden cruzar bit a bit con los candidatos del elegido
+    private final List<AccesoIndice> cruces = new ArrayList<>();
+
+    private PlanConsulta(Consulta<T> consulta, Indices<T> indices, int total) {
+        this.consulta = consulta;
+        this.total = total;
+        Consulta.Filtro<T> mejor = null;
+        AccesoIndice mejorAcceso = null;
+        for (Consulta.Filtro<T> filtro : consulta.getFiltros()) {
+            AccesoIndice candidato = indices.acceso(filtro);
+            if (candidato == null) {
+                continue;
+            }
+            if (mejorAcceso == null || candidato.estimados < mejorAcceso.estimados) {
+                if (mejorAcceso != null) {
+                    descartados.put(mejor, mejorAcceso);
+                }
+                mejor = filtro;
+                mejorAcceso = candidato;
+            } else {
+                descartados.put(filtro, candidato);
+            }
+        }
+        // Un índice que no descarta nada cuesta más que recorrer
+        if (mejorAcceso != null && mejorAcceso.estimados >= total) {
+            descartados.put(mejor, mejorAcceso);
+            mejor = null;
+            mejorAcceso = null;
+        }
+        this.elegido = mejor;
+        this.acceso = mejorAcceso;
+        if (acceso != null) {
+            for (AccesoIndice descartado : descartados.values()) {
+                if (descartado.contiene != null) {
+                    cruces.add(descartado);
+                }
+            }
+        }
+    }
+
+    static <T> PlanConsulta<T> planear(Consulta<T> consulta, Indices<T> indices, int total) {
+        return new PlanConsulta<>(consulta, indices, total);
+    }
+
+    boolean usaIndice() {
+        return acceso != null;
+    }
+
+    /**
+     * Hasta {@code cantidad} entidades que cumplen la consulta con ID mayor que
+     * {@code despuesDeId}, en orden de ID.
+     */
+    List<T> ejecutar(IntFunction<T> porId, IntFunction<Stream<T>> recorrido, int despuesDeId, int cantidad) {
+        List<T> resultado = new ArrayList<>(Math.min(Math.max(cantidad, 0), 1024));
+        if (acceso == null) {
+            recorrido.apply(despuesDeId).filter(consulta::cumple)
+                     .limit(Math.max(cantidad, 0)).forEach(resultado::add);
+            return resultado;
+        }
+        int[] candidatos = acceso.candidatos.get();
+        int inicio = Arrays.binarySearch(candidatos, despuesDeId);
+        inicio = inicio >= 0 ? inicio + 1 : -inicio - 1;
+        for (int i = inicio; i < candidatos.length && resultado.size() < cantidad; i++) {
+            if (!estaEnCruces(candidatos[i])) {
+                continue;
+            }
+            T entidad = porId.apply(candidatos[i]);
+            if (entidad != null && consulta.cumple(entidad)) {
+                resultado.add(entidad);
+            }
+        }
+        return resultado;
+    }
+
+    private boolean estaEnCruces(int id) {
+        for (AccesoIndice cruce : cruces) {
+            if (!cruce.contiene.test(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /** Descripción legible del plan: el índice elegido con su estimación, o el recorrido completo. */
+    String explicar() {
+        StringBuilder texto = new StringBuilder("Consulta: ").append(consulta).append('\n');
+        if (acceso != null) {
+            texto.append("Índice: ").append(acceso.indice).append(" para ").append(elegido.descripcion)
+                 .append(" (~").append(acceso.estimados).append(" candidatos de ").append(total).append(")\n");
+            for (AccesoIndice cruce : cruces) {
+                texto.append("Cruza con: ").append(cruce.indice).append(" (~").append(cruce.estimados).append(")\n");
+            }
+        } else {
+            texto.append("Recorrido completo de ").append(total).append(" registros\n");
+        }
+        texto.append("Verifica: ").append(consulta).append(" sobre cada candidato");
+        for (Map.Entry<Consulta.Filtro<T>, AccesoIndice> descartado : descartados.entrySet()) {
+            if (cruces.contains(descartado.getValue())) {
+                continue;
+            }
+            texto.append("\nDescartado: ").append(descartado.getValue().indice).append(" para ")
+                 .append(descartado.getKey().descripcion)
+                 .append(" (~").append(descartado.getValue().estimados).append(" candidatos)");
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explicar();
+    }
+}
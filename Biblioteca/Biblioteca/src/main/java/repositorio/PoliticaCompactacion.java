@@ -0,0 +1,51 @@
+package repositorio;
+
+/**
+ * Define cuándo se compacta el diario de cambios de un repositorio en un nuevo archivo base.
+ * La compactación se dispara cuando el diario supera un tamaño absoluto, o cuando supera
+ * una proporción del tamaño del CSV base (a partir de un tamaño mínimo, para no compactar
+ * archivos diminutos en cada escritura).
+ */
+public class PoliticaCompactacion {
+    private static final long TAMANO_MINIMO_PROPORCION = 16 * 1024;
+
+    private final long umbralBytes;
+    private final double umbralProporcion;
+
+    /**
+     * @param umbralBytes Tamaño del diario (en bytes) a partir del cual se compacta siempre.
+     * @param umbralProporcion Proporción diario/base a partir de la cual se compacta.
+     */
+    public PoliticaCompactacion(long umbralBytes, double umbralProporcion) {
+        if (umbralBytes <= 0 || umbralProporcion <= 0) {
+            throw new IllegalArgumentException("Los umbrales de compactación deben ser positivos");
+        }
+        this.umbralBytes = umbralBytes;
+        this.umbralProporcion = umbralProporcion;
+    }
+
+    /**
+     * Política por defecto: 1 MiB o la mitad del CSV base. Se puede ajustar con las
+     * propiedades del sistema biblioteca.compactacion.bytes y biblioteca.compactacion.proporcion.
+     */
+    public static PoliticaCompactacion predeterminada() {
+        long bytes = Long.getLong("biblioteca.compactacion.bytes", 1024 * 1024);
+        double proporcion = Double.parseDouble(System.getProperty("biblioteca.compactacion.proporcion", "0.5"));
+        return new PoliticaCompactacion(bytes, proporcion);
+    }
+
+    public boolean debeCompactar(long bytesDiario, long bytesBase) {
+        if (bytesDiario >= umbralBytes) {
+            return true;
+        }
+        return bytesDiario >= TAMANO_MINIMO_PROPORCION && bytesDiario >= bytesBase * umbralProporcion;
+    }
+
+    public long getUmbralBytes() {
+        return umbralBytes;
+    }
+
+    public double getUmbralProporcion() {
+        return umbralProporcion;
+    }
+}
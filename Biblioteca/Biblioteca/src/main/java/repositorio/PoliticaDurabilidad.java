@@ -0,0 +1,81 @@
+package repositorio;
+
+/**
+ * Define cuándo se escriben en disco las mutaciones de un repositorio.
+ * - SINCRONA: cada mutación se anexa al diario y se fuerza a disco antes de confirmarse.
+ * - GRUPO: la mutación se confirma en memoria y se agrupa con las siguientes; el lote se
+ *   escribe y se fuerza a disco una sola vez por ventana de tiempo o al llenarse.
+ * - ASINCRONA: igual que GRUPO pero sin forzar a disco; el sistema operativo decide cuándo.
+ * En los modos diferidos, una caída puede perder como máximo la última ventana.
+ */
+public class PoliticaDurabilidad {
+
+    public enum Modo {
+        SINCRONA,
+        GRUPO,
+        ASINCRONA
+    }
+
+    private final Modo modo;
+    private final int ventanaMs;
+    private final int tamanoLote;
+
+    public PoliticaDurabilidad(Modo modo, int ventanaMs, int tamanoLote) {
+        if (ventanaMs < 0 || tamanoLote < 1) {
+            throw new IllegalArgumentException("Ventana o tamaño de lote inválidos");
+        }
+        this.modo = modo;
+        this.ventanaMs = ventanaMs;
+        this.tamanoLote = tamanoLote;
+    }
+
+    public static PoliticaDurabilidad sincrona() {
+        return new PoliticaDurabilidad(Modo.SINCRONA, 0, 1);
+    }
+
+    public static PoliticaDurabilidad grupo(int ventanaMs, int tamanoLote) {
+        return new PoliticaDurabilidad(Modo.GRUPO, ventanaMs, tamanoLote);
+    }
+
+    public static PoliticaDurabilidad asincrona(int ventanaMs, int tamanoLote) {
+        return new PoliticaDurabilidad(Modo.ASINCRONA, ventanaMs, tamanoLote);
+    }
+
+    /**
+     * Política por defecto: SINCRONA. Se puede cambiar con las propiedades del sistema
+     * biblioteca.durabilidad (SINCRONA, GRUPO, ASINCRONA), biblioteca.durabilidad.ventanaMs
+     * (por defecto 50) y biblioteca.durabilidad.lote (por defecto 64).
+     */
+    public static PoliticaDurabilidad predeterminada() {
+        Modo modo = Modo.valueOf(System.getProperty("biblioteca.durabilidad", "SINCRONA").trim().toUpperCase());
+        int ventanaMs = Integer.getInteger("biblioteca.durabilidad.ventanaMs", 50);
+        int tamanoLote = Integer.getInteger("biblioteca.durabilidad.lote", 64);
+        return modo == Modo.SINCRONA ? sincrona() : new PoliticaDurabilidad(modo, ventanaMs, tamanoLote);
+    }
+
+    public boolean esSincrona() {
+        return modo == Modo.SINCRONA;
+    }
+
+    public boolean forzarADisco() {
+        return modo != Modo.ASINCRONA;
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    public int getVentanaMs() {
+        return ventanaMs;
+    }
+
+    public int getTamanoLote() {
+        return tamanoLote;
+    }
+
+    @Override
+    public String toString() {
+        return modo == Modo.SINCRONA ? "SINCRONA"
+                : String.format("%s (ventana %d ms, lote %d)", modo, ventanaMs, tamanoLote);
+    }
+}
@@ -0,0 +1,86 @@
+package repositorio;
+
+/**
+ * Define cómo se cuentan los préstamos por libro para el ranking de populares.
+ * - EXACTA: un conteo por libro en cada ventana; la memoria crece con los libros prestados.
+ * - APROXIMADA: un bosquejo count-min y un resumen de frecuentes (Space-Saving) por ventana,
+ *   de tamaño fijo. Cada conteo puede pasarse, nunca quedarse corto: con probabilidad
+ *   1 - probabilidadFallo el exceso es a lo sumo error × préstamos de la ventana.
+ */
+public class PoliticaPopularidad {
+
+    public enum Modo {
+        EXACTA,
+        APROXIMADA
+    }
+
+    private final Modo modo;
+    private final double error;
+    private final double probabilidadFallo;
+
+    public PoliticaPopularidad(Modo modo, double error, double probabilidadFallo) {
+        if (!(error > 0 && error < 1) || !(probabilidadFallo > 0 && probabilidadFallo < 1)) {
+            throw new IllegalArgumentException("El error y la probabilidad de fallo deben estar entre 0 y 1");
+        }
+        this.modo = modo;
+        this.error = error;
+        this.probabilidadFallo = probabilidadFallo;
+    }
+
+    public static PoliticaPopularidad exacta() {
+        return new PoliticaPopularidad(Modo.EXACTA, 0.001, 0.01);
+    }
+
+    public static PoliticaPopularidad aproximada(double error, double probabilidadFallo) {
+        return new PoliticaPopularidad(Modo.APROXIMADA, error, probabilidadFallo);
+    }
+
+    /**
+     * Política por defecto: EXACTA. Se puede cambiar con las propiedades del sistema
+     * biblioteca.popularidad (EXACTA, APROXIMADA), biblioteca.popularidad.error (por defecto
+     * 0.001) y biblioteca.popularidad.fallo (por defecto 0.01).
+     */
+    public static PoliticaPopularidad predeterminada() {
+        Modo modo = Modo.valueOf(System.getProperty("biblioteca.popularidad", "EXACTA").trim().toUpperCase());
+        double error = Double.parseDouble(System.getProperty("biblioteca.popularidad.error", "0.001"));
+        double fallo = Double.parseDouble(System.getProperty("biblioteca.popularidad.fallo", "0.01"));
+        return new PoliticaPopularidad(modo, error, fallo);
+    }
+
+    public boolean esExacta() {
+        return modo == Modo.EXACTA;
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    public double getError() {
+        return error;
+    }
+
+    public double getProbabilidadFallo() {
+        return probabilidadFallo;
+    }
+
+    /** Columnas del bosquejo: e / error, para que el exceso esperado quede bajo la cota. */
+    int anchoBosquejo() {
+        return (int) Math.ceil(Math.E / error);
+    }
+
+    /** Filas del bosquejo: ln(1 / probabilidadFallo) funciones de hash independientes. */
+    int filasBosquejo() {
+        return Math.max(1, (int) Math.ceil(Math.log(1 / probabilidadFallo)));
+    }
+
+    /** Libros monitoreados por ventana: 1 / error, como en Space-Saving. */
+    int capacidadFrecuentes() {
+        return (int) Math.ceil(1 / error);
+    }
+
+    @Override
+    public String toString() {
+        return modo == Modo.EXACTA ? "EXACTA"
+                : String.format("APROXIMADA (error %s, fallo %s)", error, probabilidadFallo);
+    }
+}
@@ -5,21 +5,42 @@ import modelo.Usuario;
 import modelo.Libro;
 import modelo.EstadoPrestamo;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.function.IntFunction;
 
 public class PrestamoRepositorio implements IRepositorio<Prestamo> {
     private final File archivoCsv;
     private int contadorId;
     private static final String RUTA = "data/prestamos.csv";
+    private static final EstadoPrestamo[] ESTADOS = EstadoPrestamo.values();
     private boolean inicializado = false;
     
+    // Almacén residente: se llena al inyectar las dependencias y sirve todas las lecturas
+    private final AlmacenPorId<Prestamo> prestamos = new AlmacenPorId<>();
+    
+    // Índices secundarios por usuario, libro y estado, mantenidos en cada mutación
+    private final IndicePrestamos indice = new IndicePrestamos();
+    
+    // Diario de solo anexado con las mutaciones posteriores al archivo base
+    private final DiarioCambios diario;
+    
     // Referencias a otros repositorios para resolver las dependencias
     private UsuarioRepositorio usuarioRepositorio;
     private BibliotecaRepositorio bibliotecaRepositorio;
     
+    // Líneas del CSV base que no se pudieron leer o resolver en la última carga; con alguna,
+    // la instantánea binaria no lo representaría y no se escribe
+    private int lineasDescartadas;
+    
     public PrestamoRepositorio() {
-        this.archivoCsv = new File(RUTA);
+        this(new File(RUTA));
+    }
+    
+    public PrestamoRepositorio(File archivoCsv) {
+        this.archivoCsv = archivoCsv;
+        this.diario = new DiarioCambios(archivoCsv);
         this.contadorId = 1; // Valor por defecto, se actualizará cuando se inicialice
     }
     
@@ -37,6 +58,7 @@ public class PrestamoRepositorio implements IRepositorio<Prestamo> {
     // Inicializa el contador ID una vez que las dependencias estén disponibles
     private void inicializarSiEsNecesario() {
         if (!inicializado && usuarioRepositorio != null && bibliotecaRepositorio != null) {
+            cargarEnMemoria();
             this.contadorId = obtenerMaximoId() + 1;
             this.inicializado = true;
         }
@@ -52,222 +74,747 @@ public class PrestamoRepositorio implements IRepositorio<Prestamo> {
     private void guardarTodos(List<Prestamo> prestamos) throws IOException {
         asegurarDirectorio();
         
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(archivoCsv, false), StandardCharsets.UTF_8))) {
-            
-            // Cabecera
-            bw.write("id;usuarioId;libroId;fechaPrestamo;fechaDevolucionEsperada;fechaDevolucionReal;estado;notas");
-            bw.newLine();
-            
-            for (Prestamo prestamo : prestamos) {
-                bw.write(prestamo.toCsv());
-                bw.newLine();
-            }
+        List<String> lineas = new ArrayList<>(prestamos.size() + 1);
+        
+        // Cabecera
+        lineas.add("id;usuarioId;libroId;fechaPrestamo;fechaDevolucionEsperada;fechaDevolucionReal;estado;notas");
+        
+        for (Prestamo prestamo : prestamos) {
+            lineas.add(prestamo.toCsv());
         }
+        
+        // Temporal + fsync + renombrado atómico: el CSV vivo nunca queda truncado
+        EscrituraAtomica.escribir(archivoCsv, lineas);
     }
     
-    private List<Prestamo> cargarTodos() throws IOException {
+    private List<Prestamo> cargarTodos(Map<Integer, Usuario> usuariosPorId,
+                                       Map<Integer, Libro> librosPorId) throws IOException {
         List<Prestamo> lista = new ArrayList<>();
+        lineasDescartadas = 0;
         if (!archivoCsv.exists()) {
             return lista; // Si no existe, devuelve lista vacía
         }
         
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream(archivoCsv), StandardCharsets.UTF_8))) {
-            
-            String linea;
-            boolean primera = true;
-            
-            while ((linea = br.readLine()) != null) {
-                if (linea.trim().isEmpty()) continue;
-                
-                // Saltar cabecera si es la primera línea
-                if (primera) {
-                    primera = false;
-                    if (linea.toLowerCase().startsWith("id;")) {
-                        continue;
-                    }
-                }
-                
-                try {
-                    // Parsear la línea para obtener IDs
-                    String[] p = linea.split(";", -1);
-                    if (p.length >= 3) {
-                        int usuarioId = Integer.parseInt(p[1].trim());
-                        int libroId = Integer.parseInt(p[2].trim());
-                        
-                        // Buscar las entidades referenciadas
-                        Usuario usuario = usuarioRepositorio != null ? usuarioRepositorio.obtenerPorId(usuarioId) : null;
-                        Libro libro = bibliotecaRepositorio != null ? bibliotecaRepositorio.obtenerPorId(libroId) : null;
-                        
-                        if (usuario != null && libro != null) {
-                            lista.add(Prestamo.fromCsv(linea, usuario, libro));
-                        } else {
-                            System.err.println("No se pudieron resolver las referencias para el préstamo: " + linea);
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error al procesar línea CSV: " + linea + " - " + e.getMessage());
+        // Lectura por bytes sobre el archivo mapeado: las referencias se resuelven antes de leer
+        // el resto, y de cada préstamo solo se crea la String de las notas
+        LectorCsvMapeado.recorrer(archivoCsv, fila -> {
+            try {
+                Prestamo prestamo = prestamoDe(fila, usuariosPorId, librosPorId);
+                if (prestamo != null) {
+                    lista.add(prestamo);
+                } else {
+                    lineasDescartadas++;
                 }
+            } catch (Exception e) {
+                lineasDescartadas++;
+                System.err.println("Error al procesar línea CSV: " + fila.linea() + " - " + e.getMessage());
+            }
+        });
+        return lista;
+    }
+    
+    // Lo mismo que resolverPrestamo y Prestamo.fromCsv, con los campos leídos desde los bytes
+    private static Prestamo prestamoDe(LectorCsvMapeado.Fila fila, Map<Integer, Usuario> usuariosPorId,
+                                       Map<Integer, Libro> librosPorId) {
+        if (fila.campos() < 3) {
+            return null;
+        }
+        Usuario usuario = usuariosPorId.get(fila.entero(1));
+        Libro libro = librosPorId.get(fila.entero(2));
+        if (usuario == null || libro == null) {
+            System.err.println("No se pudieron resolver las referencias para el préstamo: " + fila.linea());
+            return null;
+        }
+        
+        fila.exigirCampos(8);
+        LocalDate fechaPrestamo = fila.fecha(3);
+        LocalDate fechaDevolucionEsperada = fila.fecha(4);
+        if (fechaPrestamo == null || fechaDevolucionEsperada == null) {
+            throw new IllegalArgumentException("Fecha de préstamo o de devolución vacía");
+        }
+        Prestamo prestamo = new Prestamo(usuario, libro);
+        prestamo.setId(fila.entero(0));
+        prestamo.setFechaPrestamo(fechaPrestamo);
+        prestamo.setFechaDevolucionEsperada(fechaDevolucionEsperada);
+        prestamo.setFechaDevolucionReal(fila.fecha(5));
+        prestamo.setEstado(fila.enumerado(6, ESTADOS));
+        prestamo.setNotas(fila.texto(7));
+        return prestamo;
+    }
+    
+    // El CSV base, o su instantánea binaria si está habilitada y corresponde al CSV actual
+    private List<Prestamo> cargarBase(Map<Integer, Usuario> usuariosPorId,
+                                      Map<Integer, Libro> librosPorId) throws IOException {
+        if (!InstantaneaBinaria.habilitada() || !archivoCsv.exists()) {
+            return cargarTodos(usuariosPorId, librosPorId);
+        }
+        String firma = diario.firmaBase();
+        InstantaneaBinaria.Lector instantanea = InstantaneaBinaria.leer(archivoCsv, firma, 7, 1);
+        if (instantanea != null) {
+            try {
+                return leerInstantanea(instantanea, usuariosPorId, librosPorId);
+            } catch (RuntimeException e) {
+                // Un ordinal o una fecha fuera de rango: dañada como cualquier otra, se relee el CSV
+                System.err.println("Instantánea de préstamos inválida, se lee el CSV: " + e);
+            }
+        }
+        
+        List<Prestamo> lista = cargarTodos(usuariosPorId, librosPorId);
+        if (lineasDescartadas == 0) {
+            try {
+                escribirInstantanea(lista, firma);
+            } catch (IOException e) {
+                System.err.println("Error al escribir la instantánea de préstamos: " + e.getMessage());
             }
         }
         return lista;
     }
     
-    private int obtenerMaximoId() {
+    // Columnas: id, usuarioId, libroId, las tres fechas, estado (ordinal) | notas
+    private void escribirInstantanea(List<Prestamo> lista, String firma) throws IOException {
+        InstantaneaBinaria.Escritor escritor = new InstantaneaBinaria.Escritor(lista.size());
+        int[] ids = escritor.columnaEnteros();
+        int[] usuarios = escritor.columnaEnteros();
+        int[] libros = escritor.columnaEnteros();
+        int[] fechasPrestamo = escritor.columnaEnteros();
+        int[] fechasEsperadas = escritor.columnaEnteros();
+        int[] fechasReales = escritor.columnaEnteros();
+        int[] estados = escritor.columnaEnteros();
+        int[] notas = escritor.columnaTextos();
+        for (int i = 0; i < lista.size(); i++) {
+            Prestamo prestamo = lista.get(i);
+            ids[i] = prestamo.getId();
+            usuarios[i] = prestamo.getUsuario().getId();
+            libros[i] = prestamo.getLibro().getId();
+            fechasPrestamo[i] = InstantaneaBinaria.dia(prestamo.getFechaPrestamo());
+            fechasEsperadas[i] = InstantaneaBinaria.dia(prestamo.getFechaDevolucionEsperada());
+            fechasReales[i] = InstantaneaBinaria.dia(prestamo.getFechaDevolucionReal());
+            estados[i] = prestamo.getEstado().ordinal();
+            notas[i] = escritor.cadena(prestamo.getNotas());
+        }
+        escritor.escribir(archivoCsv, firma);
+    }
+    
+    private static List<Prestamo> leerInstantanea(InstantaneaBinaria.Lector instantanea,
+                                                  Map<Integer, Usuario> usuariosPorId,
+                                                  Map<Integer, Libro> librosPorId) {
+        int[] ids = instantanea.enteros(0);
+        int[] usuarios = instantanea.enteros(1);
+        int[] libros = instantanea.enteros(2);
+        LocalDate[] fechasPrestamo = instantanea.fechas(3);
+        LocalDate[] fechasEsperadas = instantanea.fechas(4);
+        LocalDate[] fechasReales = instantanea.fechas(5);
+        EstadoPrestamo[] estados = instantanea.enumerados(6, ESTADOS);
+        String[] notas = instantanea.textos(0);
+        List<Prestamo> lista = new ArrayList<>(instantanea.filas());
+        for (int i = 0; i < instantanea.filas(); i++) {
+            Usuario usuario = usuariosPorId.get(usuarios[i]);
+            Libro libro = librosPorId.get(libros[i]);
+            if (usuario == null || libro == null) {
+                System.err.println("No se pudieron resolver las referencias para el préstamo: " + ids[i]);
+                continue;
+            }
+            Prestamo prestamo = new Prestamo(usuario, libro);
+            prestamo.setId(ids[i]);
+            prestamo.setFechaPrestamo(fechasPrestamo[i]);
+            prestamo.setFechaDevolucionEsperada(fechasEsperadas[i]);
+            prestamo.setFechaDevolucionReal(fechasReales[i]);
+            prestamo.setEstado(estados[i]);
+            prestamo.setNotas(notas[i]);
+            lista.add(prestamo);
+        }
+        return lista;
+    }
+    
+    // Construye el préstamo de una línea CSV resolviendo sus referencias; null si no se pueden resolver
+    private Prestamo resolverPrestamo(String linea, IntFunction<Usuario> usuariosPorId,
+                                      IntFunction<Libro> librosPorId) {
+        // Parsear la línea para obtener IDs
+        String[] p = linea.split(";", -1);
+        if (p.length < 3) {
+            return null;
+        }
+        int usuarioId = Integer.parseInt(p[1].trim());
+        int libroId = Integer.parseInt(p[2].trim());
+        
+        // Resolver las entidades referenciadas
+        Usuario usuario = usuariosPorId.apply(usuarioId);
+        Libro libro = librosPorId.apply(libroId);
+        
+        if (usuario == null || libro == null) {
+            System.err.println("No se pudieron resolver las referencias para el préstamo: " + linea);
+            return null;
+        }
+        return Prestamo.fromCsv(linea, usuario, libro);
+    }
+    
+    private void cargarEnMemoria() {
+        prestamos.clear();
+        
+        // Carga con unión en bloque: los usuarios y libros se indexan por ID una sola vez
+        // por carga, en lugar de consultar los otros repositorios por cada línea
+        Map<Integer, Usuario> usuariosPorId = new HashMap<>();
+        if (usuarioRepositorio != null) {
+            for (Usuario usuario : usuarioRepositorio.obtenerTodos()) {
+                usuariosPorId.put(usuario.getId(), usuario);
+            }
+        }
+        
+        Map<Integer, Libro> librosPorId = new HashMap<>();
+        if (bibliotecaRepositorio != null) {
+            for (Libro libro : bibliotecaRepositorio.obtenerTodos()) {
+                librosPorId.put(libro.getId(), libro);
+            }
+        }
+        
+        try {
+            // CSV base y luego los cambios posteriores registrados en el diario
+            diario.cargar(() -> {
+                for (Prestamo prestamo : cargarBase(usuariosPorId, librosPorId)) {
+                    prestamos.put(prestamo.getId(), prestamo);
+                }
+            }, linea -> {
+                Prestamo prestamo = resolverPrestamo(linea, usuariosPorId::get, librosPorId::get);
+                if (prestamo != null) {
+                    prestamos.put(prestamo.getId(), prestamo);
+                }
+            }, prestamos::remove);
+        } catch (IOException e) {
+            System.err.println("Error al cargar préstamos: " + e.getMessage());
+        }
+        // También recalcula los préstamos activos de cada usuario
+        indice.reconstruir(prestamos.values(), usuariosPorId.values());
+    }
+    
+    // Incorpora los cambios que otros procesos escribieron desde la última lectura; antes,
+    // los de usuarios y libros, para poder resolver las referencias de los préstamos nuevos
+    void ponerAlDia() {
+        if (!inicializado) {
+            return;
+        }
+        usuarioRepositorio.ponerAlDia();
+        bibliotecaRepositorio.ponerAlDia();
         try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .mapToInt(Prestamo::getId)
-                           .max()
-                           .orElse(0);
+            diario.ponerAlDia(this::aplicarAlta, this::aplicarBaja, this::recargar);
         } catch (IOException e) {
-            return 0; // Si hay error al cargar, empezamos desde 0
+            System.err.println("Error al leer cambios de préstamos: " + e.getMessage());
+        }
+    }
+    
+    private void ponerAlDiaSiCorresponde() {
+        if (diario.debeComprobar()) {
+            ponerAlDia();
+        }
+    }
+    
+    // Los cambios ajenos se copian sobre los objetos existentes, para no invalidar los ya entregados
+    private void aplicarAlta(String linea) {
+        Prestamo leido = resolverPrestamo(linea, usuarioRepositorio::obtenerPorId,
+                                          bibliotecaRepositorio::obtenerPorId);
+        if (leido == null) {
+            return;
+        }
+        Prestamo existente = prestamos.get(leido.getId());
+        if (existente != null) {
+            copiarCampos(leido, existente);
+            indice.reindexar(existente);
+        } else {
+            prestamos.put(leido.getId(), leido);
+            indice.agregar(leido);
+        }
+        contadorId = Math.max(contadorId, leido.getId() + 1);
+    }
+    
+    private void aplicarBaja(int id) {
+        prestamos.remove(id);
+        indice.quitar(id);
+    }
+    
+    // Otro proceso compactó: se relee todo, conservando la identidad de los objetos ya entregados
+    private void recargar() {
+        Map<Integer, Prestamo> anteriores = new HashMap<>(prestamos.comoMapa());
+        cargarEnMemoria();
+        for (Prestamo leido : new ArrayList<>(prestamos.values())) {
+            Prestamo existente = anteriores.get(leido.getId());
+            if (existente != null) {
+                copiarCampos(leido, existente);
+                prestamos.put(existente.getId(), existente);
+            }
         }
+        contadorId = Math.max(contadorId, obtenerMaximoId() + 1);
+    }
+    
+    // Solo tras un error de escritura: memoria, índices y disco vuelven a coincidir, sobre los
+    // mismos objetos
+    private void restaurarDesdeDisco() {
+        recargar();
+    }
+    
+    private static void copiarCampos(Prestamo origen, Prestamo destino) {
+        destino.setId(origen.getId());
+        destino.setUsuario(origen.getUsuario());
+        destino.setLibro(origen.getLibro());
+        destino.setFechaPrestamo(origen.getFechaPrestamo());
+        destino.setFechaDevolucionEsperada(origen.getFechaDevolucionEsperada());
+        destino.setFechaDevolucionReal(origen.getFechaDevolucionReal());
+        destino.setEstado(origen.getEstado());
+        destino.setNotas(origen.getNotas());
+    }
+    
+    // Cada mutación se anexa al diario: su costo no depende del tamaño del CSV
+    private void registrarAlta(Prestamo prestamo) throws IOException {
+        asegurarArchivoBase();
+        diario.registrarAlta(prestamo.toCsv());
+    }
+    
+    private void registrarBaja(int id) throws IOException {
+        asegurarArchivoBase();
+        diario.registrarBaja(id);
+    }
+    
+    // El archivo base (con su cabecera) debe existir aunque los cambios vivan en el diario
+    private void asegurarArchivoBase() throws IOException {
+        if (!archivoCsv.exists()) {
+            guardarTodos(new ArrayList<>());
+            diario.baseCreada();
+        }
+    }
+    
+    private int obtenerMaximoId() {
+        return prestamos.ultimoId();
     }
     
     @Override
     public boolean crear(Prestamo prestamo) {
+        // Asegurar que el repositorio esté inicializado
+        inicializarSiEsNecesario();
+        
+        // Cada mutación se hace con el cerrojo de escritura y sobre la vista al día,
+        // para que los IDs no choquen con los de otro proceso
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            // Asegurar que el repositorio esté inicializado
-            inicializarSiEsNecesario();
-            
+            ponerAlDia();
             prestamo.setId(contadorId++);
-            List<Prestamo> prestamos = cargarTodos();
-            prestamos.add(prestamo);
-            guardarTodos(prestamos);
-            return true;
-        } catch (IOException e) {
-            System.err.println("Error al crear préstamo: " + e.getMessage());
-            return false;
+            prestamos.put(prestamo.getId(), prestamo);
+            indice.agregar(prestamo);
+            try {
+                registrarAlta(prestamo);
+                return true;
+            } catch (IOException e) {
+                // Deshacer el cambio en memoria para que coincida con el disco
+                prestamos.remove(prestamo.getId());
+                indice.quitar(prestamo.getId());
+                System.err.println("Error al crear préstamo: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            diario.desbloquear();
         }
     }
     
     @Override
     public Prestamo obtenerPorId(int id) {
-        try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .filter(prestamo -> prestamo.getId() == id)
-                           .findFirst()
-                           .orElse(null);
-        } catch (IOException e) {
-            System.err.println("Error al obtener préstamo por ID: " + e.getMessage());
-            return null;
-        }
+        ponerAlDiaSiCorresponde();
+        return prestamos.get(id);
     }
     
     @Override
     public List<Prestamo> obtenerTodos() {
-        try {
-            // Asegurar que el repositorio esté inicializado
-            inicializarSiEsNecesario();
-            
-            return new ArrayList<>(cargarTodos());
-        } catch (IOException e) {
-            System.err.println("Error al obtener todos los préstamos: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        // Asegurar que el repositorio esté inicializado
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        
+        return new ArrayList<>(prestamos.values());
+    }
+    
+    @Override
+    public int contar() {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return prestamos.size();
+    }
+    
+    @Override
+    public List<Prestamo> obtenerPagina(int desde, int cantidad) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return prestamos.pagina(desde, cantidad);
+    }
+    
+    @Override
+    public List<Prestamo> obtenerSiguientes(int despuesDeId, int cantidad) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return prestamos.siguientes(despuesDeId, cantidad);
+    }
+    
+    @Override
+    public Stream<Prestamo> flujo() {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return prestamos.flujo(0);
     }
     
     @Override
     public boolean actualizar(Prestamo prestamo) {
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            List<Prestamo> prestamos = cargarTodos();
-            for (int i = 0; i < prestamos.size(); i++) {
-                if (prestamos.get(i).getId() == prestamo.getId()) {
-                    prestamos.set(i, prestamo);
-                    guardarTodos(prestamos);
-                    return true;
-                }
+            // Ponerse al día no debe pisar lo que el llamador ya modificó en el objeto
+            Prestamo cambios = new Prestamo();
+            copiarCampos(prestamo, cambios);
+            ponerAlDia();
+            
+            // Los cambios se copian sobre el objeto residente, que es el indexado; el usuario y
+            // el libro también deben ser los residentes, que llevan los contadores
+            Prestamo residente = prestamos.get(cambios.getId());
+            if (residente == null) {
+                return false;
             }
-            return false;
-        } catch (IOException e) {
-            System.err.println("Error al actualizar préstamo: " + e.getMessage());
-            return false;
+            cambios.setUsuario(usuarioResidente(cambios.getUsuario()));
+            cambios.setLibro(libroResidente(cambios.getLibro()));
+            try {
+                registrarAlta(cambios);
+            } catch (IOException e) {
+                // El llamador suele modificar el objeto residente en el lugar (p. ej. devolver()),
+                // así que no hay un "anterior" en memoria que reponer: se vuelve a leer el disco
+                System.err.println("Error al actualizar préstamo: " + e.getMessage());
+                restaurarDesdeDisco();
+                return false;
+            }
+            copiarCampos(cambios, residente);
+            if (prestamo != residente) {
+                copiarCampos(cambios, prestamo);
+            }
+            indice.reindexar(residente);
+            return true;
+        } finally {
+            diario.desbloquear();
         }
     }
     
+    private Usuario usuarioResidente(Usuario usuario) {
+        Usuario residente = usuario == null || usuarioRepositorio == null
+                ? null : usuarioRepositorio.obtenerPorId(usuario.getId());
+        return residente != null ? residente : usuario;
+    }
+    
+    private Libro libroResidente(Libro libro) {
+        Libro residente = libro == null || bibliotecaRepositorio == null
+                ? null : bibliotecaRepositorio.obtenerPorId(libro.getId());
+        return residente != null ? residente : libro;
+    }
+    
     @Override
     public boolean eliminar(int id) {
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            List<Prestamo> prestamos = cargarTodos();
-            boolean eliminado = prestamos.removeIf(prestamo -> prestamo.getId() == id);
-            if (eliminado) {
-                guardarTodos(prestamos);
+            ponerAlDia();
+            Prestamo eliminado = prestamos.remove(id);
+            if (eliminado == null) {
+                return false;
             }
-            return eliminado;
-        } catch (IOException e) {
-            System.err.println("Error al eliminar préstamo: " + e.getMessage());
-            return false;
+            indice.quitar(id);
+            try {
+                registrarBaja(id);
+                return true;
+            } catch (IOException e) {
+                prestamos.put(id, eliminado);
+                indice.agregar(eliminado);
+                System.err.println("Error al eliminar préstamo: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            diario.desbloquear();
         }
     }
     
-    // Métodos específicos
+    // Métodos específicos: se resuelven con los índices, en tiempo proporcional al resultado
     public List<Prestamo> obtenerPorUsuario(Usuario usuario) {
-        try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .filter(prestamo -> prestamo.getUsuario().getId() == usuario.getId())
-                           .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al obtener préstamos por usuario: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        ponerAlDiaSiCorresponde();
+        return resolver(indice.idsPorUsuario(usuario.getId()));
     }
     
     public List<Prestamo> obtenerPorLibro(Libro libro) {
-        try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .filter(prestamo -> prestamo.getLibro().getId() == libro.getId())
-                           .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al obtener préstamos por libro: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        ponerAlDiaSiCorresponde();
+        return resolver(indice.idsPorLibro(libro.getId()));
     }
     
     public List<Prestamo> obtenerPorEstado(EstadoPrestamo estado) {
-        try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .filter(prestamo -> prestamo.getEstado() == estado)
-                           .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al obtener préstamos por estado: " + e.getMessage());
-            return new ArrayList<>();
+        ponerAlDiaSiCorresponde();
+        // Un préstamo modificado en el lugar y aún no actualizado sigue en su estado indexado
+        List<Prestamo> resultado = resolver(indice.idsPorEstado(estado));
+        resultado.removeIf(prestamo -> prestamo.getEstado() != estado);
+        return resultado;
+    }
+    
+    /** Cuántos préstamos hay en el estado, sin armar la lista. */
+    public int contarPorEstado(EstadoPrestamo estado) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return indice.idsPorEstado(estado).size();
+    }
+    
+    /** Una página de obtenerPorEstado: hasta cantidad préstamos con ID mayor que despuesDeId. */
+    public List<Prestamo> obtenerPorEstado(EstadoPrestamo estado, int despuesDeId, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        List<Prestamo> resultado = new ArrayList<>(Math.min(Math.max(cantidad, 0), 1024));
+        for (int id : indice.idsPorEstadoDespuesDe(estado, despuesDeId)) {
+            if (resultado.size() >= cantidad) {
+                break;
+            }
+            Prestamo prestamo = prestamos.get(id);
+            if (prestamo.getEstado() == estado) {
+                resultado.add(prestamo);
+            }
         }
+        return resultado;
     }
     
+    // Activos son los que siguen sin devolver, estén en estado ACTIVO o ya marcados VENCIDO
     public List<Prestamo> obtenerPrestamosActivos() {
-        return obtenerPorEstado(EstadoPrestamo.ACTIVO);
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        List<Prestamo> resultado = resolver(indice.idsActivos());
+        resultado.removeIf(prestamo -> !prestamo.getEstado().sinDevolver());
+        return resultado;
+    }
+    
+    /** Una página de obtenerPrestamosActivos: hasta cantidad préstamos con ID mayor que despuesDeId. */
+    public List<Prestamo> obtenerPrestamosActivos(int despuesDeId, int cantidad) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        List<Prestamo> resultado = new ArrayList<>(Math.min(Math.max(cantidad, 0), 1024));
+        for (int id : indice.idsActivosDespuesDe(despuesDeId)) {
+            if (resultado.size() >= cantidad) {
+                break;
+            }
+            Prestamo prestamo = prestamos.get(id);
+            if (prestamo.getEstado().sinDevolver()) {
+                resultado.add(prestamo);
+            }
+        }
+        return resultado;
+    }
+    
+    public int contarActivos() {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return indice.idsActivos().size();
+    }
+    
+    public List<Prestamo> obtenerActivosPorLibro(Libro libro) {
+        ponerAlDiaSiCorresponde();
+        List<Prestamo> resultado = resolver(indice.idsActivosPorLibro(libro.getId()));
+        resultado.removeIf(prestamo -> !prestamo.getEstado().sinDevolver());
+        return resultado;
     }
     
+    /**
+     * Los préstamos vencidos en orden de ID: los ya marcados VENCIDO y los que vencieron desde
+     * la última pasada de {@link #marcarVencidos}, que salen de la cola de vencimientos.
+     * Ninguno de los dos recorre los préstamos que no están vencidos.
+     */
     public List<Prestamo> obtenerPrestamosVencidos() {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        Set<Integer> ids = new TreeSet<>(indice.idsPorEstado(EstadoPrestamo.VENCIDO));
+        for (int id : indice.activosVencidos(LocalDate.now())) {
+            ids.add(id);
+        }
+        List<Prestamo> resultado = resolver(ids);
+        resultado.removeIf(prestamo -> !prestamo.estaVencido());
+        return resultado;
+    }
+    
+    /**
+     * Pasa a VENCIDO los préstamos activos cuya devolución esperada ya pasó, y persiste todos
+     * los cambios en un solo anexado al diario. Lo llama una vez por día
+     * {@link ProgramadorVencimientos}; con los datos al día no hace nada.
+     * @return cuántos préstamos se marcaron, o -1 si no se pudo escribir.
+     */
+    public int marcarVencidos() {
+        inicializarSiEsNecesario();
+        if (!diario.intentarBloquearEscritura()) {
+            return -1;
+        }
         try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .filter(Prestamo::estaVencido)
-                           .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-        } catch (IOException e) {
-            System.err.println("Error al obtener préstamos vencidos: " + e.getMessage());
-            return new ArrayList<>();
+            ponerAlDia();
+            List<Prestamo> marcados = new ArrayList<>();
+            List<String> lineas = new ArrayList<>();
+            for (int id : indice.extraerVencidos(LocalDate.now())) {
+                Prestamo prestamo = prestamos.get(id);
+                // Uno modificado en el lugar (p. ej. devuelto) y no actualizado se deja como está
+                if (prestamo.getEstado() == EstadoPrestamo.ACTIVO) {
+                    prestamo.setEstado(EstadoPrestamo.VENCIDO);
+                    marcados.add(prestamo);
+                    lineas.add(prestamo.toCsv());
+                }
+            }
+            try {
+                asegurarArchivoBase();
+                diario.registrarAltas(lineas);
+            } catch (IOException e) {
+                // Vuelven a ACTIVO y a la cola, para la próxima pasada
+                for (Prestamo prestamo : marcados) {
+                    prestamo.setEstado(EstadoPrestamo.ACTIVO);
+                    indice.reindexar(prestamo);
+                }
+                System.err.println("Error al marcar préstamos vencidos: " + e.getMessage());
+                return -1;
+            }
+            for (Prestamo prestamo : marcados) {
+                indice.reindexar(prestamo);
+            }
+            return marcados.size();
+        } finally {
+            diario.desbloquear();
         }
     }
     
+    /** Cuántos préstamos activos están vencidos hoy, sin recorrerlos. */
+    public int contarVencidos() {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return indice.contarVencidos(LocalDate.now());
+    }
+
+    /** Cuántos préstamos se hicieron hoy, devueltos incluidos. */
+    public int contarPrestadosHoy() {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return indice.contarPrestadosEl(LocalDate.now());
+    }
+
+    /**
+     * Los {@code cantidad} libros más prestados en la ventana que termina hoy, del más
+     * prestado al menos, contando también los préstamos ya devueltos.
+     */
+    public List<LibroPopular> obtenerLibrosPopulares(VentanaPopularidad ventana, int cantidad) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        LocalDate hoy = LocalDate.now();
+        List<LibroPopular> resultado = new ArrayList<>();
+        for (int libroId : indice.masPrestados(ventana, cantidad, hoy)) {
+            Libro libro = bibliotecaRepositorio.obtenerPorId(libroId);
+            if (libro != null) {
+                resultado.add(new LibroPopular(libro, indice.vecesPrestado(ventana, libroId, hoy)));
+            }
+        }
+        return resultado;
+    }
+
     public Prestamo buscarPrestamoActivoPorLibroYUsuario(Libro libro, Usuario usuario) {
+        ponerAlDiaSiCorresponde();
+        for (int id : indice.idsActivosPorLibroYUsuario(libro.getId(), usuario.getId())) {
+            Prestamo prestamo = prestamos.get(id);
+            if (prestamo.getEstado().sinDevolver()) {
+                return prestamo;
+            }
+        }
+        return null;
+    }
+    
+    /** Los préstamos que cumplen la consulta, en orden de ID; ver {@link PlanConsulta}. */
+    public List<Prestamo> ejecutar(Consulta.Prestamos consulta) {
+        return ejecutar(consulta, 0, Integer.MAX_VALUE);
+    }
+    
+    public List<Prestamo> ejecutar(Consulta.Prestamos consulta, int despuesDeId, int cantidad) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return planear(consulta).ejecutar(prestamos::get, prestamos::flujo, despuesDeId, cantidad);
+    }
+    
+    public String explicar(Consulta.Prestamos consulta) {
+        inicializarSiEsNecesario();
+        ponerAlDiaSiCorresponde();
+        return planear(consulta).explicar();
+    }
+    
+    private PlanConsulta<Prestamo> planear(Consulta.Prestamos consulta) {
+        return PlanConsulta.planear(consulta, this::accesoIndice, prestamos.size());
+    }
+    
+    private PlanConsulta.AccesoIndice accesoIndice(Consulta.Filtro<Prestamo> filtro) {
+        switch (filtro.campo) {
+            case ESTADO:
+                return accesoIndice("préstamos por estado", indice.idsPorEstado((EstadoPrestamo) filtro.valor));
+            case USUARIO:
+                return accesoIndice("préstamos por usuario", indice.idsPorUsuario((Integer) filtro.valor));
+            case LIBRO:
+                return accesoIndice("préstamos por libro", indice.idsPorLibro((Integer) filtro.valor));
+            default:
+                return null;
+        }
+    }
+    
+    // Los conjuntos del índice ya están en orden de ID
+    private static PlanConsulta.AccesoIndice accesoIndice(String nombre, Set<Integer> ids) {
+        return new PlanConsulta.AccesoIndice(nombre, ids.size(),
+                                             () -> ids.stream().mapToInt(Integer::intValue).toArray());
+    }
+    
+    private List<Prestamo> resolver(Set<Integer> ids) {
+        List<Prestamo> resultado = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            resultado.add(prestamos.get(id));
+        }
+        return resultado;
+    }
+    
+    public void setPoliticaCompactacion(PoliticaCompactacion politica) {
+        diario.setPoliticaCompactacion(politica);
+    }
+    
+    public void setPoliticaDurabilidad(PoliticaDurabilidad politica) {
         try {
-            List<Prestamo> prestamos = cargarTodos();
-            return prestamos.stream()
-                           .filter(prestamo -> prestamo.getLibro().getId() == libro.getId() &&
-                                             prestamo.getUsuario().getId() == usuario.getId() &&
-                                             prestamo.getEstado() == EstadoPrestamo.ACTIVO)
-                           .findFirst()
-                           .orElse(null);
+            diario.setPoliticaDurabilidad(politica);
         } catch (IOException e) {
-            System.err.println("Error al buscar préstamo activo: " + e.getMessage());
-            return null;
+            System.err.println("Error al escribir los cambios pendientes: " + e.getMessage());
+        }
+    }
+    
+    public PoliticaDurabilidad getPoliticaDurabilidad() {
+        return diario.getPoliticaDurabilidad();
+    }
+    
+    /** Cambia entre el ranking de populares exacto y el aproximado de memoria fija. */
+    public void setPoliticaPopularidad(PoliticaPopularidad politica) {
+        inicializarSiEsNecesario();
+        indice.setPoliticaPopularidad(politica);
+    }
+    
+    public PoliticaPopularidad getPoliticaPopularidad() {
+        return indice.getPoliticaPopularidad();
+    }
+    
+    /** Tamaño en memoria de los contadores de popularidad. */
+    public EstadisticasIndice getEstadisticasPopularidad() {
+        inicializarSiEsNecesario();
+        return indice.estadisticasPopularidad();
+    }
+    
+    public MetricasEscritura getMetricasEscritura() {
+        return diario.getMetricas();
+    }
+    
+    /**
+     * Escribe en disco las mutaciones que la política de durabilidad haya dejado pendientes.
+     * @return false si la escritura falló; los cambios siguen pendientes y se reintentarán.
+     */
+    public boolean sincronizar() {
+        try {
+            diario.vaciar();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al escribir los cambios pendientes: " + e.getMessage());
+            return false;
         }
     }
     
@@ -0,0 +1,46 @@
+package repositorio;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pasa a VENCIDO los préstamos que vencieron, una vez al iniciar y luego cada medianoche,
+ * con {@link PrestamoRepositorio#marcarVencidos}. Si el cerrojo está tomado o falla la
+ * escritura, reintenta al minuto.
+ *
+ * El hilo del programador solo decide cuándo; la pasada corre en el ejecutor que se indica
+ * (en las aplicaciones Swing, el hilo de eventos), porque los repositorios no son seguros
+ * para usar desde varios hilos.
+ */
+public final class ProgramadorVencimientos {
+    private static final ScheduledExecutorService EJECUTOR = Executors.newSingleThreadScheduledExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "programador-vencimientos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private static final long REINTENTO_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private ProgramadorVencimientos() {}
+
+    public static void iniciar(PrestamoRepositorio repositorio, Executor ejecutorPasada) {
+        programar(repositorio, ejecutorPasada, 0);
+    }
+
+    private static void programar(PrestamoRepositorio repositorio, Executor ejecutorPasada, long demoraMs) {
+        EJECUTOR.schedule(() -> ejecutorPasada.execute(() -> {
+            boolean escrito = repositorio.marcarVencidos() >= 0;
+            programar(repositorio, ejecutorPasada, escrito ? hastaMedianoche() : REINTENTO_MS);
+        }), demoraMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Se recalcula en cada pasada, así los cambios de horario no la corren de día
+    private static long hastaMedianoche() {
+        LocalDateTime ahora = LocalDateTime.now();
+        return Duration.between(ahora, LocalDate.now().plusDays(1).atStartOfDay()).toMillis() + 1000;
+    }
+}
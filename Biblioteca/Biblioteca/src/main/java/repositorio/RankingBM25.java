@@ -0,0 +1,109 @@
+package repositorio;
+
+import java.util.List;
+
+/**
+ * Puntaje de relevancia de un libro para una consulta, al estilo BM25 sobre el título y el
+ * autor: cada palabra de la consulta suma más cuanto más rara es en el catálogo (idf) y cuanto
+ * más corto es el campo donde aparece. Una palabra de la consulta que solo es el comienzo de
+ * una palabra del campo ("quij" en "quijote") suma la mitad.
+ *
+ * Sobre eso se aplican refuerzos: la consulta entera aparece tal cual en el campo (frase), el
+ * campo empieza por la consulta (prefijo) y el libro tiene ejemplares disponibles.
+ *
+ * Los textos llegan normalizados. Las frecuencias salen de {@link IndiceTextoLibros}.
+ */
+final class RankingBM25 {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PESO_TITULO = 1.0;
+    private static final double PESO_AUTOR = 0.6;
+    private static final double PESO_PREFIJO_PALABRA = 0.5;
+    private static final double REFUERZO_FRASE = 1.5;
+    private static final double REFUERZO_PREFIJO = 1.3;
+    private static final double REFUERZO_DISPONIBLE = 1.2;
+    // Base mínima para que los refuerzos ordenen también coincidencias sin palabras completas
+    private static final double PUNTAJE_MINIMO = 0.01;
+
+    private final IndiceTextoLibros indice;
+    private final String consulta;
+    private final List<String> terminos;
+    private final double totalLibros;
+    private final double largoPromedioTitulo;
+    private final double largoPromedioAutor;
+    // idf de cada término en cada campo, calculado una vez por consulta
+    private final double[] idfTitulo;
+    private final double[] idfAutor;
+
+    RankingBM25(IndiceTextoLibros indice, int totalLibros, String consultaNormalizada) {
+        this.indice = indice;
+        this.consulta = consultaNormalizada.trim();
+        this.terminos = IndiceTextoLibros.palabras(consulta);
+        this.totalLibros = Math.max(totalLibros, 1);
+        this.largoPromedioTitulo = Math.max(1.0, indice.totalPalabras(true) / this.totalLibros);
+        this.largoPromedioAutor = Math.max(1.0, indice.totalPalabras(false) / this.totalLibros);
+        this.idfTitulo = new double[terminos.size()];
+        this.idfAutor = new double[terminos.size()];
+        for (int t = 0; t < terminos.size(); t++) {
+            idfTitulo[t] = idf(indice.frecuencia(terminos.get(t), true));
+            idfAutor[t] = idf(indice.frecuencia(terminos.get(t), false));
+        }
+    }
+
+    double puntuar(String titulo, String autor, boolean disponible) {
+        double puntaje = PESO_TITULO * bm25(titulo, true, idfTitulo, largoPromedioTitulo)
+                       + PESO_AUTOR * bm25(autor, false, idfAutor, largoPromedioAutor)
+                       + PUNTAJE_MINIMO;
+        if (terminos.size() > 1 && (titulo.contains(consulta) || autor.contains(consulta))) {
+            puntaje *= REFUERZO_FRASE;
+        }
+        if (!consulta.isEmpty() && (titulo.startsWith(consulta) || autor.startsWith(consulta))) {
+            puntaje *= REFUERZO_PREFIJO;
+        }
+        if (disponible) {
+            puntaje *= REFUERZO_DISPONIBLE;
+        }
+        return puntaje;
+    }
+
+    // Recorre las palabras del campo sin partirlo en Strings: con resultados grandes se
+    // puntúan cientos de miles de campos por consulta
+    private double bm25(String campo, boolean enTitulo, double[] idfExacto, double largoPromedio) {
+        double[] mejor = new double[terminos.size()];
+        int largo = 0;
+        int inicio = -1;
+        for (int i = 0; i <= campo.length(); i++) {
+            boolean letra = i < campo.length() && Character.isLetterOrDigit(campo.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                largo++;
+                int tamanoPalabra = i - inicio;
+                for (int t = 0; t < terminos.size(); t++) {
+                    String termino = terminos.get(t);
+                    if (tamanoPalabra < termino.length() || !campo.startsWith(termino, inicio)) {
+                        continue;
+                    }
+                    if (tamanoPalabra == termino.length()) {
+                        mejor[t] = idfExacto[t];
+                    } else if (mejor[t] == 0) {
+                        double idfPalabra = idf(indice.frecuencia(campo.substring(inicio, i), enTitulo));
+                        mejor[t] = Math.max(mejor[t], PESO_PREFIJO_PALABRA * idfPalabra);
+                    }
+                }
+                inicio = -1;
+            }
+        }
+        // tf es 1 para cada término presente: los títulos casi nunca repiten palabras
+        double normalizacion = K1 * (1 - B + B * largo / largoPromedio);
+        double puntaje = 0;
+        for (double idf : mejor) {
+            puntaje += idf * (K1 + 1) / (1 + normalizacion);
+        }
+        return puntaje;
+    }
+
+    private double idf(int frecuencia) {
+        return Math.log(1 + (totalLibros - frecuencia + 0.5) / (frecuencia + 0.5));
+    }
+}
@@ -0,0 +1,162 @@
+package repositorio;
+
+import util.MejoresK;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Resumen de los libros más prestados al estilo Space-Saving: a lo sumo {@code capacidad}
+ * libros monitoreados en un montículo de mínimos por conteo. Un libro que no está desplaza
+ * al de menor conteo si lo supera; a diferencia del Space-Saving clásico, el conteo del que
+ * entra no es el del desplazado más uno sino la estimación del bosquejo count-min, que es
+ * una cota superior igual de válida y casi siempre más ajustada.
+ *
+ * Cuando la ventana avanza y los conteos bajan, {@link #reestimar} los vuelve a pedir al
+ * bosquejo y suelta los que quedaron en cero.
+ */
+final class ResumenFrecuentes {
+    private final int capacidad;
+    private final int[] libros;
+    private final int[] conteos;
+    private final Map<Integer, Integer> posiciones = new HashMap<>();
+    private int tamano;
+
+    ResumenFrecuentes(int capacidad) {
+        this.capacidad = capacidad;
+        this.libros = new int[capacidad];
+        this.conteos = new int[capacidad];
+    }
+
+    /** Registra el conteo estimado de un libro que acaba de cambiar. */
+    void ofrecer(int libroId, int estimado) {
+        Integer pos = posiciones.get(libroId);
+        if (pos != null) {
+            if (estimado <= 0) {
+                quitarEn(pos);
+            } else {
+                int anterior = conteos[pos];
+                conteos[pos] = estimado;
+                if (estimado < anterior) {
+                    subir(pos);
+                } else {
+                    bajar(pos);
+                }
+            }
+        } else if (estimado <= 0) {
+            return;
+        } else if (tamano < capacidad) {
+            libros[tamano] = libroId;
+            conteos[tamano] = estimado;
+            posiciones.put(libroId, tamano);
+            subir(tamano++);
+        } else if (capacidad > 0 && estimado > conteos[0]) {
+            posiciones.remove(libros[0]);
+            libros[0] = libroId;
+            conteos[0] = estimado;
+            posiciones.put(libroId, 0);
+            bajar(0);
+        }
+    }
+
+    /** Vuelve a estimar todos los monitoreados y rearma el montículo en tiempo lineal. */
+    void reestimar(IntUnaryOperator estimar) {
+        int quedan = 0;
+        posiciones.clear();
+        for (int i = 0; i < tamano; i++) {
+            int estimado = estimar.applyAsInt(libros[i]);
+            if (estimado > 0) {
+                libros[quedan] = libros[i];
+                conteos[quedan] = estimado;
+                posiciones.put(libros[quedan], quedan);
+                quedan++;
+            }
+        }
+        tamano = quedan;
+        for (int i = tamano / 2 - 1; i >= 0; i--) {
+            bajar(i);
+        }
+    }
+
+    /** Los IDs de los K de mayor conteo, del mayor al menor. */
+    int[] mejores(int k) {
+        MejoresK<Integer> mejores = new MejoresK<>(Math.min(k, tamano));
+        for (int i = 0; i < tamano; i++) {
+            mejores.agregar(libros[i], conteos[i]);
+        }
+        List<Integer> ids = mejores.enOrden();
+        int[] resultado = new int[ids.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = ids.get(i);
+        }
+        return resultado;
+    }
+
+    int tamano() {
+        return tamano;
+    }
+
+    void limpiar() {
+        tamano = 0;
+        posiciones.clear();
+    }
+
+    long bytesEstimados() {
+        // Los dos arreglos y, por monitoreado, un nodo del HashMap con sus dos Integer
+        return 16 + 2 * (16 + 4L * capacidad) + 64L * posiciones.size();
+    }
+
+    private void quitarEn(int pos) {
+        posiciones.remove(libros[pos]);
+        tamano--;
+        if (pos == tamano) {
+            return;
+        }
+        int movido = libros[tamano];
+        libros[pos] = movido;
+        conteos[pos] = conteos[tamano];
+        posiciones.put(movido, pos);
+        // El último puede tener que subir o bajar desde el hueco
+        subir(pos);
+        bajar(posiciones.get(movido));
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (conteos[padre] <= conteos[i]) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int menor = i;
+            for (int hijo = 2 * i + 1; hijo <= 2 * i + 2 && hijo < tamano; hijo++) {
+                if (conteos[hijo] < conteos[menor]) {
+                    menor = hijo;
+                }
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        int libro = libros[a];
+        libros[a] = libros[b];
+        libros[b] = libro;
+        int conteo = conteos[a];
+        conteos[a] = conteos[b];
+        conteos[b] = conteo;
+        posiciones.put(libros[a], a);
+        posiciones.put(libros[b], b);
+    }
+}
@@ -2,18 +2,47 @@ package repositorio;
 
 import modelo.Usuario;
 import modelo.TipoUsuario;
+import util.NormalizadorTexto;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 public class UsuarioRepositorio implements IRepositorio<Usuario> {
     private final File archivoCsv;
     private int contadorId;
     private static final String RUTA = "data/usuarios.csv";
+    private static final TipoUsuario[] TIPOS_USUARIO = TipoUsuario.values();
+    
+    // Almacén residente: el CSV se lee una sola vez y las lecturas se sirven desde memoria
+    private final AlmacenPorId<Usuario> usuarios = new AlmacenPorId<>();
+    
+    // Índice único de email (sin distinguir mayúsculas) -> ID, y el email con que se indexó
+    // cada usuario, por si el objeto se modifica en el lugar antes de actualizar
+    private final Map<String, Integer> idPorEmail = new HashMap<>();
+    private final Map<Integer, String> emailIndexado = new HashMap<>();
+    
+    // Trigramas del nombre normalizado para las búsquedas por parte del nombre
+    private final IndiceTrigramas trigramasNombre = new IndiceTrigramas("trigramas de nombre");
+    private final Map<Integer, String> nombreIndexado = new HashMap<>();
+    private final IndiceAutocompletado sugerenciasNombres = new IndiceAutocompletado("sugerencias de nombre");
+    
+    // Diario de solo anexado con las mutaciones posteriores al archivo base
+    private final DiarioCambios diario;
+    
+    // Líneas del CSV base que no se pudieron leer en la última carga; con alguna, la
+    // instantánea binaria no lo representaría y no se escribe
+    private int lineasDescartadas;
 
     public UsuarioRepositorio() {
-        this.archivoCsv = new File(RUTA);
+        this(new File(RUTA));
+    }
+    
+    public UsuarioRepositorio(File archivoCsv) {
+        this.archivoCsv = archivoCsv;
+        this.diario = new DiarioCambios(archivoCsv);
+        cargarEnMemoria();
         this.contadorId = obtenerMaximoId() + 1;
     }
     
@@ -27,184 +56,562 @@ public class UsuarioRepositorio implements IRepositorio<Usuario> {
     private void guardarTodos(List<Usuario> usuarios) throws IOException {
         asegurarDirectorio();
         
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(archivoCsv, false), StandardCharsets.UTF_8))) {
-            
-            // Cabecera
-            bw.write("id;nombre;email;telefono;tipoUsuario;fechaRegistro;activo");
-            bw.newLine();
-            
-            for (Usuario usuario : usuarios) {
-                bw.write(usuario.toCsv());
-                bw.newLine();
-            }
+        List<String> lineas = new ArrayList<>(usuarios.size() + 1);
+        
+        // Cabecera
+        lineas.add("id;nombre;email;telefono;tipoUsuario;fechaRegistro;activo");
+        
+        for (Usuario usuario : usuarios) {
+            lineas.add(usuario.toCsv());
         }
+        
+        // Temporal + fsync + renombrado atómico: el CSV vivo nunca queda truncado
+        EscrituraAtomica.escribir(archivoCsv, lineas);
     }
     
     private List<Usuario> cargarTodos() throws IOException {
         List<Usuario> lista = new ArrayList<>();
+        lineasDescartadas = 0;
         if (!archivoCsv.exists()) {
             return lista; // Si no existe, devuelve lista vacía
         }
         
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream(archivoCsv), StandardCharsets.UTF_8))) {
-            
-            String linea;
-            boolean primera = true;
-            
-            while ((linea = br.readLine()) != null) {
-                if (linea.trim().isEmpty()) continue;
-                
-                // Saltar cabecera si es la primera línea
-                if (primera) {
-                    primera = false;
-                    if (linea.toLowerCase().startsWith("id;")) {
-                        continue;
-                    }
-                }
-                
-                try {
-                    lista.add(Usuario.fromCsv(linea));
-                } catch (Exception e) {
-                    System.err.println("Error al procesar línea CSV: " + linea + " - " + e.getMessage());
-                }
+        // Lectura por bytes sobre el archivo mapeado: tipo, fecha y estado sin pasar por String
+        LectorCsvMapeado.recorrer(archivoCsv, fila -> {
+            try {
+                lista.add(usuarioDe(fila));
+            } catch (Exception e) {
+                lineasDescartadas++;
+                System.err.println("Error al procesar línea CSV: " + fila.linea() + " - " + e.getMessage());
+            }
+        });
+        return lista;
+    }
+    
+    // Lo mismo que Usuario.fromCsv, con los campos leídos desde los bytes de la línea
+    private static Usuario usuarioDe(LectorCsvMapeado.Fila fila) {
+        fila.exigirCampos(7);
+        Usuario usuario = new Usuario(fila.texto(1), fila.texto(2), fila.texto(3),
+                                      fila.enumerado(4, TIPOS_USUARIO));
+        usuario.setId(fila.entero(0));
+        LocalDate fechaRegistro = fila.fecha(5);
+        if (fechaRegistro == null) {
+            throw new IllegalArgumentException("Fecha de registro vacía");
+        }
+        usuario.setFechaRegistro(fechaRegistro);
+        usuario.setActivo(fila.booleano(6));
+        return usuario;
+    }
+    
+    // El CSV base, o su instantánea binaria si está habilitada y corresponde al CSV actual
+    private List<Usuario> cargarBase() throws IOException {
+        if (!InstantaneaBinaria.habilitada() || !archivoCsv.exists()) {
+            return cargarTodos();
+        }
+        String firma = diario.firmaBase();
+        InstantaneaBinaria.Lector instantanea = InstantaneaBinaria.leer(archivoCsv, firma, 4, 3);
+        if (instantanea != null) {
+            try {
+                return leerInstantanea(instantanea);
+            } catch (RuntimeException e) {
+                // Un ordinal o una fecha fuera de rango: dañada como cualquier otra, se relee el CSV
+                System.err.println("Instantánea de usuarios inválida, se lee el CSV: " + e);
+            }
+        }
+        
+        List<Usuario> lista = cargarTodos();
+        if (lineasDescartadas == 0) {
+            try {
+                escribirInstantanea(lista, firma);
+            } catch (IOException e) {
+                System.err.println("Error al escribir la instantánea de usuarios: " + e.getMessage());
             }
         }
         return lista;
     }
     
-    private int obtenerMaximoId() {
+    // Columnas: id, tipoUsuario (ordinal), fechaRegistro, activo | nombre, email, telefono
+    private void escribirInstantanea(List<Usuario> lista, String firma) throws IOException {
+        InstantaneaBinaria.Escritor escritor = new InstantaneaBinaria.Escritor(lista.size());
+        int[] ids = escritor.columnaEnteros();
+        int[] tipos = escritor.columnaEnteros();
+        int[] fechas = escritor.columnaEnteros();
+        int[] activos = escritor.columnaEnteros();
+        int[] nombres = escritor.columnaTextos();
+        int[] emails = escritor.columnaTextos();
+        int[] telefonos = escritor.columnaTextos();
+        for (int i = 0; i < lista.size(); i++) {
+            Usuario usuario = lista.get(i);
+            ids[i] = usuario.getId();
+            tipos[i] = usuario.getTipoUsuario().ordinal();
+            fechas[i] = InstantaneaBinaria.dia(usuario.getFechaRegistro());
+            activos[i] = usuario.isActivo() ? 1 : 0;
+            nombres[i] = escritor.cadena(usuario.getNombre());
+            emails[i] = escritor.cadena(usuario.getEmail());
+            telefonos[i] = escritor.cadena(usuario.getTelefono());
+        }
+        escritor.escribir(archivoCsv, firma);
+    }
+    
+    private static List<Usuario> leerInstantanea(InstantaneaBinaria.Lector instantanea) {
+        int[] ids = instantanea.enteros(0);
+        TipoUsuario[] tipos = instantanea.enumerados(1, TIPOS_USUARIO);
+        LocalDate[] fechas = instantanea.fechas(2);
+        int[] activos = instantanea.enteros(3);
+        String[] nombres = instantanea.textos(0);
+        String[] emails = instantanea.textos(1);
+        String[] telefonos = instantanea.textos(2);
+        List<Usuario> lista = new ArrayList<>(instantanea.filas());
+        for (int i = 0; i < instantanea.filas(); i++) {
+            Usuario usuario = new Usuario(nombres[i], emails[i], telefonos[i], tipos[i]);
+            usuario.setId(ids[i]);
+            usuario.setFechaRegistro(fechas[i]);
+            usuario.setActivo(activos[i] != 0);
+            lista.add(usuario);
+        }
+        return lista;
+    }
+    
+    private void cargarEnMemoria() {
         try {
-            List<Usuario> usuarios = cargarTodos();
-            return usuarios.stream()
-                          .mapToInt(Usuario::getId)
-                          .max()
-                          .orElse(0);
+            // CSV base y luego los cambios posteriores registrados en el diario
+            diario.cargar(() -> {
+                for (Usuario usuario : cargarBase()) {
+                    usuarios.put(usuario.getId(), usuario);
+                }
+            }, linea -> {
+                Usuario usuario = Usuario.fromCsv(linea);
+                usuarios.put(usuario.getId(), usuario);
+            }, usuarios::remove);
         } catch (IOException e) {
-            return 0; // Si hay error al cargar, empezamos desde 0
+            System.err.println("Error al cargar usuarios: " + e.getMessage());
+        }
+        
+        idPorEmail.clear();
+        emailIndexado.clear();
+        for (Usuario usuario : usuarios.values()) {
+            if (!indexarEmail(usuario)) {
+                System.err.println("Email duplicado en usuarios: " + usuario.getEmail() +
+                                   " (ID " + usuario.getId() + ")");
+            }
         }
+        
+        trigramasNombre.limpiar();
+        nombreIndexado.clear();
+        for (Usuario usuario : usuarios.values()) {
+            nombreIndexado.put(usuario.getId(), usuario.getNombreNormalizado());
+            trigramasNombre.agregar(usuario.getId(), usuario.getNombreNormalizado());
+        }
+        trigramasNombre.ajustarCapacidad();
+        sugerenciasNombres.reconstruir(usuarios.values(), Usuario::getNombre, Usuario::getNombreNormalizado);
+    }
+    
+    private static String claveEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    // false si el email ya pertenece a otro usuario
+    private boolean indexarEmail(Usuario usuario) {
+        String clave = claveEmail(usuario.getEmail());
+        Integer existente = idPorEmail.putIfAbsent(clave, usuario.getId());
+        if (existente != null && existente != usuario.getId()) {
+            return false;
+        }
+        emailIndexado.put(usuario.getId(), clave);
+        return true;
+    }
+    
+    private void desindexarEmail(int id) {
+        String clave = emailIndexado.remove(id);
+        if (clave != null) {
+            idPorEmail.remove(clave, id);
+        }
+    }
+    
+    private void indexarNombre(Usuario usuario) {
+        desindexarNombre(usuario.getId());
+        nombreIndexado.put(usuario.getId(), usuario.getNombreNormalizado());
+        trigramasNombre.agregar(usuario.getId(), usuario.getNombreNormalizado());
+        sugerenciasNombres.agregar(usuario.getNombre(), usuario.getNombreNormalizado());
+    }
+    
+    private void desindexarNombre(int id) {
+        String nombre = nombreIndexado.remove(id);
+        if (nombre != null) {
+            trigramasNombre.quitar(id, nombre);
+            sugerenciasNombres.quitar(nombre);
+        }
+    }
+    
+    // Incorpora los cambios que otros procesos escribieron desde la última lectura
+    void ponerAlDia() {
+        try {
+            diario.ponerAlDia(this::aplicarAlta, this::aplicarBaja, this::recargar);
+        } catch (IOException e) {
+            System.err.println("Error al leer cambios de usuarios: " + e.getMessage());
+        }
+    }
+    
+    private void ponerAlDiaSiCorresponde() {
+        if (diario.debeComprobar()) {
+            ponerAlDia();
+        }
+    }
+    
+    // Los cambios ajenos se copian sobre los objetos existentes, que otros repositorios referencian
+    private void aplicarAlta(String linea) {
+        Usuario leido = Usuario.fromCsv(linea);
+        Usuario existente = usuarios.get(leido.getId());
+        if (existente != null) {
+            copiarCampos(leido, existente);
+        } else {
+            existente = leido;
+            usuarios.put(leido.getId(), leido);
+        }
+        desindexarEmail(existente.getId());
+        if (!indexarEmail(existente)) {
+            System.err.println("Email duplicado en usuarios: " + existente.getEmail() +
+                               " (ID " + existente.getId() + ")");
+        }
+        indexarNombre(existente);
+        contadorId = Math.max(contadorId, leido.getId() + 1);
+    }
+    
+    private void aplicarBaja(int id) {
+        usuarios.remove(id);
+        desindexarEmail(id);
+        desindexarNombre(id);
+    }
+    
+    // Otro proceso compactó: se relee todo, conservando la identidad de los objetos ya entregados
+    private void recargar() {
+        Map<Integer, Usuario> anteriores = new HashMap<>(usuarios.comoMapa());
+        usuarios.clear();
+        cargarEnMemoria();
+        for (Usuario leido : new ArrayList<>(usuarios.values())) {
+            Usuario existente = anteriores.get(leido.getId());
+            if (existente != null) {
+                copiarCampos(leido, existente);
+                usuarios.put(existente.getId(), existente);
+            }
+        }
+        contadorId = Math.max(contadorId, obtenerMaximoId() + 1);
+    }
+    
+    // Solo tras un error de escritura: memoria y disco vuelven a coincidir, sobre los mismos objetos
+    private void restaurarDesdeDisco() {
+        recargar();
+    }
+    
+    // Solo los campos del CSV: el contador de préstamos activos lo mantiene PrestamoRepositorio
+    private static void copiarCampos(Usuario origen, Usuario destino) {
+        destino.setId(origen.getId());
+        destino.setNombre(origen.getNombre());
+        destino.setEmail(origen.getEmail());
+        destino.setTelefono(origen.getTelefono());
+        destino.setTipoUsuario(origen.getTipoUsuario());
+        destino.setFechaRegistro(origen.getFechaRegistro());
+        destino.setActivo(origen.isActivo());
+    }
+    
+    private void restaurarEmail(int id, String clave) {
+        if (clave != null) {
+            idPorEmail.put(clave, id);
+            emailIndexado.put(id, clave);
+        }
+    }
+    
+    // Cada mutación se anexa al diario: su costo no depende del tamaño del CSV
+    private void registrarAlta(Usuario usuario) throws IOException {
+        asegurarArchivoBase();
+        diario.registrarAlta(usuario.toCsv());
+    }
+    
+    private void registrarBaja(int id) throws IOException {
+        asegurarArchivoBase();
+        diario.registrarBaja(id);
+    }
+    
+    // El archivo base (con su cabecera) debe existir aunque los cambios vivan en el diario
+    private void asegurarArchivoBase() throws IOException {
+        if (!archivoCsv.exists()) {
+            guardarTodos(new ArrayList<>());
+            diario.baseCreada();
+        }
+    }
+    
+    private int obtenerMaximoId() {
+        return usuarios.ultimoId();
     }
 
     @Override
     public boolean crear(Usuario usuario) {
+        // Cada mutación se hace con el cerrojo de escritura y sobre la vista al día,
+        // para que los IDs y emails no choquen con los de otro proceso
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
+            ponerAlDia();
             // Verificar email único
             if (existeEmail(usuario.getEmail())) {
                 return false;
             }
             usuario.setId(contadorId++);
-            List<Usuario> usuarios = cargarTodos();
-            usuarios.add(usuario);
-            guardarTodos(usuarios);
-            return true;
-        } catch (IOException e) {
-            System.err.println("Error al crear usuario: " + e.getMessage());
-            return false;
+            usuarios.put(usuario.getId(), usuario);
+            indexarEmail(usuario);
+            try {
+                registrarAlta(usuario);
+                indexarNombre(usuario);
+                return true;
+            } catch (IOException e) {
+                // Deshacer el cambio en memoria para que coincida con el disco
+                usuarios.remove(usuario.getId());
+                desindexarEmail(usuario.getId());
+                System.err.println("Error al crear usuario: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            diario.desbloquear();
         }
     }
 
     private boolean existeEmail(String email) {
-        try {
-            List<Usuario> usuarios = cargarTodos();
-            return usuarios.stream().anyMatch(usuario -> usuario.getEmail().equals(email));
-        } catch (IOException e) {
-            System.err.println("Error al verificar email: " + e.getMessage());
-            return false;
-        }
+        return idPorEmail.containsKey(claveEmail(email));
     }
 
     @Override
     public Usuario obtenerPorId(int id) {
-        try {
-            List<Usuario> usuarios = cargarTodos();
-            return usuarios.stream()
-                          .filter(usuario -> usuario.getId() == id)
-                          .findFirst()
-                          .orElse(null);
-        } catch (IOException e) {
-            System.err.println("Error al obtener usuario por ID: " + e.getMessage());
-            return null;
-        }
+        ponerAlDiaSiCorresponde();
+        return usuarios.get(id);
     }
 
     @Override
     public List<Usuario> obtenerTodos() {
-        try {
-            return new ArrayList<>(cargarTodos());
-        } catch (IOException e) {
-            System.err.println("Error al obtener todos los usuarios: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        ponerAlDiaSiCorresponde();
+        return new ArrayList<>(usuarios.values());
+    }
+    
+    @Override
+    public int contar() {
+        ponerAlDiaSiCorresponde();
+        return usuarios.size();
+    }
+    
+    @Override
+    public List<Usuario> obtenerPagina(int desde, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        return usuarios.pagina(desde, cantidad);
+    }
+    
+    @Override
+    public List<Usuario> obtenerSiguientes(int despuesDeId, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        return usuarios.siguientes(despuesDeId, cantidad);
+    }
+    
+    @Override
+    public Stream<Usuario> flujo() {
+        ponerAlDiaSiCorresponde();
+        return usuarios.flujo(0);
     }
 
     @Override
     public boolean actualizar(Usuario usuario) {
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            List<Usuario> usuarios = cargarTodos();
-            for (int i = 0; i < usuarios.size(); i++) {
-                if (usuarios.get(i).getId() == usuario.getId()) {
-                    usuarios.set(i, usuario);
-                    guardarTodos(usuarios);
-                    return true;
-                }
+            // Ponerse al día no debe pisar lo que el llamador ya modificó en el objeto
+            Usuario cambios = new Usuario();
+            copiarCampos(usuario, cambios);
+            ponerAlDia();
+            
+            // Los cambios se copian sobre el objeto residente: es el que referencian los
+            // préstamos y el que lleva el contador de préstamos activos
+            Usuario residente = usuarios.get(cambios.getId());
+            if (residente == null) {
+                return false;
             }
-            return false;
-        } catch (IOException e) {
-            System.err.println("Error al actualizar usuario: " + e.getMessage());
-            return false;
+            // El email sigue siendo único
+            Integer duenoEmail = idPorEmail.get(claveEmail(cambios.getEmail()));
+            if (duenoEmail != null && duenoEmail != cambios.getId()) {
+                return false;
+            }
+            try {
+                registrarAlta(cambios);
+            } catch (IOException e) {
+                // El llamador suele modificar el objeto residente en el lugar, así que no hay un
+                // "anterior" en memoria que reponer: se vuelve a leer lo guardado en disco
+                System.err.println("Error al actualizar usuario: " + e.getMessage());
+                restaurarDesdeDisco();
+                return false;
+            }
+            copiarCampos(cambios, residente);
+            if (usuario != residente) {
+                // La copia del llamador queda con el contador vigente
+                usuario.setPrestamosActivos(residente.getPrestamosActivos());
+            }
+            desindexarEmail(residente.getId());
+            indexarEmail(residente);
+            indexarNombre(residente);
+            return true;
+        } finally {
+            diario.desbloquear();
         }
     }
 
     @Override
     public boolean eliminar(int id) {
+        if (!diario.intentarBloquearEscritura()) {
+            return false;
+        }
         try {
-            List<Usuario> usuarios = cargarTodos();
-            boolean eliminado = usuarios.removeIf(usuario -> usuario.getId() == id);
-            if (eliminado) {
-                guardarTodos(usuarios);
+            ponerAlDia();
+            Usuario eliminado = usuarios.remove(id);
+            if (eliminado == null) {
+                return false;
             }
-            return eliminado;
-        } catch (IOException e) {
-            System.err.println("Error al eliminar usuario: " + e.getMessage());
-            return false;
+            String emailAnterior = emailIndexado.get(id);
+            desindexarEmail(id);
+            try {
+                registrarBaja(id);
+                desindexarNombre(id);
+                return true;
+            } catch (IOException e) {
+                usuarios.put(id, eliminado);
+                restaurarEmail(id, emailAnterior);
+                System.err.println("Error al eliminar usuario: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            diario.desbloquear();
         }
     }
 
+    // Sin distinguir mayúsculas ni tildes: "jose garcia" encuentra a "José García"
     public List<Usuario> buscarPorNombre(String nombre) {
-        try {
-            List<Usuario> usuarios = cargarTodos();
-            return usuarios.stream()
-                          .filter(usuario -> usuario.getNombre().equalsIgnoreCase(nombre))
+        ponerAlDiaSiCorresponde();
+        String busqueda = NormalizadorTexto.normalizar(nombre);
+        return usuarios.values().stream()
+                      .filter(usuario -> usuario.getNombreNormalizado().equals(busqueda))
+                      .collect(Collectors.toList());
+    }
+
+    // Usuarios cuyo nombre contiene el texto, sin distinguir mayúsculas ni tildes
+    public List<Usuario> buscarPorNombreParcial(String texto) {
+        ponerAlDiaSiCorresponde();
+        String busqueda = NormalizadorTexto.normalizar(texto);
+        int[] candidatos = trigramasNombre.candidatos(busqueda);
+        if (candidatos == null) {
+            // Muy corto para los trigramas: se recorren todos
+            return usuarios.values().stream()
+                          .filter(usuario -> usuario.getNombreNormalizado().contains(busqueda))
                           .collect(Collectors.toList());
-        } catch (IOException e) {
-            System.err.println("Error al buscar por nombre: " + e.getMessage());
-            return new ArrayList<>();
         }
+        boolean exacta = IndiceTrigramas.esExacta(busqueda);
+        List<Usuario> resultado = new ArrayList<>();
+        for (int id : candidatos) {
+            Usuario usuario = usuarios.get(id);
+            if (usuario != null && (exacta || usuario.getNombreNormalizado().contains(busqueda))) {
+                resultado.add(usuario);
+            }
+        }
+        return resultado;
+    }
+
+    /** Nombres que empiezan por el texto dado, para autocompletar; los más repetidos primero. */
+    public List<String> sugerirNombres(String prefijo, int maximo) {
+        ponerAlDiaSiCorresponde();
+        return sugerenciasNombres.sugerir(NormalizadorTexto.normalizar(prefijo), maximo);
     }
 
     public Usuario buscarPorEmail(String email) {
+        ponerAlDiaSiCorresponde();
+        Integer id = idPorEmail.get(claveEmail(email));
+        return id == null ? null : usuarios.get(id);
+    }
+
+    public List<Usuario> obtenerPorTipo(TipoUsuario tipo) {
+        return ejecutar(Consulta.usuarios().tipo(tipo));
+    }
+    
+    /** Los usuarios que cumplen la consulta, en orden de ID; ver {@link PlanConsulta}. */
+    public List<Usuario> ejecutar(Consulta.Usuarios consulta) {
+        return ejecutar(consulta, 0, Integer.MAX_VALUE);
+    }
+    
+    public List<Usuario> ejecutar(Consulta.Usuarios consulta, int despuesDeId, int cantidad) {
+        ponerAlDiaSiCorresponde();
+        return planear(consulta).ejecutar(usuarios::get, usuarios::flujo, despuesDeId, cantidad);
+    }
+    
+    public String explicar(Consulta.Usuarios consulta) {
+        ponerAlDiaSiCorresponde();
+        return planear(consulta).explicar();
+    }
+    
+    private PlanConsulta<Usuario> planear(Consulta.Usuarios consulta) {
+        return PlanConsulta.planear(consulta, this::accesoIndice, usuarios.size());
+    }
+    
+    private PlanConsulta.AccesoIndice accesoIndice(Consulta.Filtro<Usuario> filtro) {
+        switch (filtro.campo) {
+            case NOMBRE: {
+                String texto = (String) filtro.valor;
+                int estimados = trigramasNombre.estimarCandidatos(texto);
+                return estimados < 0 ? null : new PlanConsulta.AccesoIndice("trigramas de nombre", estimados,
+                                                                            () -> trigramasNombre.candidatos(texto));
+            }
+            case EMAIL: {
+                Integer id = idPorEmail.get((String) filtro.valor);
+                return new PlanConsulta.AccesoIndice("emails", id == null ? 0 : 1,
+                                                     () -> id == null ? new int[0] : new int[] {id});
+            }
+            default:
+                return null;
+        }
+    }
+    
+    /** Tamaño en memoria del índice de búsqueda por nombre. */
+    public List<EstadisticasIndice> getEstadisticasIndices() {
+        // Nodo del HashMap, clave Integer y hueco por usuario
+        EstadisticasIndice nombres = new EstadisticasIndice("nombre indexado por usuario", nombreIndexado.size(),
+                                                            nombreIndexado.size(), 56L * nombreIndexado.size());
+        return List.of(trigramasNombre.estadisticas(), sugerenciasNombres.estadisticas(), nombres);
+    }
+    
+    public void setPoliticaCompactacion(PoliticaCompactacion politica) {
+        diario.setPoliticaCompactacion(politica);
+    }
+    
+    public void setPoliticaDurabilidad(PoliticaDurabilidad politica) {
         try {
-            List<Usuario> usuarios = cargarTodos();
-            return usuarios.stream()
-                          .filter(usuario -> usuario.getEmail().equalsIgnoreCase(email))
-                          .findFirst()
-                          .orElse(null);
+            diario.setPoliticaDurabilidad(politica);
         } catch (IOException e) {
-            System.err.println("Error al buscar por email: " + e.getMessage());
-            return null;
+            System.err.println("Error al escribir los cambios pendientes: " + e.getMessage());
         }
     }
-
-    public List<Usuario> obtenerPorTipo(TipoUsuario tipo) {
+    
+    public PoliticaDurabilidad getPoliticaDurabilidad() {
+        return diario.getPoliticaDurabilidad();
+    }
+    
+    public MetricasEscritura getMetricasEscritura() {
+        return diario.getMetricas();
+    }
+    
+    /**
+     * Escribe en disco las mutaciones que la política de durabilidad haya dejado pendientes.
+     * @return false si la escritura falló; los cambios siguen pendientes y se reintentarán.
+     */
+    public boolean sincronizar() {
         try {
-            List<Usuario> usuarios = cargarTodos();
-            return usuarios.stream()
-                          .filter(usuario -> usuario.getTipoUsuario() == tipo)
-                          .collect(Collectors.toList());
+            diario.vaciar();
+            return true;
         } catch (IOException e) {
-            System.err.println("Error al obtener por tipo: " + e.getMessage());
-            return new ArrayList<>();
+            System.err.println("Error al escribir los cambios pendientes: " + e.getMessage());
+            return false;
         }
     }
     
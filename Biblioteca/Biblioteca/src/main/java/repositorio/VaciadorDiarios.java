@@ -0,0 +1,52 @@
+package repositorio;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hilo de escritura diferida de los diarios en los modos GRUPO y ASINCRONA de
+ * {@link PoliticaDurabilidad}: vacía a disco los registros pendientes de cada diario al
+ * cumplirse su ventana o al llenarse el lote. Al cerrar la JVM vacía lo que quede pendiente.
+ */
+final class VaciadorDiarios {
+    private static final ScheduledExecutorService EJECUTOR = Executors.newSingleThreadScheduledExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "vaciador-diarios");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    // Diarios que usaron escritura diferida, para vaciarlos al cerrar la aplicación
+    private static final Set<DiarioCambios> DIFERIDOS = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(VaciadorDiarios::vaciarTodos, "vaciador-diarios-cierre"));
+    }
+
+    private VaciadorDiarios() {}
+
+    static void programar(DiarioCambios diario, long demoraMs) {
+        DIFERIDOS.add(diario);
+        EJECUTOR.schedule(() -> {
+            try {
+                diario.vaciar();
+            } catch (IOException e) {
+                // Los registros siguen pendientes y el diario reprograma el reintento
+                System.err.println("Error al escribir el diario " + diario.getArchivo() + ": " + e.getMessage());
+            }
+        }, demoraMs, TimeUnit.MILLISECONDS);
+    }
+
+    static void vaciarTodos() {
+        for (DiarioCambios diario : DIFERIDOS) {
+            try {
+                diario.vaciar();
+            } catch (IOException e) {
+                System.err.println("Error al escribir el diario " + diario.getArchivo() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package repositorio;
+
+/**
+ * Períodos sobre los que se cuenta la popularidad de los libros: los préstamos hechos en los
+ * últimos N días, hoy incluido.
+ */
+public enum VentanaPopularidad {
+    SEMANA(7, "esta semana"),
+    MES(30, "este mes"),
+    ANIO(365, "este año");
+
+    private final int dias;
+    private final String descripcion;
+
+    VentanaPopularidad(int dias, String descripcion) {
+        this.dias = dias;
+        this.descripcion = descripcion;
+    }
+
+    public int getDias() {
+        return dias;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+}
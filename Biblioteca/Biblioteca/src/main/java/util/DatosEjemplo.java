@@ -96,21 +96,16 @@ public class DatosEjemplo {
             Libro libro2 = repoLibros.obtenerPorId(2); // Cien Años
             Usuario usuario1 = repoUsuarios.obtenerPorId(1); // Ana García
             Usuario usuario2 = repoUsuarios.obtenerPorId(3); // María Rodríguez
+            BibliotecaRepositorio libros = (BibliotecaRepositorio) repoLibros;
             
-            if (libro1 != null && usuario1 != null && libro1.prestar()) {
+            if (libro1 != null && usuario1 != null && libros.prestar(libro1.getId())) {
                 Prestamo prestamo1 = new Prestamo(usuario1, libro1);
                 repoPrestamos.crear(prestamo1);
-                usuario1.agregarPrestamo(prestamo1);
-                repoUsuarios.actualizar(usuario1);
-                repoLibros.actualizar(libro1);
             }
             
-            if (libro2 != null && usuario2 != null && libro2.prestar()) {
+            if (libro2 != null && usuario2 != null && libros.prestar(libro2.getId())) {
                 Prestamo prestamo2 = new Prestamo(usuario2, libro2);
                 repoPrestamos.crear(prestamo2);
-                usuario2.agregarPrestamo(prestamo2);
-                repoUsuarios.actualizar(usuario2);
-                repoLibros.actualizar(libro2);
             }
             
         } catch (Exception e) {
@@ -0,0 +1,107 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Selecciona los K elementos de mayor puntaje de una secuencia sin ordenarla entera: mantiene
+ * un montículo de mínimos con los K mejores vistos hasta el momento, y cada elemento nuevo
+ * solo entra si supera al peor de ellos. Cuesta O(n log K) en lugar de O(n log n) y guarda
+ * K elementos, no n.
+ *
+ * A igual puntaje gana el que llegó antes, así que el resultado es estable.
+ */
+public final class MejoresK<T> {
+    private final int k;
+    private final double[] puntajes;
+    private final long[] ordenLlegada;
+    private final Object[] elementos;
+    private int tamano;
+    private long llegados;
+
+    public MejoresK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K no puede ser negativo: " + k);
+        }
+        this.k = k;
+        this.puntajes = new double[k];
+        this.ordenLlegada = new long[k];
+        this.elementos = new Object[k];
+    }
+
+    public void agregar(T elemento, double puntaje) {
+        long llegada = llegados++;
+        if (tamano < k) {
+            puntajes[tamano] = puntaje;
+            ordenLlegada[tamano] = llegada;
+            elementos[tamano] = elemento;
+            subir(tamano++);
+        } else if (k > 0 && peor(0, puntaje, llegada)) {
+            // Reemplaza al peor de los K (la raíz) y lo reacomoda
+            puntajes[0] = puntaje;
+            ordenLlegada[0] = llegada;
+            elementos[0] = elemento;
+            bajar(0);
+        }
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    /** Los elementos seleccionados, del mayor puntaje al menor. */
+    @SuppressWarnings("unchecked")
+    public List<T> enOrden() {
+        Integer[] orden = new Integer[tamano];
+        for (int i = 0; i < tamano; i++) orden[i] = i;
+        Arrays.sort(orden, (a, b) -> peor(b, puntajes[a], ordenLlegada[a]) ? -1 : a.equals(b) ? 0 : 1);
+        List<T> resultado = new ArrayList<>(tamano);
+        for (int i : orden) {
+            resultado.add((T) elementos[i]);
+        }
+        return resultado;
+    }
+
+    // true si el elemento en la posición i es peor que (puntaje, llegada)
+    private boolean peor(int i, double puntaje, long llegada) {
+        return puntajes[i] < puntaje || (puntajes[i] == puntaje && ordenLlegada[i] > llegada);
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (!peor(i, puntajes[padre], ordenLlegada[padre])) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int menor = i;
+            for (int hijo = 2 * i + 1; hijo <= 2 * i + 2 && hijo < tamano; hijo++) {
+                if (peor(hijo, puntajes[menor], ordenLlegada[menor])) {
+                    menor = hijo;
+                }
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        double puntaje = puntajes[a];
+        puntajes[a] = puntajes[b];
+        puntajes[b] = puntaje;
+        long llegada = ordenLlegada[a];
+        ordenLlegada[a] = ordenLlegada[b];
+        ordenLlegada[b] = llegada;
+        Object elemento = elementos[a];
+        elementos[a] = elementos[b];
+        elementos[b] = elemento;
+    }
+}
@@ -0,0 +1,43 @@
+package util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Forma normalizada de un texto para búsquedas: sin distinción de mayúsculas y sin tildes,
+ * de modo que "garcia" encuentre "García Márquez" y "anos" encuentre "Cien Años de Soledad".
+ *
+ * El texto se pliega a minúsculas, se descompone en Unicode NFD (la "á" pasa a ser "a" más
+ * una tilde combinante) y se quitan las marcas diacríticas. Los modelos guardan el resultado
+ * como clave de búsqueda, así que se calcula una vez por texto y no en cada comparación.
+ */
+public final class NormalizadorTexto {
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+
+    private NormalizadorTexto() {}
+
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        if (esAscii(texto)) {
+            // Caso más común: no hay nada que descomponer
+            return texto.toLowerCase(Locale.ROOT);
+        }
+        // Mayúsculas y luego minúsculas para plegar también casos como "ß" -> "ss";
+        // el plegado va antes de NFD para que las marcas que introduce también se quiten
+        String plegado = texto.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        String descompuesto = Normalizer.normalize(plegado, Normalizer.Form.NFD);
+        return DIACRITICOS.matcher(descompuesto).replaceAll("");
+    }
+
+    private static boolean esAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -7,6 +7,7 @@ import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.util.List;
+import java.util.function.Function;
 
 public class BibliotecaSwingVista extends JFrame implements IVista {
     // Paleta de colores terrosos mejorada para biblioteca
@@ -56,6 +57,8 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
     private JButton btnBuscarLibro, btnBuscarUsuario;
     private JButton btnListarLibros, btnListarUsuarios, btnListarPrestamos;
     private JButton btnPrestamosVencidos, btnEstadisticas, btnLimpiarCampos;
+    // Las tablas se llenan de a páginas; estos botones piden la siguiente
+    private JButton btnMasLibros, btnMasUsuarios, btnMasPrestamos;
     
     // Panel de estadísticas
     private JLabel lblTotalLibros, lblLibrosDisponibles, lblTotalUsuarios;
@@ -123,9 +126,12 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
         btnListarLibros = new JButton("Actualizar Lista");
         btnListarLibros.setActionCommand("LISTAR_LIBROS");
         
+        btnMasLibros = crearBotonCargarMas("MAS_LIBROS");
+        
         panelBotones.add(btnAgregarLibro);
         panelBotones.add(btnEliminarLibro);
         panelBotones.add(btnListarLibros);
+        panelBotones.add(btnMasLibros);
         
         gbc.gridx = 0; gbc.gridy = 3; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.HORIZONTAL;
         panelFormulario.add(panelBotones, gbc);
@@ -196,9 +202,12 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
         btnListarUsuarios = new JButton("Actualizar Lista");
         btnListarUsuarios.setActionCommand("LISTAR_USUARIOS");
         
+        btnMasUsuarios = crearBotonCargarMas("MAS_USUARIOS");
+        
         panelBotones.add(btnAgregarUsuario);
         panelBotones.add(btnEliminarUsuario);
         panelBotones.add(btnListarUsuarios);
+        panelBotones.add(btnMasUsuarios);
         
         gbc.gridx = 0; gbc.gridy = 4; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.HORIZONTAL;
         panelFormulario.add(panelBotones, gbc);
@@ -264,8 +273,10 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
         btnListarPrestamos.setActionCommand("LISTAR_PRESTAMOS_ACTIVOS");
         btnPrestamosVencidos = new JButton("Préstamos Vencidos");
         btnPrestamosVencidos.setActionCommand("PRESTAMOS_VENCIDOS");
+        btnMasPrestamos = crearBotonCargarMas("MAS_PRESTAMOS");
         panelListados.add(btnListarPrestamos);
         panelListados.add(btnPrestamosVencidos);
+        panelListados.add(btnMasPrestamos);
         
         gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2; gbc.fill = GridBagConstraints.HORIZONTAL;
         panelControles.add(panelPrestamo, gbc);
@@ -296,6 +307,13 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
         return panel;
     }
     
+    private JButton crearBotonCargarMas(String comando) {
+        JButton boton = new JButton("Cargar más");
+        boton.setActionCommand(comando);
+        boton.setEnabled(false);
+        return boton;
+    }
+    
     private JPanel crearPanelBusquedas() {
         JPanel panel = new JPanel(new BorderLayout());
         
@@ -310,7 +328,7 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
         txtBusquedaLibro = new JTextField(20);
         controlBusquedaLibros.add(txtBusquedaLibro);
         
-        String[] tiposBusquedaLibro = {"Por Título", "Por Autor", "Por ID", "Solo Disponibles"};
+        String[] tiposBusquedaLibro = {"Por Título", "Por Autor", "Todas las Palabras", "Alguna Palabra", "Título Aproximado", "Autor Aproximado", "Por ID", "Solo Disponibles"};
         cmbTipoBusquedaLibro = new JComboBox<>(tiposBusquedaLibro);
         controlBusquedaLibros.add(cmbTipoBusquedaLibro);
         
@@ -658,6 +676,18 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
         btnBuscarUsuario.addActionListener(listener);
         btnEstadisticas.addActionListener(listener);
         btnLimpiarCampos.addActionListener(listener);
+        btnMasLibros.addActionListener(listener);
+        btnMasUsuarios.addActionListener(listener);
+        btnMasPrestamos.addActionListener(listener);
+    }
+    
+    // Sugerencias mientras se escribe en los campos de búsqueda (texto escrito -> sugerencias)
+    public void setProveedorSugerenciasLibros(Function<String, List<String>> proveedor) {
+        SugerenciasCampo.instalar(txtBusquedaLibro, proveedor);
+    }
+    
+    public void setProveedorSugerenciasUsuarios(Function<String, List<String>> proveedor) {
+        SugerenciasCampo.instalar(txtBusquedaUsuario, proveedor);
     }
     
     // Implementación de IVista
@@ -669,6 +699,13 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
     @Override
     public void mostrarLibros(List<Libro> libros) {
         modeloLibros.setRowCount(0);
+        agregarLibros(libros);
+        setPaginacionLibros(libros.size(), libros.size());
+        tabbedPane.setSelectedIndex(0);
+    }
+    
+    // Agrega al final de la tabla la página siguiente
+    public void agregarLibros(List<Libro> libros) {
         for (Libro libro : libros) {
             Object[] fila = {
                 libro.getId(),
@@ -680,12 +717,17 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
             };
             modeloLibros.addRow(fila);
         }
-        tabbedPane.setSelectedIndex(0);
     }
     
     @Override
     public void mostrarUsuarios(List<Usuario> usuarios) {
         modeloUsuarios.setRowCount(0);
+        agregarUsuarios(usuarios);
+        setPaginacionUsuarios(usuarios.size(), usuarios.size());
+        tabbedPane.setSelectedIndex(1);
+    }
+    
+    public void agregarUsuarios(List<Usuario> usuarios) {
         for (Usuario usuario : usuarios) {
             Object[] fila = {
                 usuario.getId(),
@@ -697,17 +739,22 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
             };
             modeloUsuarios.addRow(fila);
         }
-        tabbedPane.setSelectedIndex(1);
     }
     
     @Override
     public void mostrarPrestamos(List<Prestamo> prestamos) {
         modeloPrestamos.setRowCount(0);
+        agregarPrestamos(prestamos);
+        setPaginacionPrestamos(prestamos.size(), prestamos.size());
+        tabbedPane.setSelectedIndex(2);
+    }
+    
+    public void agregarPrestamos(List<Prestamo> prestamos) {
         for (Prestamo prestamo : prestamos) {
             String estado;
             String diasRetraso = "-";
             
-            if (prestamo.getEstado() == EstadoPrestamo.ACTIVO) {
+            if (prestamo.getEstado().sinDevolver()) {
                 if (prestamo.estaVencido()) {
                     estado = "🔴 Vencido";
                     diasRetraso = "+" + prestamo.getDiasRetraso();
@@ -729,7 +776,24 @@ public class BibliotecaSwingVista extends JFrame implements IVista {
             };
             modeloPrestamos.addRow(fila);
         }
-        tabbedPane.setSelectedIndex(2);
+    }
+    
+    // Cuántas filas hay en cada tabla de un total: habilita "Cargar más" si quedan
+    public void setPaginacionLibros(int mostrados, int total) {
+        actualizarBotonCargarMas(btnMasLibros, mostrados, total);
+    }
+    
+    public void setPaginacionUsuarios(int mostrados, int total) {
+        actualizarBotonCargarMas(btnMasUsuarios, mostrados, total);
+    }
+    
+    public void setPaginacionPrestamos(int mostrados, int total) {
+        actualizarBotonCargarMas(btnMasPrestamos, mostrados, total);
+    }
+    
+    private void actualizarBotonCargarMas(JButton boton, int mostrados, int total) {
+        boton.setText("Cargar más (" + mostrados + " de " + total + ")");
+        boton.setEnabled(mostrados < total);
     }
     
     @Override
@@ -109,7 +109,7 @@ public class BibliotecaVista implements IVista {
             String estado;
             String dias;
             
-            if (prestamo.getEstado() == EstadoPrestamo.ACTIVO) {
+            if (prestamo.getEstado().sinDevolver()) {
                 if (prestamo.estaVencido()) {
                     estado = "VENCIDO";
                     dias = "+" + prestamo.getDiasRetraso();
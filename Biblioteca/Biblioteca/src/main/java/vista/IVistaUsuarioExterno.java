@@ -8,6 +8,10 @@ public interface IVistaUsuarioExterno {
     void mostrarCatalogo(List<Libro> libros);
     void mostrarDetalleLibro(Libro libro);
     void mostrarResultadoBusqueda(List<Libro> libros, String termino);
+    // libros son los más relevantes de un total de coincidencias posiblemente mayor
+    void mostrarResultadoBusqueda(List<Libro> libros, String termino, int total);
+    // Resultados de la búsqueda tolerante a errores cuando no hubo coincidencias exactas
+    void mostrarResultadoAproximado(List<Libro> libros, String termino);
     void mostrarMensaje(String mensaje);
     void mostrarBienvenida();
     void mostrarDespedida();
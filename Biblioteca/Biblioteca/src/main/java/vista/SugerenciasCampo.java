@@ -0,0 +1,154 @@
+package vista;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Lista desplegable de sugerencias bajo un campo de texto, actualizada en cada tecla.
+ * Flechas arriba/abajo recorren las sugerencias, Enter acepta la marcada (y deja que el campo
+ * dispare su búsqueda habitual con ese texto), Escape cierra la lista y un clic acepta.
+ */
+class SugerenciasCampo {
+    private static final int FILAS_VISIBLES = 8;
+
+    private final JTextField campo;
+    private final Function<String, List<String>> proveedor;
+    private final DefaultListModel<String> modelo = new DefaultListModel<>();
+    private final JList<String> lista = new JList<>(modelo);
+    private final JPopupMenu popup = new JPopupMenu();
+    // Evita volver a consultar cuando el texto lo cambia la propia lista al aceptar
+    private boolean aplicando;
+
+    private SugerenciasCampo(JTextField campo, Function<String, List<String>> proveedor) {
+        this.campo = campo;
+        this.proveedor = proveedor;
+
+        lista.setFocusable(false);
+        lista.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        lista.setVisibleRowCount(FILAS_VISIBLES);
+        JScrollPane scroll = new JScrollPane(lista);
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        popup.setFocusable(false);
+        popup.add(scroll);
+
+        campo.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                programarActualizacion();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                programarActualizacion();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                programarActualizacion();
+            }
+        });
+
+        campo.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN -> {
+                        mover(1);
+                        e.consume();
+                    }
+                    case KeyEvent.VK_UP -> {
+                        mover(-1);
+                        e.consume();
+                    }
+                    case KeyEvent.VK_ESCAPE -> {
+                        popup.setVisible(false);
+                        e.consume();
+                    }
+                    case KeyEvent.VK_ENTER -> {
+                        // Sin consumir: el campo sigue disparando la búsqueda, ya con el texto aceptado
+                        if (lista.getSelectedValue() != null) {
+                            aceptar(lista.getSelectedValue());
+                        }
+                        popup.setVisible(false);
+                    }
+                    default -> { }
+                }
+            }
+        });
+
+        lista.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int indice = lista.locationToIndex(e.getPoint());
+                if (indice >= 0) {
+                    aceptar(modelo.get(indice));
+                    popup.setVisible(false);
+                    campo.requestFocusInWindow();
+                }
+            }
+        });
+    }
+
+    /** Conecta el campo con el proveedor de sugerencias (texto escrito -> sugerencias). */
+    static void instalar(JTextField campo, Function<String, List<String>> proveedor) {
+        new SugerenciasCampo(campo, proveedor);
+    }
+
+    // Los listeners de documento no pueden tocar el campo; la consulta se hace justo después
+    private void programarActualizacion() {
+        if (!aplicando) {
+            SwingUtilities.invokeLater(this::actualizar);
+        }
+    }
+
+    private void actualizar() {
+        String texto = campo.getText().trim();
+        List<String> sugerencias = texto.isEmpty() ? List.of() : proveedor.apply(texto);
+        // Si la única sugerencia es lo que ya está escrito, no aporta nada
+        if (sugerencias.isEmpty() || (sugerencias.size() == 1 && sugerencias.get(0).equalsIgnoreCase(texto))
+                || !campo.isShowing() || !campo.hasFocus()) {
+            popup.setVisible(false);
+            return;
+        }
+        modelo.clear();
+        for (String sugerencia : sugerencias) {
+            modelo.addElement(sugerencia);
+        }
+        lista.clearSelection();
+        lista.setVisibleRowCount(Math.min(FILAS_VISIBLES, sugerencias.size()));
+        popup.setPopupSize(Math.max(campo.getWidth(), lista.getPreferredScrollableViewportSize().width + 20),
+                           lista.getPreferredScrollableViewportSize().height + 4);
+        if (!popup.isVisible()) {
+            popup.show(campo, 0, campo.getHeight());
+        } else {
+            popup.pack();
+        }
+    }
+
+    private void mover(int paso) {
+        int indice = lista.getSelectedIndex() + paso;
+        if (indice >= 0 && indice < modelo.size()) {
+            lista.setSelectedIndex(indice);
+            lista.ensureIndexIsVisible(indice);
+        }
+    }
+
+    private void aceptar(String sugerencia) {
+        aplicando = true;
+        try {
+            campo.setText(sugerencia);
+        } finally {
+            aplicando = false;
+        }
+    }
+}
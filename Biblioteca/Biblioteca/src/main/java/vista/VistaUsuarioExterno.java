@@ -1,6 +1,8 @@
 package vista;
 
 import modelo.Libro;
+import repositorio.LibroPopular;
+import repositorio.VentanaPopularidad;
 import java.util.*;
 
 public class VistaUsuarioExterno implements IVistaUsuarioExterno {
@@ -113,6 +115,11 @@ public class VistaUsuarioExterno implements IVistaUsuarioExterno {
     
     @Override
     public void mostrarResultadoBusqueda(List<Libro> libros, String termino) {
+        mostrarResultadoBusqueda(libros, termino, libros.size());
+    }
+    
+    @Override
+    public void mostrarResultadoBusqueda(List<Libro> libros, String termino, int total) {
         if (libros.isEmpty()) {
             System.out.println("\nRESULTADO DE BÚSQUEDA");
             System.out.println("─".repeat(40));
@@ -126,7 +133,21 @@ public class VistaUsuarioExterno implements IVistaUsuarioExterno {
         
         System.out.println("\nRESULTADO DE BÚSQUEDA: \"" + termino + "\"");
         System.out.println("─".repeat(50));
-        System.out.println("Se encontraron " + libros.size() + " resultado(s):");
+        System.out.println("Se encontraron " + total + " resultado(s):");
+        if (total > libros.size()) {
+            System.out.println("Se muestran los " + libros.size() + " más relevantes.");
+        }
+        System.out.println();
+        
+        mostrarCatalogo(libros);
+    }
+    
+    @Override
+    public void mostrarResultadoAproximado(List<Libro> libros, String termino) {
+        System.out.println("\nRESULTADO DE BÚSQUEDA: \"" + termino + "\"");
+        System.out.println("─".repeat(50));
+        System.out.println("No hay coincidencias exactas. ¿Quisiste decir...?");
+        System.out.println("Se encontraron " + libros.size() + " resultado(s) parecido(s):");
         System.out.println();
         
         mostrarCatalogo(libros);
@@ -263,24 +284,23 @@ public class VistaUsuarioExterno implements IVistaUsuarioExterno {
         System.out.println("═".repeat(50));
     }
     
-    public void mostrarLibrosPopulares() {
+    public void mostrarLibrosPopulares(Map<VentanaPopularidad, List<LibroPopular>> populares) {
         System.out.println("\n" + "═".repeat(60));
-        System.out.println("LOS MÁS POPULARES DE ESTE MES");
+        System.out.println("LOS MÁS POPULARES");
         System.out.println("═".repeat(60));
-        System.out.println("1. Don Quijote de la Mancha - Miguel de Cervantes");
-        System.out.println("     ⭐ 45 préstamos este mes");
-        System.out.println();
-        System.out.println("2. Cien Años de Soledad - Gabriel García Márquez");
-        System.out.println("     ⭐ 38 préstamos este mes");
-        System.out.println();
-        System.out.println("3. 1984 - George Orwell");
-        System.out.println("     ⭐ 32 préstamos este mes");
-        System.out.println();
-        System.out.println("4.  El Principito - Antoine de Saint-Exupéry");
-        System.out.println("     ⭐ 28 préstamos este mes");
-        System.out.println();
-        System.out.println("5.  Orgullo y Prejuicio - Jane Austen");
-        System.out.println("     ⭐ 21 préstamos este mes");
+        for (Map.Entry<VentanaPopularidad, List<LibroPopular>> ventana : populares.entrySet()) {
+            System.out.println(ventana.getKey().getDescripcion().toUpperCase()
+                               + " (últimos " + ventana.getKey().getDias() + " días)");
+            if (ventana.getValue().isEmpty()) {
+                System.out.println("   Todavía no hay préstamos en este período.");
+            }
+            int puesto = 1;
+            for (LibroPopular popular : ventana.getValue()) {
+                System.out.println(puesto++ + ". " + popular.getLibro().getTitulo() + " - " + popular.getLibro().getAutor());
+                System.out.println("     ⭐ " + popular.getPrestamos() + " préstamo(s) " + ventana.getKey().getDescripcion());
+            }
+            System.out.println();
+        }
         System.out.println("═".repeat(60));
         System.out.println("¿Te interesa alguno? ¡Consúltalo en nuestro catálogo!");
     }
@@ -1,12 +1,16 @@
 package vista;
 
 import modelo.Libro;
+import repositorio.LibroPopular;
+import repositorio.VentanaPopularidad;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class VistaUsuarioExternoSwing extends JFrame implements IVistaUsuarioExterno {
     // Paleta de colores terrosos mejorada para biblioteca (igual que la vista principal)
@@ -390,6 +394,11 @@ public class VistaUsuarioExternoSwing extends JFrame implements IVistaUsuarioExt
         txtBusqueda.addActionListener(enterListener);
     }
     
+    // Sugerencias mientras se escribe en el campo de búsqueda (texto escrito -> sugerencias)
+    public void setProveedorSugerencias(Function<String, List<String>> proveedor) {
+        SugerenciasCampo.instalar(txtBusqueda, proveedor);
+    }
+    
     // Implementación de IVistaUsuarioExterno
     @Override
     public void mostrarMenuPublico() {
@@ -448,6 +457,11 @@ public class VistaUsuarioExternoSwing extends JFrame implements IVistaUsuarioExt
     
     @Override
     public void mostrarResultadoBusqueda(List<Libro> libros, String termino) {
+        mostrarResultadoBusqueda(libros, termino, libros.size());
+    }
+    
+    @Override
+    public void mostrarResultadoBusqueda(List<Libro> libros, String termino, int total) {
         mostrarCatalogo(libros);
         if (libros.isEmpty()) {
             txtInformacion.setText(String.format("""
@@ -469,14 +483,31 @@ public class VistaUsuarioExternoSwing extends JFrame implements IVistaUsuarioExt
                 
                 ✅ Se encontraron %d resultado(s)
                 para: "%s"
-                
+                %s
                 💡 Tip: Haz clic en una fila de la tabla
                 para ver más detalles del libro.
-                """, libros.size(), termino));
+                """, total, termino,
+                total > libros.size() ? "(se muestran los " + libros.size() + " más relevantes)\n" : ""));
         }
         txtInformacion.setCaretPosition(0);
     }
     
+    @Override
+    public void mostrarResultadoAproximado(List<Libro> libros, String termino) {
+        mostrarCatalogo(libros);
+        txtInformacion.setText(String.format("""
+            🔍 RESULTADO DE BÚSQUEDA
+            ────────────────────────
+            
+            ⚠️ No hay coincidencias exactas con: "%s"
+            
+            ✅ ¿Quisiste decir...? Se muestran
+            %d resultado(s) parecido(s),
+            los más parecidos primero.
+            """, termino, libros.size()));
+        txtInformacion.setCaretPosition(0);
+    }
+    
     @Override
     public void mostrarMensaje(String mensaje) {
         // Mostrar mensaje en un diálogo
@@ -570,34 +601,33 @@ public class VistaUsuarioExternoSwing extends JFrame implements IVistaUsuarioExt
         return null;
     }
     
-    public void mostrarLibrosPopulares() {
-        txtInformacion.setText("""
-            🔥 LOS MÁS POPULARES DE ESTE MES
-            ═══════════════════════════════
-            
-            🥇 1. Don Quijote de la Mancha
-               📖 Miguel de Cervantes
-               ⭐ 45 préstamos este mes
-            
-            🥈 2. Cien Años de Soledad
-               📖 Gabriel García Márquez
-               ⭐ 38 préstamos este mes
-            
-            🥉 3. 1984
-               📖 George Orwell
-               ⭐ 32 préstamos este mes
-            
-            4️⃣ El Principito
-               📖 Antoine de Saint-Exupéry
-               ⭐ 28 préstamos este mes
-            
-            5️⃣ Orgullo y Prejuicio
-               📖 Jane Austen
-               ⭐ 21 préstamos este mes
+    public void mostrarLibrosPopulares(Map<VentanaPopularidad, List<LibroPopular>> populares) {
+        String[] puestos = {"🥇 1.", "🥈 2.", "🥉 3.", "4️⃣", "5️⃣"};
+        StringBuilder texto = new StringBuilder("""
+            🔥 LOS MÁS POPULARES
+            ════════════════════
+            """);
+        for (Map.Entry<VentanaPopularidad, List<LibroPopular>> ventana : populares.entrySet()) {
+            texto.append("\n📅 ").append(ventana.getKey().getDescripcion().toUpperCase())
+                 .append(" (últimos ").append(ventana.getKey().getDias()).append(" días)\n");
+            if (ventana.getValue().isEmpty()) {
+                texto.append("   Todavía no hay préstamos en este período.\n");
+            }
+            int puesto = 0;
+            for (LibroPopular popular : ventana.getValue()) {
+                String marca = puesto < puestos.length ? puestos[puesto] : (puesto + 1) + ".";
+                texto.append(String.format("%s %s\n   📖 %s\n   ⭐ %d préstamo(s) %s\n",
+                        marca, popular.getLibro().getTitulo(), popular.getLibro().getAutor(),
+                        popular.getPrestamos(), ventana.getKey().getDescripcion()));
+                puesto++;
+            }
+        }
+        texto.append("""
             
             💡 ¿Te interesa alguno? 
             ¡Consúltalo en nuestro catálogo!
             """);
+        txtInformacion.setText(texto.toString());
         txtInformacion.setCaretPosition(0);
     }
     
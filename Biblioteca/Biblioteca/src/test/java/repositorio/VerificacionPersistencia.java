@@ -0,0 +1,313 @@
+package repositorio;
+
+import modelo.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Verificaciones de la persistencia de los repositorios sobre archivos reales en un directorio
+ * temporal: reproducción del CSV base más el diario, recuperación de una compactación
+ * interrumpida, IDs fuera de rango, dos instancias que comparten el mismo directorio de
+ * datos, los contadores de préstamos activos por usuario, la unicidad de emails y el paso de
+ * ACTIVO a VENCIDO.
+ *
+ * Uso: java repositorio.VerificacionPersistencia (termina con código 1 si algo falla)
+ */
+public class VerificacionPersistencia {
+    private static final String CABECERA = "id;titulo;autor;cantidadDisponible;cantidadTotal";
+
+    private static int fallas;
+
+    public static void main(String[] args) throws Exception {
+        // Las lecturas deben ver enseguida lo que escribe la otra instancia
+        System.setProperty("biblioteca.sincronizacion.intervaloMs", "0");
+
+        reproduccionDelDiario();
+        compactacionInterrumpida();
+        idsFueraDeRango();
+        dosInstanciasMismoDirectorio();
+        contadoresPorUsuario();
+        emailsUnicos();
+        pasoAVencido();
+
+        if (fallas > 0) {
+            System.err.println(fallas + " verificación(es) fallida(s)");
+            System.exit(1);
+        }
+        System.out.println("Verificaciones de persistencia correctas");
+    }
+
+    /** CSV base + diario, con el último registro cortado a mitad de escritura. */
+    private static void reproduccionDelDiario() throws IOException {
+        File directorio = Files.createTempDirectory("diario").toFile();
+        File csv = new File(directorio, "libros.csv");
+        escribir(csv, CABECERA + "\n1;Uno;Autor;2;2\n2;Dos;Autor;1;1\n");
+        escribir(new File(directorio, "libros.diario"),
+                 "U;2;Dos revisado;Autor;0;1\nD;1\nU;3;Tres;Autor;4;4\nU;4;Cor");
+
+        BibliotecaRepositorio repositorio = new BibliotecaRepositorio(csv);
+        verificar("reproducción: libros vigentes", ids(repositorio).equals(List.of(2, 3)));
+        verificar("reproducción: modificación aplicada",
+                  "2;Dos revisado;Autor;0;1".equals(repositorio.obtenerPorId(2).toCsv()));
+        verificar("reproducción: registro incompleto recortado",
+                  leer(new File(directorio, "libros.diario")).endsWith("U;3;Tres;Autor;4;4\n"));
+
+        // Lo siguiente que se anexa no queda pegado al registro recortado
+        Libro nuevo = new Libro("Cuatro", "Autor", 1);
+        verificar("reproducción: alta tras el recorte", repositorio.crear(nuevo) && nuevo.getId() == 4);
+        BibliotecaRepositorio releido = new BibliotecaRepositorio(csv);
+        verificar("reproducción: relectura", ids(releido).equals(List.of(2, 3, 4))
+                  && "4;Cuatro;Autor;1;1".equals(releido.obtenerPorId(4).toCsv()));
+    }
+
+    /**
+     * Un proceso se interrumpió compactando: quedan el diario rotado (".compactando"), un
+     * temporal a medio escribir y un diario activo más nuevo que modifica el mismo libro.
+     */
+    private static void compactacionInterrumpida() throws IOException, InterruptedException {
+        File directorio = Files.createTempDirectory("compactacion").toFile();
+        File csv = new File(directorio, "libros.csv");
+        escribir(csv, CABECERA + "\n1;Uno;Autor;2;2\n2;Dos;Autor;1;1\n");
+        File compactando = new File(directorio, "libros.diario.compactando");
+        escribir(compactando, "U;1;Uno;Autor;1;2\nD;2\nU;3;Tres;Autor;3;3\n");
+        escribir(new File(directorio, "libros.diario"), "U;1;Uno;Autor;0;2\n");
+        File temporal = new File(directorio, "libros.csv.123.tmp");
+        escribir(temporal, CABECERA + "\n1;Uno;Au");
+
+        String esperado = "[1;Uno;Autor;0;2, 3;Tres;Autor;3;3]";
+        BibliotecaRepositorio repositorio = new BibliotecaRepositorio(csv);
+        verificar("compactación: estado al arrancar", esperado.equals(lineas(repositorio)));
+        verificar("compactación: temporal huérfano descartado", !temporal.exists());
+
+        // La carga programa la compactación pendiente en segundo plano
+        for (int i = 0; i < 100 && compactando.exists(); i++) {
+            Thread.sleep(50);
+        }
+        verificar("compactación: diario rotado fundido", !compactando.exists()
+                  && leer(csv).equals(CABECERA + "\n1;Uno;Autor;1;2\n3;Tres;Autor;3;3\n"));
+        verificar("compactación: estado tras fundir", esperado.equals(lineas(repositorio))
+                  && esperado.equals(lineas(new BibliotecaRepositorio(csv))));
+    }
+
+    /** IDs negativos o muy grandes en el CSV: se cargan y cuentan como los demás. */
+    private static void idsFueraDeRango() throws IOException {
+        File csv = new File(Files.createTempDirectory("ids").toFile(), "libros.csv");
+        escribir(csv, CABECERA + "\n-3;Negativo;Autor;1;1\n1;Uno;Autor;0;1\n2000000000;Grande;Autor;2;2\n");
+
+        BibliotecaRepositorio repositorio = new BibliotecaRepositorio(csv);
+        verificar("ids: carga", repositorio.contar() == 3 && repositorio.contarDisponibles() == 2);
+        verificar("ids: préstamo", repositorio.prestar(-3) && repositorio.contarDisponibles() == 1
+                  && repositorio.obtenerLibrosDisponibles().get(0).getId() == 2000000000);
+    }
+
+    /** Dos repositorios sobre los mismos archivos, como dos procesos con el mismo data/. */
+    private static void dosInstanciasMismoDirectorio() throws IOException, InterruptedException {
+        File directorio = Files.createTempDirectory("compartido").toFile();
+        File csv = new File(directorio, "libros.csv");
+        BibliotecaRepositorio primero = new BibliotecaRepositorio(csv);
+        BibliotecaRepositorio segundo = new BibliotecaRepositorio(csv);
+
+        Libro libro = new Libro("Compartido", "Autor", 100);
+        primero.crear(libro);
+        Libro visto = segundo.obtenerPorId(libro.getId());
+        verificar("instancias: alta visible", visto != null && visto.getCantidadDisponible() == 100);
+
+        Libro otro = new Libro("Otro", "Autor", 1);
+        segundo.crear(otro);
+        verificar("instancias: IDs sin repetir", otro.getId() != libro.getId()
+                  && primero.obtenerPorId(otro.getId()) != null);
+
+        // Préstamos simultáneos desde ambas instancias: no se pierde ningún descuento
+        int id = libro.getId();
+        Thread[] hilos = new Thread[4];
+        for (int h = 0; h < hilos.length; h++) {
+            BibliotecaRepositorio repositorio = h % 2 == 0 ? primero : segundo;
+            hilos[h] = new Thread(() -> {
+                for (int i = 0; i < 25; i++) {
+                    repositorio.prestar(id);
+                }
+            });
+            hilos[h].start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        verificar("instancias: préstamos simultáneos",
+                  primero.obtenerPorId(id).getCantidadDisponible() == 0
+                  && segundo.obtenerPorId(id).getCantidadDisponible() == 0
+                  && !segundo.prestar(id));
+
+        verificar("instancias: devolución visible",
+                  primero.devolver(id) && segundo.obtenerPorId(id).getCantidadDisponible() == 1);
+
+        segundo.eliminar(otro.getId());
+        verificar("instancias: baja visible", primero.obtenerPorId(otro.getId()) == null);
+    }
+
+    /**
+     * El contador de préstamos activos vive en el usuario residente: préstamo, devolución,
+     * vencimiento, recarga y actualizaciones hechas con copias separadas.
+     */
+    private static void contadoresPorUsuario() throws IOException {
+        Repositorios repos = new Repositorios(Files.createTempDirectory("contadores").toFile());
+        Usuario usuario = new Usuario("Ana", "ana@correo.com", "", TipoUsuario.ESTUDIANTE);
+        repos.usuarios.crear(usuario);
+        Libro libro = new Libro("Libro", "Autor", 5);
+        repos.libros.crear(libro);
+
+        Prestamo primero = new Prestamo(usuario, libro);
+        Prestamo vencido = new Prestamo(usuario, libro);
+        vencido.setFechaDevolucionEsperada(LocalDate.now().minusDays(3));
+        repos.prestamos.crear(primero);
+        repos.prestamos.crear(vencido);
+        verificar("contadores: préstamos", usuario.getPrestamosActivos() == 2);
+
+        primero.devolver();
+        repos.prestamos.actualizar(primero);
+        verificar("contadores: devolución", usuario.getPrestamosActivos() == 1);
+
+        // VENCIDO sigue sin devolver: cuenta igual que ACTIVO
+        repos.prestamos.marcarVencidos();
+        verificar("contadores: vencimiento", usuario.getPrestamosActivos() == 1);
+
+        // Actualizar con una copia separada no reemplaza al usuario residente
+        Usuario copia = new Usuario("Ana María", "ana@correo.com", "", TipoUsuario.ESTUDIANTE);
+        copia.setId(usuario.getId());
+        verificar("contadores: actualizar con copia", repos.usuarios.actualizar(copia)
+                  && repos.usuarios.obtenerPorId(usuario.getId()) == usuario
+                  && "Ana María".equals(usuario.getNombre())
+                  && usuario.getPrestamosActivos() == 1 && copia.getPrestamosActivos() == 1);
+
+        // Tampoco un préstamo copiado, aunque apunte a una copia del usuario
+        Prestamo otro = new Prestamo(copia, libro);
+        otro.setId(vencido.getId());
+        otro.setFechaPrestamo(vencido.getFechaPrestamo());
+        otro.setFechaDevolucionEsperada(vencido.getFechaDevolucionEsperada());
+        otro.setEstado(vencido.getEstado());
+        otro.setNotas("renovación pedida");
+        verificar("contadores: actualizar préstamo con copia", repos.prestamos.actualizar(otro)
+                  && repos.prestamos.obtenerPorId(vencido.getId()) == vencido
+                  && vencido.getUsuario() == usuario && "renovación pedida".equals(vencido.getNotas())
+                  && usuario.getPrestamosActivos() == 1);
+
+        Repositorios releidos = new Repositorios(repos.directorio);
+        Usuario releido = releidos.usuarios.obtenerPorId(usuario.getId());
+        verificar("contadores: recarga", releido.getPrestamosActivos() == 1
+                  && releidos.prestamos.obtenerPorId(vencido.getId()).getUsuario() == releido);
+
+        for (int i = 0; i < 2; i++) {
+            releidos.prestamos.crear(new Prestamo(releido, libro));
+        }
+        verificar("contadores: límite de préstamos", releido.getPrestamosActivos() == 3
+                  && !releido.puedePrestar());
+    }
+
+    /** El email no se repite aunque cambien las mayúsculas o haya espacios alrededor. */
+    private static void emailsUnicos() throws IOException {
+        File csv = new File(Files.createTempDirectory("emails").toFile(), "usuarios.csv");
+        UsuarioRepositorio repositorio = new UsuarioRepositorio(csv);
+        Usuario ana = new Usuario("Ana", "Ana@Correo.com", "", TipoUsuario.ESTUDIANTE);
+        Usuario luis = new Usuario("Luis", "luis@correo.com", "", TipoUsuario.PROFESOR);
+        verificar("emails: altas distintas", repositorio.crear(ana) && repositorio.crear(luis));
+        verificar("emails: alta repetida", !repositorio.crear(
+                new Usuario("Otra Ana", "  ana@CORREO.com ", "", TipoUsuario.ESTUDIANTE)));
+
+        luis.setEmail("ANA@correo.com ");
+        verificar("emails: actualización repetida", !repositorio.actualizar(luis));
+        luis.setEmail("luis@correo.com");
+
+        ana.setEmail("ana@correo.com");
+        verificar("emails: mismo email con otras mayúsculas", repositorio.actualizar(ana));
+
+        ana.setEmail("ana.nueva@correo.com");
+        verificar("emails: el anterior queda libre", repositorio.actualizar(ana)
+                  && repositorio.crear(new Usuario("Otra Ana", "ANA@correo.com", "", TipoUsuario.ESTUDIANTE)));
+
+        UsuarioRepositorio releido = new UsuarioRepositorio(csv);
+        verificar("emails: recarga", !releido.crear(
+                new Usuario("Copia", " Ana.Nueva@correo.com", "", TipoUsuario.ESTUDIANTE)));
+    }
+
+    /** ACTIVO → VENCIDO con marcarVencidos; los contadores siguen bien antes y después de recargar. */
+    private static void pasoAVencido() throws IOException {
+        Repositorios repos = new Repositorios(Files.createTempDirectory("vencidos").toFile());
+        Usuario usuario = new Usuario("Luis", "luis@correo.com", "", TipoUsuario.PROFESOR);
+        repos.usuarios.crear(usuario);
+        Libro libro = new Libro("Libro", "Autor", 5);
+        repos.libros.crear(libro);
+        Prestamo atrasado = new Prestamo(usuario, libro);
+        atrasado.setFechaDevolucionEsperada(LocalDate.now().minusDays(2));
+        repos.prestamos.crear(atrasado);
+        repos.prestamos.crear(new Prestamo(usuario, libro));
+
+        verificar("vencidos: antes de marcar", repos.prestamos.contarVencidos() == 1
+                  && repos.prestamos.contarActivos() == 2);
+        verificar("vencidos: marcar", repos.prestamos.marcarVencidos() == 1
+                  && atrasado.getEstado() == EstadoPrestamo.VENCIDO
+                  && repos.prestamos.contarVencidos() == 1 && repos.prestamos.contarActivos() == 2);
+        verificar("vencidos: segunda pasada sin cambios", repos.prestamos.marcarVencidos() == 0
+                  && repos.prestamos.contarVencidos() == 1);
+
+        Repositorios releidos = new Repositorios(repos.directorio);
+        verificar("vencidos: recarga",
+                  releidos.prestamos.obtenerPorId(atrasado.getId()).getEstado() == EstadoPrestamo.VENCIDO
+                  && releidos.prestamos.contarVencidos() == 1 && releidos.prestamos.contarActivos() == 2
+                  && releidos.prestamos.marcarVencidos() == 0);
+    }
+
+    /** Los tres repositorios sobre un mismo directorio, conectados como en la aplicación. */
+    private static final class Repositorios {
+        final File directorio;
+        final UsuarioRepositorio usuarios;
+        final BibliotecaRepositorio libros;
+        final PrestamoRepositorio prestamos;
+
+        Repositorios(File directorio) {
+            this.directorio = directorio;
+            usuarios = new UsuarioRepositorio(new File(directorio, "usuarios.csv"));
+            libros = new BibliotecaRepositorio(new File(directorio, "libros.csv"));
+            prestamos = new PrestamoRepositorio(new File(directorio, "prestamos.csv"));
+            prestamos.setUsuarioRepositorio(usuarios);
+            prestamos.setBibliotecaRepositorio(libros);
+        }
+    }
+
+    private static List<Integer> ids(BibliotecaRepositorio repositorio) {
+        List<Integer> ids = new ArrayList<>();
+        for (Libro libro : repositorio.obtenerTodos()) {
+            ids.add(libro.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static String lineas(BibliotecaRepositorio repositorio) {
+        List<Libro> libros = repositorio.obtenerTodos();
+        libros.sort(Comparator.comparingInt(Libro::getId));
+        List<String> lineas = new ArrayList<>();
+        for (Libro libro : libros) {
+            lineas.add(libro.toCsv());
+        }
+        return lineas.toString();
+    }
+
+    private static void verificar(String nombre, boolean condicion) {
+        if (condicion) {
+            System.out.println("  OK     " + nombre);
+        } else {
+            System.err.println("  FALLA  " + nombre);
+            fallas++;
+        }
+    }
+
+    private static void escribir(File archivo, String contenido) throws IOException {
+        Files.write(archivo.toPath(), contenido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String leer(File archivo) throws IOException {
+        return new String(Files.readAllBytes(archivo.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,138 @@
+package util;
+
+import repositorio.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark del arranque de los repositorios leyendo el CSV contra la instantánea binaria.
+ * Genera los tres CSV en un directorio temporal y construye cada repositorio sin instantánea,
+ * con la instantánea recién escrita (la primera carga la escribe) y leyéndola; el tiempo
+ * incluye armar los índices en memoria, que es igual en los dos casos.
+ *
+ * Uso (compilado por verificar.sh): java -cp target/verificacion util.BenchmarkArranque [prestamos] [libros] [usuarios]
+ */
+public class BenchmarkArranque {
+    private static final int REPETICIONES = 3;
+    private static final String PROPIEDAD = "biblioteca.instantaneas";
+
+    public static void main(String[] args) throws IOException {
+        int cantidadPrestamos = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int cantidadLibros = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int cantidadUsuarios = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        File directorio = Files.createTempDirectory("benchmark-arranque").toFile();
+        File archivoUsuarios = new File(directorio, "usuarios.csv");
+        File archivoLibros = new File(directorio, "libros.csv");
+        File archivoPrestamos = new File(directorio, "prestamos.csv");
+        generarUsuarios(archivoUsuarios, cantidadUsuarios);
+        generarLibros(archivoLibros, cantidadLibros);
+        generarPrestamos(archivoPrestamos, cantidadPrestamos, cantidadUsuarios, cantidadLibros);
+
+        UsuarioRepositorio usuarios = new UsuarioRepositorio(archivoUsuarios);
+        BibliotecaRepositorio libros = new BibliotecaRepositorio(archivoLibros);
+
+        System.out.printf("Préstamos: %,d | Libros: %,d | Usuarios: %,d%n",
+                          cantidadPrestamos, cantidadLibros, cantidadUsuarios);
+        System.out.printf("%-10s %12s %16s %14s %12s%n", "Archivo", "CSV ms", "Escribiendo ms",
+                          "Instantánea ms", "Bytes inst.");
+
+        medir("usuarios", archivoUsuarios, cantidadUsuarios,
+              () -> new UsuarioRepositorio(archivoUsuarios).obtenerTodos().size());
+        medir("libros", archivoLibros, cantidadLibros,
+              () -> new BibliotecaRepositorio(archivoLibros).obtenerTodos().size());
+        medir("prestamos", archivoPrestamos, cantidadPrestamos, () -> {
+            PrestamoRepositorio prestamos = new PrestamoRepositorio(archivoPrestamos);
+            prestamos.setUsuarioRepositorio(usuarios);
+            prestamos.setBibliotecaRepositorio(libros);
+            return prestamos.obtenerTodos().size();
+        });
+
+        System.clearProperty(PROPIEDAD);
+        borrarDirectorio(directorio);
+    }
+
+    private static void medir(String nombre, File archivoCsv, int esperados, Supplier<Integer> cargar) {
+        System.clearProperty(PROPIEDAD);
+        long csv = mejorDe(cargar, esperados);
+
+        System.setProperty(PROPIEDAD, "true");
+        long escribiendo = cronometrar(cargar, esperados);
+        long instantanea = mejorDe(cargar, esperados);
+
+        File archivoInstantanea = new File(archivoCsv.getPath().replaceAll("\\.csv$", ".instantanea"));
+        System.out.printf("%-10s %12.1f %16.1f %14.1f %,12d%n", nombre, csv / 1_000_000.0,
+                          escribiendo / 1_000_000.0, instantanea / 1_000_000.0, archivoInstantanea.length());
+    }
+
+    private static long mejorDe(Supplier<Integer> cargar, int esperados) {
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICIONES; i++) {
+            mejor = Math.min(mejor, cronometrar(cargar, esperados));
+        }
+        return mejor;
+    }
+
+    private static long cronometrar(Supplier<Integer> cargar, int esperados) {
+        long inicio = System.nanoTime();
+        int cargados = cargar.get();
+        long tiempo = System.nanoTime() - inicio;
+        if (cargados != esperados) {
+            throw new IllegalStateException("Se esperaban " + esperados + " filas cargadas y hubo " + cargados);
+        }
+        return tiempo;
+    }
+
+    private static void generarUsuarios(File archivo, int cantidad) throws IOException {
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;nombre;email;telefono;tipoUsuario;fechaRegistro;activo");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                bw.write(id + ";Usuario " + id + ";usuario" + id + "@email.com;000-000-0000;ESTUDIANTE;2025-01-01;true");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static void generarLibros(File archivo, int cantidad) throws IOException {
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;titulo;autor;cantidadDisponible;cantidadTotal");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                bw.write(id + ";Libro " + id + ";Autor " + (id % 997) + ";3;3");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static void generarPrestamos(File archivo, int cantidad, int usuarios, int libros) throws IOException {
+        LocalDate base = LocalDate.now().minusYears(3);
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;usuarioId;libroId;fechaPrestamo;fechaDevolucionEsperada;fechaDevolucionReal;estado;notas");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                LocalDate fecha = base.plusDays(id % (3 * 365));
+                bw.write(id + ";" + (1 + id % usuarios) + ";" + (1 + id % libros) + ";" +
+                         fecha + ";" + fecha.plusDays(15) + ";" + fecha.plusDays(10) + ";DEVUELTO;");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static BufferedWriter abrir(File archivo) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8));
+    }
+
+    private static void borrarDirectorio(File directorio) {
+        File[] archivos = directorio.listFiles();
+        if (archivos != null) {
+            for (File archivo : archivos) {
+                archivo.delete();
+            }
+        }
+        directorio.delete();
+    }
+}
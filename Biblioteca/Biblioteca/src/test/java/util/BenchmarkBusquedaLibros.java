@@ -0,0 +1,145 @@
+package util;
+
+import modelo.Libro;
+import repositorio.BibliotecaRepositorio;
+import repositorio.EstadisticasIndice;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark de las búsquedas de libros sobre un catálogo sintético grande.
+ * Compara las búsquedas indexadas del repositorio con el recorrido lineal
+ * (toLowerCase().contains sobre cada libro) que hacían antes, e informa cuánta
+ * memoria ocupan los índices.
+ *
+ * Uso (compilado por verificar.sh): java -cp target/verificacion util.BenchmarkBusquedaLibros [libros]
+ */
+public class BenchmarkBusquedaLibros {
+    private static final String[] COMUNES = {"el", "la", "de", "los", "del", "historia", "viaje",
+        "noche", "mar", "ciudad", "amor", "guerra", "tiempo", "libro", "vida", "sombra"};
+    private static final int REPETICIONES = 50;
+    private static final int CALENTAMIENTO = 20;
+
+    public static void main(String[] args) throws IOException {
+        int cantidadLibros = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        File directorio = Files.createTempDirectory("benchmark-busqueda").toFile();
+        File archivoLibros = new File(directorio, "libros.csv");
+        generarLibros(archivoLibros, cantidadLibros);
+
+        long inicio = System.nanoTime();
+        BibliotecaRepositorio repo = new BibliotecaRepositorio(archivoLibros);
+        System.out.printf("Libros: %d | carga e indexado: %.0f ms%n",
+                          repo.obtenerTodos().size(), (System.nanoTime() - inicio) / 1_000_000.0);
+        List<Libro> todos = repo.obtenerTodos();
+
+        System.out.printf("%-40s %12s %10s%n", "Consulta", "Mediana ms", "Resultados");
+        medir("palabras AND 'quilosa mirtaval'", () -> repo.buscarPorPalabras("quilosa mirtaval", true));
+        medir("palabras AND 'historia quilosa'", () -> repo.buscarPorPalabras("historia quilosa", true));
+        medir("palabras OR 'quilosa mirtaval'", () -> repo.buscarPorPalabras("quilosa mirtaval", false));
+        medir("palabras AND 'amor guerra'", () -> repo.buscarPorPalabras("amor guerra", true));
+        medir("título contiene 'quilosa'", () -> repo.buscarPorTitulo("quilosa"));
+        medir("título contiene 'ilos'", () -> repo.buscarPorTitulo("ilos"));
+        medir("título contiene 'historia quil'", () -> repo.buscarPorTitulo("historia quil"));
+        medir("título contiene 'de'", () -> repo.buscarPorTitulo("de"));
+        medir("autor contiene 'autor 4711'", () -> repo.buscarPorAutor("autor 4711"));
+        medir("lineal: título contiene 'quilosa'", () -> lineal(todos, "quilosa"));
+        medir("aproximado título 'qilosa mirtabal'", () -> repo.buscarPorTituloAproximado("qilosa mirtabal"));
+        medir("aproximado título 'historai'", () -> repo.buscarPorTituloAproximado("historai"));
+        medir("aproximado autor 'autr 4711'", () -> repo.buscarPorAutorAproximado("autr 4711"));
+        List<Libro> conDe = repo.buscarPorTitulo("de");
+        medir("relevancia: 100 mejores de 'de'", () -> repo.masRelevantes(conDe, "de", 100));
+        List<Libro> conQuilosa = repo.buscarPorTitulo("quilosa");
+        medir("relevancia: 100 mejores de 'quilosa'", () -> repo.masRelevantes(conQuilosa, "quilosa", 100));
+        medir("sugerir títulos 'h'", () -> repo.sugerirTitulos("h", 8));
+        medir("sugerir títulos 'historia qu'", () -> repo.sugerirTitulos("historia qu", 8));
+        medir("sugerir autores 'autor 47'", () -> repo.sugerirAutores("autor 47", 8));
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.printf("%nMemoria usada por el proceso: %.0f MB%n",
+                          (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0));
+        for (EstadisticasIndice estadisticas : repo.getEstadisticasIndices()) {
+            System.out.println(estadisticas);
+        }
+
+        borrarDirectorio(directorio);
+    }
+
+    private static void medir(String nombre, Supplier<? extends List<?>> consulta) {
+        int resultados = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            resultados = consulta.get().size();
+        }
+        long[] tiempos = new long[REPETICIONES];
+        for (int i = 0; i < REPETICIONES; i++) {
+            long inicio = System.nanoTime();
+            consulta.get();
+            tiempos[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(tiempos);
+        System.out.printf("%-40s %12.3f %10d%n", nombre, tiempos[REPETICIONES / 2] / 1_000_000.0, resultados);
+    }
+
+    private static List<Libro> lineal(List<Libro> libros, String texto) {
+        List<Libro> resultado = new ArrayList<>();
+        for (Libro libro : libros) {
+            if (libro.getTitulo().toLowerCase().contains(texto)) {
+                resultado.add(libro);
+            }
+        }
+        return resultado;
+    }
+
+    // Títulos de 2 a 5 palabras: una común y el resto de un vocabulario sintético grande,
+    // con sesgo hacia las primeras palabras como en un catálogo real
+    private static void generarLibros(File archivo, int cantidad) throws IOException {
+        Random azar = new Random(42);
+        String[] vocabulario = new String[50_000];
+        vocabulario[0] = "quilosa";
+        vocabulario[1] = "mirtaval";
+        for (int i = 2; i < vocabulario.length; i++) {
+            vocabulario[i] = palabraSintetica(azar);
+        }
+        try (BufferedWriter bw = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8))) {
+            bw.write("id;titulo;autor;cantidadDisponible;cantidadTotal");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                StringBuilder titulo = new StringBuilder(COMUNES[azar.nextInt(COMUNES.length)]);
+                int palabras = 1 + azar.nextInt(4);
+                for (int p = 0; p < palabras; p++) {
+                    double sesgo = azar.nextDouble();
+                    titulo.append(' ').append(vocabulario[(int) (sesgo * sesgo * vocabulario.length)]);
+                }
+                bw.write(id + ";" + titulo + ";Autor " + azar.nextInt(20_000) + ";3;3");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static String palabraSintetica(Random azar) {
+        String consonantes = "bcdfglmnprstv";
+        String vocales = "aeiou";
+        StringBuilder palabra = new StringBuilder();
+        int silabas = 2 + azar.nextInt(3);
+        for (int s = 0; s < silabas; s++) {
+            palabra.append(consonantes.charAt(azar.nextInt(consonantes.length())))
+                   .append(vocales.charAt(azar.nextInt(vocales.length())));
+        }
+        return palabra.toString();
+    }
+
+    private static void borrarDirectorio(File directorio) {
+        File[] archivos = directorio.listFiles();
+        if (archivos != null) {
+            for (File archivo : archivos) {
+                archivo.delete();
+            }
+        }
+        directorio.delete();
+    }
+}
@@ -0,0 +1,122 @@
+package util;
+
+import repositorio.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+/**
+ * Benchmark de la carga de préstamos con unión en bloque.
+ * Genera archivos CSV sintéticos en un directorio temporal y mide el tiempo de carga
+ * de PrestamoRepositorio para cantidades crecientes de préstamos. Si la carga es lineal,
+ * el tiempo por préstamo se mantiene aproximadamente constante.
+ *
+ * Uso (compilado por verificar.sh): java -cp target/verificacion util.BenchmarkCargaPrestamos [usuarios] [libros]
+ */
+public class BenchmarkCargaPrestamos {
+    private static final int[] CANTIDADES_PRESTAMOS = {12_500, 25_000, 50_000, 100_000};
+    private static final int REPETICIONES = 5;
+    private static final int CALENTAMIENTO = 3;
+
+    public static void main(String[] args) throws IOException {
+        int cantidadUsuarios = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int cantidadLibros = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        File directorio = Files.createTempDirectory("benchmark-prestamos").toFile();
+        File archivoUsuarios = new File(directorio, "usuarios.csv");
+        File archivoLibros = new File(directorio, "libros.csv");
+        generarUsuarios(archivoUsuarios, cantidadUsuarios);
+        generarLibros(archivoLibros, cantidadLibros);
+
+        UsuarioRepositorio usuarios = new UsuarioRepositorio(archivoUsuarios);
+        BibliotecaRepositorio libros = new BibliotecaRepositorio(archivoLibros);
+
+        System.out.printf("Usuarios: %d | Libros: %d%n", cantidadUsuarios, cantidadLibros);
+        System.out.printf("%12s %12s %14s%n", "Préstamos", "Mediana ms", "ns/préstamo");
+
+        for (int cantidad : CANTIDADES_PRESTAMOS) {
+            File archivoPrestamos = new File(directorio, "prestamos-" + cantidad + ".csv");
+            generarPrestamos(archivoPrestamos, cantidad, cantidadUsuarios, cantidadLibros);
+
+            // Calentamiento del JIT antes de medir
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                medirCarga(archivoPrestamos, usuarios, libros, cantidad);
+            }
+
+            long[] tiempos = new long[REPETICIONES];
+            for (int i = 0; i < REPETICIONES; i++) {
+                tiempos[i] = medirCarga(archivoPrestamos, usuarios, libros, cantidad);
+            }
+            java.util.Arrays.sort(tiempos);
+            long mediana = tiempos[REPETICIONES / 2];
+            System.out.printf("%12d %12.1f %14d%n", cantidad, mediana / 1_000_000.0, mediana / cantidad);
+        }
+
+        borrarDirectorio(directorio);
+    }
+
+    private static long medirCarga(File archivoPrestamos, UsuarioRepositorio usuarios,
+                                   BibliotecaRepositorio libros, int esperados) {
+        long inicio = System.nanoTime();
+        PrestamoRepositorio prestamos = new PrestamoRepositorio(archivoPrestamos);
+        prestamos.setUsuarioRepositorio(usuarios);
+        prestamos.setBibliotecaRepositorio(libros);
+        long tiempo = System.nanoTime() - inicio;
+
+        if (prestamos.obtenerTodos().size() != esperados) {
+            throw new IllegalStateException("Se esperaban " + esperados + " préstamos cargados");
+        }
+        return tiempo;
+    }
+
+    private static void generarUsuarios(File archivo, int cantidad) throws IOException {
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;nombre;email;telefono;tipoUsuario;fechaRegistro;activo");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                bw.write(id + ";Usuario " + id + ";usuario" + id + "@email.com;000-000-0000;ESTUDIANTE;2025-01-01;true");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static void generarLibros(File archivo, int cantidad) throws IOException {
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;titulo;autor;cantidadDisponible;cantidadTotal");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                bw.write(id + ";Libro " + id + ";Autor " + (id % 997) + ";3;3");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static void generarPrestamos(File archivo, int cantidad, int usuarios, int libros) throws IOException {
+        LocalDate base = LocalDate.of(2025, 1, 1);
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;usuarioId;libroId;fechaPrestamo;fechaDevolucionEsperada;fechaDevolucionReal;estado;notas");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                LocalDate fecha = base.plusDays(id % 365);
+                bw.write(id + ";" + (1 + id % usuarios) + ";" + (1 + id % libros) + ";" +
+                         fecha + ";" + fecha.plusDays(15) + ";" + fecha.plusDays(10) + ";DEVUELTO;");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static BufferedWriter abrir(File archivo) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8));
+    }
+
+    private static void borrarDirectorio(File directorio) {
+        File[] archivos = directorio.listFiles();
+        if (archivos != null) {
+            for (File archivo : archivos) {
+                archivo.delete();
+            }
+        }
+        directorio.delete();
+    }
+}
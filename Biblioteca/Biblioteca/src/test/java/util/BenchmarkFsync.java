@@ -0,0 +1,99 @@
+package util;
+
+import modelo.Libro;
+import repositorio.BibliotecaRepositorio;
+import repositorio.PoliticaDurabilidad;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Benchmark del costo de durabilidad de las escrituras al diario.
+ * Compara forzar a disco (fsync) cada registro contra agruparlos y forzar una vez por lote
+ * (group commit), y mide el costo de punta a punta de BibliotecaRepositorio.crear con cada
+ * {@link PoliticaDurabilidad}.
+ *
+ * Uso (compilado por verificar.sh): java -cp target/verificacion util.BenchmarkFsync [registros]
+ */
+public class BenchmarkFsync {
+    private static final int[] TAMANOS_LOTE = {1, 8, 32, 128};
+
+    public static void main(String[] args) throws IOException {
+        int registros = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        File directorio = Files.createTempDirectory("benchmark-fsync").toFile();
+        byte[] registro = "U;123456;Cien Años de Soledad;Gabriel García Márquez;2;3\n".getBytes(StandardCharsets.UTF_8);
+
+        System.out.printf("Registros: %d (%d bytes c/u)%n", registros, registro.length);
+        System.out.printf("%-28s %10s %12s %14s%n", "Modo", "Total ms", "us/registro", "registros/s");
+
+        for (int lote : TAMANOS_LOTE) {
+            File archivo = new File(directorio, "diario-" + lote);
+            long tiempo = anexarEnLotes(archivo, registro, registros, lote, true);
+            String modo = lote == 1 ? "fsync por escritura" : "group commit (lote " + lote + ")";
+            imprimir(modo, tiempo, registros);
+        }
+
+        long sinFsync = anexarEnLotes(new File(directorio, "diario-sin-fsync"), registro, registros, 1, false);
+        imprimir("sin fsync", sinFsync, registros);
+
+        // Punta a punta: un crear por registro con cada política de durabilidad
+        int creaciones = Math.min(registros, 500);
+        PoliticaDurabilidad[] politicas = {
+            PoliticaDurabilidad.sincrona(),
+            PoliticaDurabilidad.grupo(10, 64),
+            PoliticaDurabilidad.asincrona(10, 64)
+        };
+        for (PoliticaDurabilidad politica : politicas) {
+            File archivo = new File(directorio, "libros-" + politica.getModo() + ".csv");
+            BibliotecaRepositorio repositorio = new BibliotecaRepositorio(archivo);
+            repositorio.setPoliticaDurabilidad(politica);
+            long inicio = System.nanoTime();
+            for (int i = 0; i < creaciones; i++) {
+                repositorio.crear(new Libro("Libro " + i, "Autor " + i, 3));
+            }
+            long confirmado = System.nanoTime() - inicio;
+            repositorio.sincronizar();
+            imprimir("crear " + politica.getModo(), confirmado, creaciones);
+            System.out.println("    " + repositorio.getMetricasEscritura());
+        }
+
+        borrarDirectorio(directorio);
+    }
+
+    private static long anexarEnLotes(File archivo, byte[] registro, int registros,
+                                      int lote, boolean forzar) throws IOException {
+        long inicio = System.nanoTime();
+        try (FileChannel canal = FileChannel.open(archivo.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (int i = 0; i < registros; i++) {
+                ByteBuffer buffer = ByteBuffer.wrap(registro);
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+                if (forzar && ((i + 1) % lote == 0 || i == registros - 1)) {
+                    canal.force(false);
+                }
+            }
+        }
+        return System.nanoTime() - inicio;
+    }
+
+    private static void imprimir(String modo, long nanos, int registros) {
+        double ms = nanos / 1_000_000.0;
+        System.out.printf("%-28s %10.1f %12.1f %14.0f%n",
+                          modo, ms, nanos / 1_000.0 / registros, registros / (nanos / 1_000_000_000.0));
+    }
+
+    private static void borrarDirectorio(File directorio) {
+        File[] archivos = directorio.listFiles();
+        if (archivos != null) {
+            for (File archivo : archivos) {
+                archivo.delete();
+            }
+        }
+        directorio.delete();
+    }
+}
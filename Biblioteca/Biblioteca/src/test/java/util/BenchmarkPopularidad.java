@@ -0,0 +1,185 @@
+package util;
+
+import repositorio.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Benchmark del ranking de populares exacto contra el aproximado (count-min + Space-Saving).
+ * Genera un historial sintético de tres años con una distribución Zipf sobre los libros (pocos
+ * muy prestados y una cola larga), lo carga una vez y recuenta con cada política, comparando
+ * la memoria estimada de los contadores y la precisión del top K de cada ventana contra los
+ * conteos reales, que el benchmark conoce porque generó los préstamos.
+ *
+ * Aciertos: cuántos del top K aproximado tienen un conteo real al menos igual al del K-ésimo
+ * real (los empates en el corte cuentan como acierto). Exceso: cuánto se pasan los conteos
+ * informados, en promedio y como máximo, frente a la cota error × préstamos de la ventana.
+ *
+ * Uso (compilado por verificar.sh): java -cp target/verificacion util.BenchmarkPopularidad [prestamos] [libros]
+ */
+public class BenchmarkPopularidad {
+    private static final double[] ERRORES = {0.01, 0.001, 0.0001};
+    private static final double PROBABILIDAD_FALLO = 0.01;
+    private static final double EXPONENTE_ZIPF = 1.1;
+    private static final int DIAS_HISTORIAL = 3 * 365;
+    private static final int K = 10;
+    private static final int USUARIOS = 1_000;
+
+    public static void main(String[] args) throws IOException {
+        int cantidadPrestamos = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int cantidadLibros = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        File directorio = Files.createTempDirectory("benchmark-popularidad").toFile();
+        File archivoUsuarios = new File(directorio, "usuarios.csv");
+        File archivoLibros = new File(directorio, "libros.csv");
+        File archivoPrestamos = new File(directorio, "prestamos.csv");
+        generarUsuarios(archivoUsuarios, USUARIOS);
+        generarLibros(archivoLibros, cantidadLibros);
+        LocalDate hoy = LocalDate.now();
+        int[][] reales = generarPrestamos(archivoPrestamos, cantidadPrestamos, cantidadLibros, hoy);
+
+        PrestamoRepositorio prestamos = new PrestamoRepositorio(archivoPrestamos);
+        prestamos.setPoliticaPopularidad(PoliticaPopularidad.exacta());
+        prestamos.setUsuarioRepositorio(new UsuarioRepositorio(archivoUsuarios));
+        prestamos.setBibliotecaRepositorio(new BibliotecaRepositorio(archivoLibros));
+
+        System.out.printf("Préstamos: %,d en %d días | Libros: %,d | Zipf s=%.1f | K=%d%n",
+                          cantidadPrestamos, DIAS_HISTORIAL, cantidadLibros, EXPONENTE_ZIPF, K);
+        System.out.printf("%-36s %10s %10s %-7s %9s %12s %12s %10s%n", "Política", "MB", "Recuento ms",
+                          "Ventana", "Aciertos", "Exceso prom", "Exceso máx", "Cota");
+
+        List<PoliticaPopularidad> politicas = new ArrayList<>();
+        politicas.add(PoliticaPopularidad.exacta());
+        for (double error : ERRORES) {
+            politicas.add(PoliticaPopularidad.aproximada(error, PROBABILIDAD_FALLO));
+        }
+        for (PoliticaPopularidad politica : politicas) {
+            long inicio = System.nanoTime();
+            prestamos.setPoliticaPopularidad(politica);
+            long recuento = System.nanoTime() - inicio;
+            double megas = prestamos.getEstadisticasPopularidad().getBytesEstimados() / (1024.0 * 1024.0);
+
+            for (VentanaPopularidad ventana : VentanaPopularidad.values()) {
+                int[] conteos = reales[ventana.ordinal()];
+                List<LibroPopular> top = prestamos.obtenerLibrosPopulares(ventana, K);
+                medir(politica, megas, recuento, ventana, top, conteos);
+            }
+        }
+
+        borrarDirectorio(directorio);
+    }
+
+    private static void medir(PoliticaPopularidad politica, double megas, long recuento,
+                              VentanaPopularidad ventana, List<LibroPopular> top, int[] conteos) {
+        int[] ordenados = conteos.clone();
+        Arrays.sort(ordenados);
+        int corte = ordenados[Math.max(0, ordenados.length - K)];
+        long total = 0;
+        for (int conteo : conteos) {
+            total += conteo;
+        }
+
+        int aciertos = 0;
+        long excesoTotal = 0;
+        int excesoMaximo = 0;
+        for (LibroPopular popular : top) {
+            int real = conteos[popular.getLibro().getId()];
+            if (real >= corte) {
+                aciertos++;
+            }
+            int exceso = popular.getPrestamos() - real;
+            excesoTotal += exceso;
+            excesoMaximo = Math.max(excesoMaximo, exceso);
+        }
+        String cota = politica.esExacta() ? "0" : String.format("%,.0f", politica.getError() * total);
+        System.out.printf("%-36s %10.1f %10.1f %-7s %6d/%-2d %12.1f %12d %10s%n", politica, megas,
+                          recuento / 1_000_000.0, ventana, aciertos, K,
+                          top.isEmpty() ? 0.0 : (double) excesoTotal / top.size(), excesoMaximo, cota);
+    }
+
+    private static void generarUsuarios(File archivo, int cantidad) throws IOException {
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;nombre;email;telefono;tipoUsuario;fechaRegistro;activo");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                bw.write(id + ";Usuario " + id + ";usuario" + id + "@email.com;000-000-0000;ESTUDIANTE;2025-01-01;true");
+                bw.newLine();
+            }
+        }
+    }
+
+    private static void generarLibros(File archivo, int cantidad) throws IOException {
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;titulo;autor;cantidadDisponible;cantidadTotal");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                bw.write(id + ";Libro " + id + ";Autor " + (id % 997) + ";3;3");
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Escribe préstamos ya devueltos repartidos al azar en los últimos tres años, con el libro
+     * elegido por Zipf (el ID no sigue al rango, para que los populares no sean los primeros IDs).
+     * @return los conteos reales por libro de cada ventana, indexados por ordinal y por ID.
+     */
+    private static int[][] generarPrestamos(File archivo, int cantidad, int libros, LocalDate hoy) throws IOException {
+        Random azar = new Random(42);
+        double[] acumulada = new double[libros];
+        double suma = 0;
+        for (int rango = 0; rango < libros; rango++) {
+            suma += 1 / Math.pow(rango + 1, EXPONENTE_ZIPF);
+            acumulada[rango] = suma;
+        }
+        int[] libroPorRango = new int[libros];
+        for (int i = 0; i < libros; i++) {
+            libroPorRango[i] = i + 1;
+        }
+        for (int i = libros - 1; i > 0; i--) {
+            int j = azar.nextInt(i + 1);
+            int libro = libroPorRango[i];
+            libroPorRango[i] = libroPorRango[j];
+            libroPorRango[j] = libro;
+        }
+
+        VentanaPopularidad[] ventanas = VentanaPopularidad.values();
+        int[][] reales = new int[ventanas.length][libros + 1];
+        try (BufferedWriter bw = abrir(archivo)) {
+            bw.write("id;usuarioId;libroId;fechaPrestamo;fechaDevolucionEsperada;fechaDevolucionReal;estado;notas");
+            bw.newLine();
+            for (int id = 1; id <= cantidad; id++) {
+                int rango = Arrays.binarySearch(acumulada, azar.nextDouble() * suma);
+                int libroId = libroPorRango[Math.min(rango >= 0 ? rango : -rango - 1, libros - 1)];
+                int haceDias = azar.nextInt(DIAS_HISTORIAL);
+                LocalDate fecha = hoy.minusDays(haceDias);
+                for (VentanaPopularidad ventana : ventanas) {
+                    if (haceDias < ventana.getDias()) {
+                        reales[ventana.ordinal()][libroId]++;
+                    }
+                }
+                bw.write(id + ";" + (1 + id % USUARIOS) + ";" + libroId + ";" +
+                         fecha + ";" + fecha.plusDays(15) + ";" + fecha.plusDays(10) + ";DEVUELTO;");
+                bw.newLine();
+            }
+        }
+        return reales;
+    }
+
+    private static BufferedWriter abrir(File archivo) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8));
+    }
+
+    private static void borrarDirectorio(File directorio) {
+        File[] archivos = directorio.listFiles();
+        if (archivos != null) {
+            for (File archivo : archivos) {
+                archivo.delete();
+            }
+        }
+        directorio.delete();
+    }
+}
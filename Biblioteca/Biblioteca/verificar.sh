@@ -0,0 +1,11 @@
+#!/bin/sh
+# Compila el código y las verificaciones con javac (sin dependencias) y ejecuta las
+# verificaciones de persistencia. Termina con código distinto de 0 si alguna falla.
+set -e
+cd "$(dirname "$0")"
+
+SALIDA=target/verificacion
+rm -rf "$SALIDA"
+mkdir -p "$SALIDA"
+javac -encoding UTF-8 -d "$SALIDA" $(find src/main/java src/test/java -name '*.java')
+java -cp "$SALIDA" repositorio.VerificacionPersistencia